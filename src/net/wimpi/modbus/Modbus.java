@@ -160,6 +160,27 @@ public interface Modbus {
    */
   public static final int ILLEGAL_VALUE_EXCEPTION = 3;
 
+  /**
+   * Defines the Modbus slave exception type <tt>slave device failure</tt>.
+   * This exception code is returned if an unrecoverable error occurred
+   * while the slave was performing the requested action.
+   */
+  public static final int SLAVE_DEVICE_FAILURE_EXCEPTION = 4;
+
+  /**
+   * Defines the Modbus slave exception type <tt>gateway path unavailable</tt>.
+   * This exception code is returned by a gateway that has no path to the
+   * addressed unit.
+   */
+  public static final int GATEWAY_PATH_UNAVAILABLE_EXCEPTION = 10;
+
+  /**
+   * Defines the Modbus slave exception type <tt>gateway target device failed
+   * to respond</tt>. This exception code is returned by a gateway if the
+   * addressed unit did not respond.
+   */
+  public static final int GATEWAY_TARGET_FAILED_EXCEPTION = 11;
+
 
   /**
    * Defines the default port number of Modbus
@@ -54,6 +54,7 @@ public class ModbusCoupler {
 
   //instance attributes
   private ProcessImage m_ProcessImage;
+  private ProcessImage[] m_UnitImages = new ProcessImage[256];
   private int m_UnitID = Modbus.DEFAULT_UNIT_ID;
   private boolean m_Master = false;
   //private boolean m_Registered = false;
@@ -117,6 +118,45 @@ public class ModbusCoupler {
     m_ProcessImage = procimg;
   }//setProcessImage
 
+  /**
+   * Returns a reference to the <tt>ProcessImage</tt>
+   * serving the given unit identifier.
+   * <p/>
+   * If no image has been set for the unit, the
+   * default <tt>ProcessImage</tt> is returned.
+   *
+   * @param unitid the unit identifier (0-255).
+   * @return the <tt>ProcessImage</tt>, or null if there is none.
+   */
+  public ProcessImage getProcessImage(int unitid) {
+    if (unitid >= 0 && unitid < m_UnitImages.length) {
+      ProcessImage procimg = m_UnitImages[unitid];
+      if (procimg != null) {
+        return procimg;
+      }
+    }
+    return m_ProcessImage;
+  }//getProcessImage
+
+  /**
+   * Sets the reference to the <tt>ProcessImage</tt>
+   * serving the given unit identifier, which allows
+   * a single slave to host several logical units.
+   * <p/>
+   * Passing null removes the image of the unit,
+   * which will then be served by the default
+   * <tt>ProcessImage</tt>.
+   *
+   * @param unitid the unit identifier (0-255).
+   * @param procimg the <tt>ProcessImage</tt> to be set.
+   */
+  public void setProcessImage(int unitid, ProcessImage procimg) {
+    if (unitid < 0 || unitid >= m_UnitImages.length) {
+      throw new IllegalArgumentException("Invalid unit identifier " + unitid + ".");
+    }
+    m_UnitImages[unitid] = procimg;
+  }//setProcessImage
+
   /**
    * Returns the identifier of this unit.
    * This identifier is required to be set
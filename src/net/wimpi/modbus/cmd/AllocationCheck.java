@@ -0,0 +1,199 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.cmd;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import net.wimpi.modbus.ModbusCoupler;
+import net.wimpi.modbus.io.ModbusTCPTransport;
+import net.wimpi.modbus.msg.ModbusRequest;
+import net.wimpi.modbus.msg.ModbusResponse;
+import net.wimpi.modbus.msg.ReadCoilsRequest;
+import net.wimpi.modbus.msg.ReadInputDiscretesRequest;
+import net.wimpi.modbus.msg.ReadInputRegistersRequest;
+import net.wimpi.modbus.msg.ReadMultipleRegistersRequest;
+import net.wimpi.modbus.msg.RequestPool;
+import net.wimpi.modbus.msg.WriteCoilRequest;
+import net.wimpi.modbus.msg.WriteMultipleCoilsRequest;
+import net.wimpi.modbus.msg.WriteMultipleRegistersRequest;
+import net.wimpi.modbus.msg.WriteSingleRegisterRequest;
+import net.wimpi.modbus.procimg.ArrayProcessImage;
+import net.wimpi.modbus.procimg.Register;
+import net.wimpi.modbus.procimg.SimpleRegister;
+
+/**
+ * Class that implements a simple commandline
+ * tool for checking that a slave reusing its request
+ * and response instances serves requests without allocations.
+ * <p>
+ * The slave side of a local connection is served on the
+ * main thread, the same way the <tt>TCPConnectionHandler</tt>
+ * does, and the bytes allocated by this thread are measured
+ * for every function code once the code has been warmed up.
+ * The tool exits with status 1 if any steady-state
+ * allocation is detected.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class AllocationCheck {
+
+  public static void main(String[] args) {
+
+    int repeat = 20000;
+
+    try {
+      if (args.length > 0) {
+        repeat = Integer.parseInt(args[0]);
+      }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      printUsage();
+      System.exit(1);
+    }
+
+    java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+    if (!(mx instanceof com.sun.management.ThreadMXBean)
+        || !((com.sun.management.ThreadMXBean) mx).isThreadAllocatedMemorySupported()) {
+      System.out.println("Thread allocation measurement is not supported by this VM.");
+      System.exit(1);
+    }
+    com.sun.management.ThreadMXBean tmx = (com.sun.management.ThreadMXBean) mx;
+    tmx.setThreadAllocatedMemoryEnabled(true);
+
+    ModbusCoupler.createModbusCoupler(new ArrayProcessImage(1024, 1024, 1024, 1024));
+
+    Register[] regs = new Register[100];
+    for (int i = 0; i < regs.length; i++) {
+      regs[i] = new SimpleRegister(i);
+    }
+    WriteMultipleCoilsRequest wmc = new WriteMultipleCoilsRequest(0, 80);
+    for (int i = 0; i < 80; i += 3) {
+      wmc.setCoilStatus(i, true);
+    }
+    ModbusRequest[] requests = new ModbusRequest[]{
+      new ReadCoilsRequest(0, 100),
+      new ReadInputDiscretesRequest(0, 100),
+      new ReadMultipleRegistersRequest(0, 100),
+      new ReadInputRegistersRequest(0, 100),
+      new WriteCoilRequest(7, true),
+      new WriteSingleRegisterRequest(7, new SimpleRegister(4711)),
+      wmc,
+      new WriteMultipleRegistersRequest(0, regs)
+    };
+
+    boolean failed = false;
+    try {
+      ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+      Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+      Socket incoming = server.accept();
+      server.close();
+      socket.setTcpNoDelay(true);
+      incoming.setTcpNoDelay(true);
+      //do not wait forever if the master fails
+      incoming.setSoTimeout(10000);
+
+      final ModbusTCPTransport master = new ModbusTCPTransport(socket);
+      ModbusTCPTransport slave = new ModbusTCPTransport(incoming);
+      slave.setRequestPool(new RequestPool());
+
+      long tid = Thread.currentThread().getId();
+      for (int i = 0; i < requests.length; i++) {
+        ModbusRequest request = requests[i];
+        //warm up, then measure
+        serve(master, slave, request, repeat);
+        long start = tmx.getThreadAllocatedBytes(tid);
+        serve(master, slave, request, repeat);
+        long bytes = tmx.getThreadAllocatedBytes(tid) - start;
+        //the measurement itself may allocate a few bytes
+        boolean ok = bytes < 1024;
+        failed |= !ok;
+        System.out.println("FC" + request.getFunctionCode() + ": "
+            + bytes + " bytes in " + repeat + " requests"
+            + ((ok) ? "" : " FAILED"));
+      }
+      master.close();
+      slave.close();
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      System.exit(1);
+    }
+    System.exit((failed) ? 1 : 0);
+  }//main
+
+  /**
+   * Sends the request the given number of times from a
+   * separate thread, and serves it on the calling thread.
+   */
+  private static void serve(final ModbusTCPTransport master,
+                            ModbusTCPTransport slave,
+                            final ModbusRequest request,
+                            final int repeat)
+      throws Exception {
+    final Exception[] error = new Exception[1];
+    Thread client = new Thread() {
+      public void run() {
+        try {
+          for (int i = 0; i < repeat; i++) {
+            request.setTransactionID(i & 0xffff);
+            master.writeMessage(request);
+            master.readResponse();
+          }
+        } catch (Exception ex) {
+          error[0] = ex;
+        }
+      }
+    };
+    client.start();
+    for (int i = 0; i < repeat; i++) {
+      ModbusRequest req = slave.readRequest();
+      ModbusResponse res = req.createResponse();
+      slave.writeMessage(res, !slave.isRequestAvailable());
+    }
+    client.join();
+    if (error[0] != null) {
+      throw error[0];
+    }
+  }//serve
+
+  private static void printUsage() {
+    System.out.println(
+        "java net.wimpi.modbus.cmd.AllocationCheck {<repeat [int]>}"
+    );
+  }//printUsage
+
+}//class AllocationCheck
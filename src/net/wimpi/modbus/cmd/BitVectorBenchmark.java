@@ -0,0 +1,131 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.cmd;
+
+import java.util.Random;
+
+import net.wimpi.modbus.util.BitVector;
+
+/**
+ * Class that implements a simple commandline
+ * tool for comparing bit by bit access to a <tt>BitVector</tt>
+ * with its word level bulk operations, by diffing
+ * two snapshots of coils and visiting the changed ones.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class BitVectorBenchmark {
+
+  private static int c_Sink;
+
+  public static void main(String[] args) {
+
+    int repeat = 1000000;
+    int size = 2000;
+
+    try {
+      if (args.length > 0) {
+        repeat = Integer.parseInt(args[0]);
+      }
+      if (args.length > 1) {
+        size = Integer.parseInt(args[1]);
+      }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      printUsage();
+      System.exit(1);
+    }
+
+    //two snapshots with a few changed coils, in the bit order of the responses
+    Random rnd = new Random(0);
+    BitVector before = new BitVector(size);
+    BitVector after = new BitVector(size);
+    BitVector changes = new BitVector(size);
+    before.setStartLSB(true);
+    after.setStartLSB(true);
+    changes.setStartLSB(true);
+    for (int i = 0; i < size; i++) {
+      boolean b = rnd.nextBoolean();
+      before.setBit(i, b);
+      after.setBit(i, (rnd.nextInt(100) == 0) ? !b : b);
+    }
+
+    //warm up, then measure
+    for (int n = 0; n < 3; n++) {
+      boolean print = (n == 2);
+      benchBits(before, after, repeat, print);
+      benchWords(before, after, changes, repeat, print);
+    }
+  }//main
+
+  private static void benchBits(BitVector before, BitVector after,
+                                int repeat, boolean print) {
+    long start = System.nanoTime();
+    for (int r = 0; r < repeat; r++) {
+      for (int i = 0; i < before.size(); i++) {
+        if (before.getBit(i) != after.getBit(i)) {
+          c_Sink += i;
+        }
+      }
+    }
+    report("bit by bit", start, repeat, print);
+  }//benchBits
+
+  private static void benchWords(BitVector before, BitVector after, BitVector changes,
+                                 int repeat, boolean print) {
+    long start = System.nanoTime();
+    for (int r = 0; r < repeat; r++) {
+      before.diff(after, changes);
+      for (int i = changes.nextSetBit(0); i >= 0; i = changes.nextSetBit(i + 1)) {
+        c_Sink += i;
+      }
+    }
+    report("word level", start, repeat, print);
+  }//benchWords
+
+  private static void report(String name, long start, int repeat, boolean print) {
+    if (print) {
+      long ns = System.nanoTime() - start;
+      System.out.println(name + ": " + (ns / repeat) + " ns per diff");
+    }
+  }//report
+
+  private static void printUsage() {
+    System.out.println(
+        "java net.wimpi.modbus.cmd.BitVectorBenchmark {<repeat [int]> {<size [int]>}}"
+    );
+  }//printUsage
+
+}//class BitVectorBenchmark
@@ -0,0 +1,143 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.cmd;
+
+import java.nio.ByteBuffer;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.io.BytesInputStream;
+import net.wimpi.modbus.io.BytesOutputStream;
+import net.wimpi.modbus.msg.ModbusMessage;
+import net.wimpi.modbus.msg.ReadMultipleRegistersRequest;
+import net.wimpi.modbus.msg.ReadMultipleRegistersResponse;
+import net.wimpi.modbus.procimg.Register;
+import net.wimpi.modbus.procimg.SimpleRegister;
+
+/**
+ * Class that implements a simple commandline
+ * tool for comparing the stream based message codec
+ * with the <tt>ByteBuffer</tt> based one.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class CodecBenchmark {
+
+  public static void main(String[] args) {
+
+    int repeat = 1000000;
+    int count = 125;
+
+    try {
+      if (args.length > 0) {
+        repeat = Integer.parseInt(args[0]);
+      }
+      if (args.length > 1) {
+        count = Integer.parseInt(args[1]);
+      }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      printUsage();
+      System.exit(1);
+    }
+
+    Register[] regs = new Register[count];
+    for (int i = 0; i < count; i++) {
+      regs[i] = new SimpleRegister(i);
+    }
+    ReadMultipleRegistersResponse res = new ReadMultipleRegistersResponse(regs);
+    ReadMultipleRegistersRequest req = new ReadMultipleRegistersRequest(0, count);
+
+    try {
+      //warm up, then measure
+      for (int n = 0; n < 2; n++) {
+        boolean print = (n == 1);
+        benchStream("request  stream", req, new ReadMultipleRegistersRequest(), repeat, print);
+        benchBuffer("request  heap  ", req, new ReadMultipleRegistersRequest(),
+            ByteBuffer.allocate(Modbus.MAX_MESSAGE_LENGTH + 6), repeat, print);
+        benchBuffer("request  direct", req, new ReadMultipleRegistersRequest(),
+            ByteBuffer.allocateDirect(Modbus.MAX_MESSAGE_LENGTH + 6), repeat, print);
+        benchStream("response stream", res, new ReadMultipleRegistersResponse(), repeat, print);
+        benchBuffer("response heap  ", res, new ReadMultipleRegistersResponse(),
+            ByteBuffer.allocate(Modbus.MAX_MESSAGE_LENGTH + 6), repeat, print);
+        benchBuffer("response direct", res, new ReadMultipleRegistersResponse(),
+            ByteBuffer.allocateDirect(Modbus.MAX_MESSAGE_LENGTH + 6), repeat, print);
+      }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+    }
+  }//main
+
+  private static void benchStream(String name, ModbusMessage msg, ModbusMessage in,
+                                  int repeat, boolean print)
+      throws Exception {
+    BytesOutputStream out = new BytesOutputStream(Modbus.MAX_MESSAGE_LENGTH + 6);
+    BytesInputStream bin = new BytesInputStream(Modbus.MAX_MESSAGE_LENGTH + 6);
+    long start = System.nanoTime();
+    for (int i = 0; i < repeat; i++) {
+      out.reset();
+      msg.writeTo(out);
+      bin.reset(out.getBuffer(), out.size());
+      in.readFrom(bin);
+    }
+    report(name, start, repeat, print);
+  }//benchStream
+
+  private static void benchBuffer(String name, ModbusMessage msg, ModbusMessage in,
+                                  ByteBuffer buf, int repeat, boolean print)
+      throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < repeat; i++) {
+      buf.clear();
+      msg.writeTo(buf);
+      buf.flip();
+      in.readFrom(buf);
+    }
+    report(name, start, repeat, print);
+  }//benchBuffer
+
+  private static void report(String name, long start, int repeat, boolean print) {
+    if (print) {
+      long ns = System.nanoTime() - start;
+      System.out.println(name + ": " + (ns / repeat) + " ns per encode/decode");
+    }
+  }//report
+
+  private static void printUsage() {
+    System.out.println(
+        "java net.wimpi.modbus.cmd.CodecBenchmark {<repeat [int]> {<wordcount [int]>}}"
+    );
+  }//printUsage
+
+}//class CodecBenchmark
@@ -0,0 +1,191 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.cmd;
+
+import java.lang.management.ManagementFactory;
+
+import net.wimpi.modbus.util.ModbusUtil;
+import net.wimpi.modbus.util.RegisterCodec;
+
+/**
+ * Class that implements a simple commandline
+ * tool for comparing the per value conversions of
+ * <tt>ModbusUtil</tt> with the bulk conversions of
+ * <tt>RegisterCodec</tt>, for a full register payload.
+ * <p>
+ * Reports the time and the bytes allocated per value.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class RegisterCodecBenchmark {
+
+  private static com.sun.management.ThreadMXBean c_ThreadMX;
+  private static double c_Sink;
+
+  public static void main(String[] args) {
+
+    int repeat = 200000;
+    int wordcount = 124;
+
+    try {
+      if (args.length > 0) {
+        repeat = Integer.parseInt(args[0]);
+      }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      printUsage();
+      System.exit(1);
+    }
+
+    java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+    if (mx instanceof com.sun.management.ThreadMXBean) {
+      c_ThreadMX = (com.sun.management.ThreadMXBean) mx;
+    }
+
+    byte[] payload = new byte[wordcount * 2];
+    float[] floats = new float[wordcount / 2];
+    double[] doubles = new double[wordcount / 4];
+    for (int i = 0; i < floats.length; i++) {
+      floats[i] = i * 1.5f;
+    }
+    for (int i = 0; i < doubles.length; i++) {
+      doubles[i] = i * 2.5;
+    }
+
+    //warm up, then measure
+    for (int n = 0; n < 2; n++) {
+      boolean print = (n == 1);
+      benchUtilFloats(payload, floats, repeat, print);
+      benchCodecFloats("float  decode ABCD ", RegisterCodec.BIG_ENDIAN, payload, floats, repeat, print);
+      benchCodecFloats("float  decode CDAB ", RegisterCodec.WORD_SWAPPED, payload, floats, repeat, print);
+      benchUtilDoubles(payload, doubles, repeat, print);
+      benchCodecDoubles("double decode ABCD ", RegisterCodec.BIG_ENDIAN, payload, doubles, repeat, print);
+      benchCodecDoubles("double decode DCBA ", RegisterCodec.LITTLE_ENDIAN, payload, doubles, repeat, print);
+      benchCodecEncode(payload, floats, repeat, print);
+    }
+  }//main
+
+  private static void benchUtilFloats(byte[] payload, float[] floats,
+                                      int repeat, boolean print) {
+    long[] mark = mark();
+    for (int r = 0; r < repeat; r++) {
+      for (int i = 0; i < floats.length; i++) {
+        byte[] bytes = ModbusUtil.floatToRegisters(floats[i]);
+        System.arraycopy(bytes, 0, payload, i * 4, 4);
+      }
+      for (int i = 0; i < floats.length; i++) {
+        byte[] bytes = new byte[4];
+        System.arraycopy(payload, i * 4, bytes, 0, 4);
+        floats[i] = ModbusUtil.registersToFloat(bytes);
+      }
+    }
+    report("float  ModbusUtil  ", mark, repeat * floats.length, print);
+  }//benchUtilFloats
+
+  private static void benchCodecFloats(String name, RegisterCodec codec, byte[] payload,
+                                       float[] floats, int repeat, boolean print) {
+    codec.encodeFloats(floats, 0, payload, 0, floats.length);
+    long[] mark = mark();
+    for (int r = 0; r < repeat; r++) {
+      codec.decodeFloats(payload, 0, floats, 0, floats.length);
+      c_Sink += floats[r % floats.length];
+    }
+    report(name, mark, repeat * floats.length, print);
+  }//benchCodecFloats
+
+  private static void benchUtilDoubles(byte[] payload, double[] doubles,
+                                       int repeat, boolean print) {
+    long[] mark = mark();
+    for (int r = 0; r < repeat; r++) {
+      for (int i = 0; i < doubles.length; i++) {
+        byte[] bytes = ModbusUtil.doubleToRegisters(doubles[i]);
+        System.arraycopy(bytes, 0, payload, i * 8, 8);
+      }
+      for (int i = 0; i < doubles.length; i++) {
+        byte[] bytes = new byte[8];
+        System.arraycopy(payload, i * 8, bytes, 0, 8);
+        doubles[i] = ModbusUtil.registersToDouble(bytes);
+      }
+    }
+    report("double ModbusUtil  ", mark, repeat * doubles.length, print);
+  }//benchUtilDoubles
+
+  private static void benchCodecDoubles(String name, RegisterCodec codec, byte[] payload,
+                                        double[] doubles, int repeat, boolean print) {
+    codec.encodeDoubles(doubles, 0, payload, 0, doubles.length);
+    long[] mark = mark();
+    for (int r = 0; r < repeat; r++) {
+      codec.decodeDoubles(payload, 0, doubles, 0, doubles.length);
+      c_Sink += doubles[r % doubles.length];
+    }
+    report(name, mark, repeat * doubles.length, print);
+  }//benchCodecDoubles
+
+  private static void benchCodecEncode(byte[] payload, float[] floats,
+                                       int repeat, boolean print) {
+    long[] mark = mark();
+    for (int r = 0; r < repeat; r++) {
+      RegisterCodec.WORD_SWAPPED.encodeFloats(floats, 0, payload, 0, floats.length);
+    }
+    report("float  encode CDAB ", mark, repeat * floats.length, print);
+  }//benchCodecEncode
+
+  private static long[] mark() {
+    return new long[]{System.nanoTime(), allocated()};
+  }//mark
+
+  private static long allocated() {
+    if (c_ThreadMX == null) {
+      return 0;
+    }
+    return c_ThreadMX.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }//allocated
+
+  private static void report(String name, long[] mark, long values, boolean print) {
+    long ns = System.nanoTime() - mark[0];
+    long bytes = allocated() - mark[1];
+    if (print) {
+      System.out.println(name + ": " + (Math.round(ns * 100.0 / values) / 100.0) + " ns, "
+          + (bytes / values) + " bytes per value");
+    }
+  }//report
+
+  private static void printUsage() {
+    System.out.println(
+        "java net.wimpi.modbus.cmd.RegisterCodecBenchmark {<repeat [int]>}"
+    );
+  }//printUsage
+
+}//class RegisterCodecBenchmark
@@ -0,0 +1,422 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.facade;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+
+import net.wimpi.modbus.ModbusException;
+import net.wimpi.modbus.ModbusSlaveException;
+import net.wimpi.modbus.io.ModbusResponseListener;
+import net.wimpi.modbus.io.ModbusTCPPipeline;
+import net.wimpi.modbus.msg.*;
+import net.wimpi.modbus.net.TCPMasterConnection;
+import net.wimpi.modbus.procimg.InputRegister;
+import net.wimpi.modbus.procimg.Register;
+import net.wimpi.modbus.util.BitVector;
+
+/**
+ * Asynchronous Modbus/TCP Master facade.
+ * <p>
+ * Unlike <tt>ModbusTCPMaster</tt>, calls do not wait for the
+ * slave to respond, but return a <tt>CompletableFuture</tt> that
+ * is completed when the response arrives. All callers share a
+ * single connection, on which requests are pipelined through a
+ * <tt>ModbusTCPPipeline</tt>; calls only block while the window
+ * of requests in flight is full.
+ * <p>
+ * Futures complete exceptionally with a <tt>ModbusSlaveException</tt>
+ * if the slave answered with an exception, and with a
+ * <tt>ModbusIOException</tt> if the transaction timed out or the
+ * connection failed. Futures are completed from the thread reading
+ * the responses, so dependent stages should not block.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class ModbusTCPAsyncMaster {
+
+	/**
+	 * Defines the default number of requests in flight.
+	 * Slaves that serve one request at a time still answer
+	 * the queued requests in order, but the round trip between
+	 * them is saved. Use a window of 1 for slaves that cannot
+	 * buffer more than one request per connection.
+	 */
+	public static final int DEFAULT_WINDOW = 8;
+
+	private TCPMasterConnection m_Connection;
+	private InetAddress m_SlaveAddress;
+	private ModbusTCPPipeline m_Pipeline;
+
+	/**
+	 * Constructs a new asynchronous master facade instance for
+	 * communication with a given slave.
+	 *
+	 * @param addr an internet address as resolvable IP name or IP number,
+	 *        specifying the slave to communicate with.
+	 * @param port the port the slave is listening to.
+	 * @param window the maximum number of requests in flight.
+	 */
+	public ModbusTCPAsyncMaster(String addr, int port, int window) {
+		try {
+			m_SlaveAddress = InetAddress.getByName(addr);
+			m_Connection = new TCPMasterConnection(m_SlaveAddress);
+			m_Connection.setPort(port);
+			m_Pipeline = new ModbusTCPPipeline(m_Connection, window);
+		} catch (UnknownHostException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+	}//constructor
+
+	/**
+	 * Constructs a new asynchronous master facade instance for
+	 * communication with a given slave, allowing
+	 * {@link #DEFAULT_WINDOW} requests in flight.
+	 *
+	 * @param addr an internet address as resolvable IP name or IP number,
+	 *        specifying the slave to communicate with.
+	 * @param port the port the slave is listening to.
+	 */
+	public ModbusTCPAsyncMaster(String addr, int port) {
+		this(addr, port, DEFAULT_WINDOW);
+	}//constructor
+
+	/**
+	 * Connects this <tt>ModbusTCPAsyncMaster</tt> with the slave.
+	 *
+	 * @throws Exception if the connection cannot be established.
+	 */
+	public void connect()
+			throws Exception {
+		m_Pipeline.open();
+	}//connect
+
+	/**
+	 * Disconnects this <tt>ModbusTCPAsyncMaster</tt> from the slave.
+	 * Pending futures complete exceptionally.
+	 */
+	public void disconnect() {
+		m_Pipeline.close();
+	}//disconnect
+
+	/**
+	 * Sets the default timeout for calls in milliseconds.
+	 *
+	 * @param timeout the timeout as <tt>int</tt>, 0 for no timeout.
+	 */
+	public void setTimeout(int timeout) {
+		m_Pipeline.setTimeout(timeout);
+	}//setTimeout
+
+	/**
+	 * Returns the default timeout for calls in milliseconds.
+	 *
+	 * @return the timeout as <tt>int</tt>.
+	 */
+	public int getTimeout() {
+		return m_Pipeline.getTimeout();
+	}//getTimeout
+
+	/**
+	 * Sets the maximum number of requests in flight.
+	 *
+	 * @param window the window size as <tt>int</tt>.
+	 */
+	public void setWindowSize(int window) {
+		m_Pipeline.setWindowSize(window);
+	}//setWindowSize
+
+	/**
+	 * Returns the maximum number of requests in flight.
+	 *
+	 * @return the window size as <tt>int</tt>.
+	 */
+	public int getWindowSize() {
+		return m_Pipeline.getWindowSize();
+	}//getWindowSize
+
+	/**
+	 * Reads a given number of coil states from the slave.
+	 *
+	 * @param ref the offset of the coil to start reading from.
+	 * @param count the number of coil states to be read.
+	 * @return a future for the received coil states.
+	 */
+	public CompletableFuture<BitVector> readCoils(int ref, int count) {
+		return readCoils(ref, count, getTimeout());
+	}//readCoils
+
+	/**
+	 * Reads a given number of coil states from the slave.
+	 *
+	 * @param ref the offset of the coil to start reading from.
+	 * @param count the number of coil states to be read.
+	 * @param timeout the timeout in milliseconds, 0 for no timeout.
+	 * @return a future for the received coil states.
+	 */
+	public CompletableFuture<BitVector> readCoils(int ref, final int count, long timeout) {
+		return submit(new ReadCoilsRequest(ref, count), timeout)
+				.thenApply(res -> toBitVector(((ReadCoilsResponse) res).getCoils(), count));
+	}//readCoils
+
+	/**
+	 * Writes a coil state to the slave.
+	 *
+	 * @param ref the offset of the coil to be written.
+	 * @param state the coil state to be written.
+	 * @return a future for the coil state reported by the slave.
+	 */
+	public CompletableFuture<Boolean> writeCoil(int ref, boolean state) {
+		return writeCoil(ref, state, getTimeout());
+	}//writeCoil
+
+	/**
+	 * Writes a coil state to the slave.
+	 *
+	 * @param ref the offset of the coil to be written.
+	 * @param state the coil state to be written.
+	 * @param timeout the timeout in milliseconds, 0 for no timeout.
+	 * @return a future for the coil state reported by the slave.
+	 */
+	public CompletableFuture<Boolean> writeCoil(int ref, boolean state, long timeout) {
+		return submit(new WriteCoilRequest(ref, state), timeout)
+				.thenApply(res -> Boolean.valueOf(((WriteCoilResponse) res).getCoil()));
+	}//writeCoil
+
+	/**
+	 * Writes a given number of coil states to the slave.
+	 *
+	 * @param ref the offset of the coil to start writing to.
+	 * @param count the number of coil states to be written.
+	 * @param coils a <tt>BitVector</tt> which holds the coil states to be written.
+	 * @return a future that completes when the slave has responded.
+	 */
+	public CompletableFuture<Void> writeMultipleCoils(int ref, int count, BitVector coils) {
+		return writeMultipleCoils(ref, count, coils, getTimeout());
+	}//writeMultipleCoils
+
+	/**
+	 * Writes a given number of coil states to the slave.
+	 *
+	 * @param ref the offset of the coil to start writing to.
+	 * @param count the number of coil states to be written.
+	 * @param coils a <tt>BitVector</tt> which holds the coil states to be written.
+	 * @param timeout the timeout in milliseconds, 0 for no timeout.
+	 * @return a future that completes when the slave has responded.
+	 */
+	public CompletableFuture<Void> writeMultipleCoils(int ref, int count, BitVector coils,
+			long timeout) {
+		WriteMultipleCoilsRequest req = new WriteMultipleCoilsRequest(ref, count);
+		req.getCoils().setBytes(coils.getBytes(), count);
+		return submit(req, timeout).thenApply(res -> null);
+	}//writeMultipleCoils
+
+	/**
+	 * Reads a given number of input discrete states from the slave.
+	 *
+	 * @param ref the offset of the input discrete to start reading from.
+	 * @param count the number of input discrete states to be read.
+	 * @return a future for the received input discrete states.
+	 */
+	public CompletableFuture<BitVector> readInputDiscretes(int ref, int count) {
+		return readInputDiscretes(ref, count, getTimeout());
+	}//readInputDiscretes
+
+	/**
+	 * Reads a given number of input discrete states from the slave.
+	 *
+	 * @param ref the offset of the input discrete to start reading from.
+	 * @param count the number of input discrete states to be read.
+	 * @param timeout the timeout in milliseconds, 0 for no timeout.
+	 * @return a future for the received input discrete states.
+	 */
+	public CompletableFuture<BitVector> readInputDiscretes(int ref, final int count,
+			long timeout) {
+		return submit(new ReadInputDiscretesRequest(ref, count), timeout)
+				.thenApply(res -> toBitVector(((ReadInputDiscretesResponse) res).getDiscretes(), count));
+	}//readInputDiscretes
+
+	/**
+	 * Reads a given number of input registers from the slave.
+	 *
+	 * @param ref the offset of the input register to start reading from.
+	 * @param count the number of input registers to be read.
+	 * @return a future for the received input registers.
+	 */
+	public CompletableFuture<InputRegister[]> readInputRegisters(int ref, int count) {
+		return readInputRegisters(ref, count, getTimeout());
+	}//readInputRegisters
+
+	/**
+	 * Reads a given number of input registers from the slave.
+	 *
+	 * @param ref the offset of the input register to start reading from.
+	 * @param count the number of input registers to be read.
+	 * @param timeout the timeout in milliseconds, 0 for no timeout.
+	 * @return a future for the received input registers.
+	 */
+	public CompletableFuture<InputRegister[]> readInputRegisters(int ref, int count,
+			long timeout) {
+		return submit(new ReadInputRegistersRequest(ref, count), timeout)
+				.thenApply(res -> ((ReadInputRegistersResponse) res).getRegisters());
+	}//readInputRegisters
+
+	/**
+	 * Reads a given number of registers from the slave.
+	 *
+	 * @param ref the offset of the register to start reading from.
+	 * @param count the number of registers to be read.
+	 * @return a future for the received registers.
+	 */
+	public CompletableFuture<Register[]> readMultipleRegisters(int ref, int count) {
+		return readMultipleRegisters(ref, count, getTimeout());
+	}//readMultipleRegisters
+
+	/**
+	 * Reads a given number of registers from the slave.
+	 *
+	 * @param ref the offset of the register to start reading from.
+	 * @param count the number of registers to be read.
+	 * @param timeout the timeout in milliseconds, 0 for no timeout.
+	 * @return a future for the received registers.
+	 */
+	public CompletableFuture<Register[]> readMultipleRegisters(int ref, int count,
+			long timeout) {
+		return submit(new ReadMultipleRegistersRequest(ref, count), timeout)
+				.thenApply(res -> ((ReadMultipleRegistersResponse) res).getRegisters());
+	}//readMultipleRegisters
+
+	/**
+	 * Writes a register to the slave.
+	 *
+	 * @param ref the offset of the register to be written.
+	 * @param register a <tt>Register</tt> holding the value of the register
+	 *        to be written.
+	 * @return a future that completes when the slave has responded.
+	 */
+	public CompletableFuture<Void> writeSingleRegister(int ref, Register register) {
+		return writeSingleRegister(ref, register, getTimeout());
+	}//writeSingleRegister
+
+	/**
+	 * Writes a register to the slave.
+	 *
+	 * @param ref the offset of the register to be written.
+	 * @param register a <tt>Register</tt> holding the value of the register
+	 *        to be written.
+	 * @param timeout the timeout in milliseconds, 0 for no timeout.
+	 * @return a future that completes when the slave has responded.
+	 */
+	public CompletableFuture<Void> writeSingleRegister(int ref, Register register,
+			long timeout) {
+		return submit(new WriteSingleRegisterRequest(ref, register), timeout)
+				.thenApply(res -> null);
+	}//writeSingleRegister
+
+	/**
+	 * Writes a number of registers to the slave.
+	 *
+	 * @param ref the offset of the register to start writing to.
+	 * @param registers a <tt>Register[]</tt> holding the values of
+	 *        the registers to be written.
+	 * @return a future that completes when the slave has responded.
+	 */
+	public CompletableFuture<Void> writeMultipleRegisters(int ref, Register[] registers) {
+		return writeMultipleRegisters(ref, registers, getTimeout());
+	}//writeMultipleRegisters
+
+	/**
+	 * Writes a number of registers to the slave.
+	 *
+	 * @param ref the offset of the register to start writing to.
+	 * @param registers a <tt>Register[]</tt> holding the values of
+	 *        the registers to be written.
+	 * @param timeout the timeout in milliseconds, 0 for no timeout.
+	 * @return a future that completes when the slave has responded.
+	 */
+	public CompletableFuture<Void> writeMultipleRegisters(int ref, Register[] registers,
+			long timeout) {
+		return submit(new WriteMultipleRegistersRequest(ref, registers), timeout)
+				.thenApply(res -> null);
+	}//writeMultipleRegisters
+
+	/**
+	 * Sends the given request through the pipeline.
+	 *
+	 * @param req the <tt>ModbusRequest</tt> to be sent.
+	 * @param timeout the timeout in milliseconds, 0 for no timeout.
+	 * @return a future for the response.
+	 */
+	private CompletableFuture<ModbusResponse> submit(ModbusRequest req, long timeout) {
+		final CompletableFuture<ModbusResponse> f = new CompletableFuture<ModbusResponse>();
+		try {
+			m_Pipeline.send(req, timeout, new ModbusResponseListener() {
+				public void responseReceived(ModbusRequest req, ModbusResponse res) {
+					if (res instanceof ExceptionResponse) {
+						f.completeExceptionally(
+								new ModbusSlaveException(((ExceptionResponse) res).getExceptionCode())
+								);
+					} else {
+						f.complete(res);
+					}
+				}
+
+				public void transactionFailed(ModbusRequest req, ModbusException ex) {
+					f.completeExceptionally(ex);
+				}
+			});
+		} catch (ModbusException ex) {
+			f.completeExceptionally(ex);
+		}
+		return f;
+	}//submit
+
+	/**
+	 * Copies the given number of bits into a new
+	 * <tt>BitVector</tt>.
+	 *
+	 * @param bits the received <tt>BitVector</tt>.
+	 * @param count the number of bits requested.
+	 * @return a <tt>BitVector</tt> of the requested size.
+	 */
+	private static BitVector toBitVector(BitVector bits, int count) {
+		BitVector bv = new BitVector(count);
+		bv.setStartLSB(true);
+		bv.setBytes(bits.getBytes(), count);
+		return bv;
+	}//toBitVector
+
+}//class ModbusTCPAsyncMaster
@@ -44,6 +44,8 @@ import net.wimpi.modbus.util.BitVector;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Modbus/UDP Master facade.
@@ -64,6 +66,7 @@ public class ModbusUDPMaster {
   private ReadMultipleRegistersRequest m_ReadMultipleRegistersRequest;
   private WriteSingleRegisterRequest m_WriteSingleRegisterRequest;
   private WriteMultipleRegistersRequest m_WriteMultipleRegistersRequest;
+  private ReadCache m_ReadCache;
 
   /**
    * Constructs a new master facade instance for communication
@@ -137,11 +140,8 @@ public class ModbusUDPMaster {
       throws ModbusException {
     m_ReadCoilsRequest.setReference(ref);
     m_ReadCoilsRequest.setBitCount(count);
-    m_Transaction.setRequest(m_ReadCoilsRequest);
     try {
-      m_Transaction.execute();
-      coils.setBytes(((ReadCoilsResponse) m_Transaction.getResponse()).getCoils().getBytes(),
-          count);
+      coils.setBytes(((ReadCoilsResponse) execute(m_ReadCoilsRequest)).getCoils().getBytes(), count);
       return 0;
     } catch (ModbusException ex) {
       if (ex instanceof ModbusSlaveException) {
@@ -165,9 +165,8 @@ public class ModbusUDPMaster {
 
     m_WriteCoilRequest.setReference(ref);
     m_WriteCoilRequest.setCoil(state);
-    m_Transaction.setRequest(m_WriteCoilRequest);
     try {
-      m_Transaction.execute();
+      execute(m_WriteCoilRequest);
       return 0;
     } catch (ModbusException ex) {
       if (ex instanceof ModbusSlaveException) {
@@ -194,9 +193,8 @@ public class ModbusUDPMaster {
     m_WriteMultipleCoilsRequest.setBitCount(count);
     m_WriteMultipleCoilsRequest.getCoils()
         .setBytes(coils.getBytes(), count);
-    m_Transaction.setRequest(m_WriteMultipleCoilsRequest);
     try {
-      m_Transaction.execute();
+      execute(m_WriteMultipleCoilsRequest);
       return 0;
     } catch (ModbusException ex) {
       if (ex instanceof ModbusSlaveException) {
@@ -221,11 +219,8 @@ public class ModbusUDPMaster {
       throws ModbusException {
     m_ReadInputDiscretesRequest.setReference(ref);
     m_ReadInputDiscretesRequest.setBitCount(count);
-    m_Transaction.setRequest(m_ReadInputDiscretesRequest);
     try {
-      m_Transaction.execute();
-      indisc.setBytes(((ReadInputDiscretesResponse) m_Transaction.getResponse()).getDiscretes().getBytes(),
-          count);
+      indisc.setBytes(((ReadInputDiscretesResponse) execute(m_ReadInputDiscretesRequest)).getDiscretes().getBytes(), count);
       return 0;
     } catch (ModbusException ex) {
       if (ex instanceof ModbusSlaveException) {
@@ -251,12 +246,10 @@ public class ModbusUDPMaster {
       throws ModbusException {
     m_ReadInputRegistersRequest.setReference(ref);
     m_ReadInputRegistersRequest.setWordCount(count);
-    m_Transaction.setRequest(m_ReadInputRegistersRequest);
     try {
-      m_Transaction.execute();
-      ReadInputRegistersResponse res = (ReadInputRegistersResponse) m_Transaction.getResponse();
+      ReadInputRegistersResponse res = (ReadInputRegistersResponse) execute(m_ReadInputRegistersRequest);
       for (int i = 0; i < count; i++) {
-        registers[i] = (SimpleInputRegister) res.getRegister(i);
+        registers[i] = new SimpleInputRegister(res.getRegisterValue(i));
       }
       return 0;
     } catch (ModbusException ex) {
@@ -267,6 +260,56 @@ public class ModbusUDPMaster {
     }
   }//readInputRegisters
 
+  /**
+   * Reads a given number of input registers from the slave,
+   * into the given array.
+   * <p>
+   * The values are decoded straight from the response,
+   * without creating register instances.
+   *
+   * @param ref    (IN) the offset of the input register to start reading from.
+   * @param count  (IN) the number of input registers to be read.
+   * @param values (OUT) a <tt>short[]</tt> which will be used to return
+   *               the received input register values as signed <tt>short</tt>.
+   * @param offset (IN) the index in the array where the first value is stored.
+   * @return 0 if the slave responded correctly, the code of the slave exception otherwise.
+   * @throws net.wimpi.modbus.ModbusException
+   *          if the command transaction fails.
+   */
+  public synchronized int readInputRegisters(int ref, int count, short[] values, int offset)
+      throws ModbusException {
+    m_ReadInputRegistersRequest.setReference(ref);
+    m_ReadInputRegistersRequest.setWordCount(count);
+    return readRegisterValues(m_ReadInputRegistersRequest, count,
+        res -> ((ReadInputRegistersResponse) res)::getRegisterValue,
+        (i, value) -> values[offset + i] = (short) value);
+  }//readInputRegisters
+
+  /**
+   * Reads a given number of input registers from the slave,
+   * into the given array.
+   * <p>
+   * The values are decoded straight from the response,
+   * without creating register instances.
+   *
+   * @param ref    (IN) the offset of the input register to start reading from.
+   * @param count  (IN) the number of input registers to be read.
+   * @param values (OUT) a <tt>int[]</tt> which will be used to return
+   *               the received input register values as unsigned <tt>int</tt>.
+   * @param offset (IN) the index in the array where the first value is stored.
+   * @return 0 if the slave responded correctly, the code of the slave exception otherwise.
+   * @throws net.wimpi.modbus.ModbusException
+   *          if the command transaction fails.
+   */
+  public synchronized int readInputRegisters(int ref, int count, int[] values, int offset)
+      throws ModbusException {
+    m_ReadInputRegistersRequest.setReference(ref);
+    m_ReadInputRegistersRequest.setWordCount(count);
+    return readRegisterValues(m_ReadInputRegistersRequest, count,
+        res -> ((ReadInputRegistersResponse) res)::getRegisterValue,
+        (i, value) -> values[offset + i] = value);
+  }//readInputRegisters
+
   /**
    * Reads a given number of registers from the slave.
    *
@@ -284,12 +327,10 @@ public class ModbusUDPMaster {
 
     m_ReadMultipleRegistersRequest.setReference(ref);
     m_ReadMultipleRegistersRequest.setWordCount(count);
-    m_Transaction.setRequest(m_ReadMultipleRegistersRequest);
     try {
-      m_Transaction.execute();
-      ReadMultipleRegistersResponse res = (ReadMultipleRegistersResponse) m_Transaction.getResponse();
+      ReadMultipleRegistersResponse res = (ReadMultipleRegistersResponse) execute(m_ReadMultipleRegistersRequest);
       for (int i = 0; i < count; i++) {
-        registers[i] = (SimpleRegister) res.getRegister(i);
+        registers[i] = new SimpleRegister(res.getRegisterValue(i));
       }
       return 0;
     } catch (ModbusException ex) {
@@ -300,6 +341,56 @@ public class ModbusUDPMaster {
     }
   }//readMultipleRegisters
 
+  /**
+   * Reads a given number of registers from the slave,
+   * into the given array.
+   * <p>
+   * The values are decoded straight from the response,
+   * without creating register instances.
+   *
+   * @param ref    (IN) the offset of the register to start reading from.
+   * @param count  (IN) the number of registers to be read.
+   * @param values (OUT) a <tt>short[]</tt> which will be used to return
+   *               the received register values as signed <tt>short</tt>.
+   * @param offset (IN) the index in the array where the first value is stored.
+   * @return 0 if the slave responded correctly, the code of the slave exception otherwise.
+   * @throws net.wimpi.modbus.ModbusException
+   *          if the command transaction fails.
+   */
+  public synchronized int readMultipleRegisters(int ref, int count, short[] values, int offset)
+      throws ModbusException {
+    m_ReadMultipleRegistersRequest.setReference(ref);
+    m_ReadMultipleRegistersRequest.setWordCount(count);
+    return readRegisterValues(m_ReadMultipleRegistersRequest, count,
+        res -> ((ReadMultipleRegistersResponse) res)::getRegisterValue,
+        (i, value) -> values[offset + i] = (short) value);
+  }//readMultipleRegisters
+
+  /**
+   * Reads a given number of registers from the slave,
+   * into the given array.
+   * <p>
+   * The values are decoded straight from the response,
+   * without creating register instances.
+   *
+   * @param ref    (IN) the offset of the register to start reading from.
+   * @param count  (IN) the number of registers to be read.
+   * @param values (OUT) a <tt>int[]</tt> which will be used to return
+   *               the received register values as unsigned <tt>int</tt>.
+   * @param offset (IN) the index in the array where the first value is stored.
+   * @return 0 if the slave responded correctly, the code of the slave exception otherwise.
+   * @throws net.wimpi.modbus.ModbusException
+   *          if the command transaction fails.
+   */
+  public synchronized int readMultipleRegisters(int ref, int count, int[] values, int offset)
+      throws ModbusException {
+    m_ReadMultipleRegistersRequest.setReference(ref);
+    m_ReadMultipleRegistersRequest.setWordCount(count);
+    return readRegisterValues(m_ReadMultipleRegistersRequest, count,
+        res -> ((ReadMultipleRegistersResponse) res)::getRegisterValue,
+        (i, value) -> values[offset + i] = value);
+  }//readMultipleRegisters
+
   /**
    * Writes a register to the slave.
    *
@@ -315,9 +406,8 @@ public class ModbusUDPMaster {
 
     m_WriteSingleRegisterRequest.setReference(ref);
     m_WriteSingleRegisterRequest.setRegister(register);
-    m_Transaction.setRequest(m_WriteSingleRegisterRequest);
     try {
-      m_Transaction.execute();
+      execute(m_WriteSingleRegisterRequest);
       return 0;
     } catch (ModbusException ex) {
       if (ex instanceof ModbusSlaveException) {
@@ -342,9 +432,8 @@ public class ModbusUDPMaster {
 
     m_WriteMultipleRegistersRequest.setReference(ref);
     m_WriteMultipleRegistersRequest.setRegisters(registers);
-    m_Transaction.setRequest(m_WriteMultipleRegistersRequest);
     try {
-      m_Transaction.execute();
+      execute(m_WriteMultipleRegistersRequest);
       return 0;
     } catch (ModbusException ex) {
       if (ex instanceof ModbusSlaveException) {
@@ -354,4 +443,97 @@ public class ModbusUDPMaster {
     }
   }//writeMultipleRegisters
 
+  /**
+   * Sets the cache used to serve reads, or null to disable caching.
+   * <p>
+   * The cache may be shared with other masters; writes through
+   * this master invalidate the overlapping entries.
+   *
+   * @param cache the <tt>ReadCache</tt> to be used.
+   */
+  public synchronized void setReadCache(ReadCache cache) {
+    m_ReadCache = cache;
+  }//setReadCache
+
+  /**
+   * Returns the cache used to serve reads.
+   *
+   * @return the <tt>ReadCache</tt>, or null if not caching.
+   */
+  public synchronized ReadCache getReadCache() {
+    return m_ReadCache;
+  }//getReadCache
+
+  /**
+   * Executes the given register read request and hands the
+   * received values to the given sink, without creating
+   * register instances.
+   *
+   * @param request the prepared register read request.
+   * @param count the number of registers to be read.
+   * @param source returns the value source of the response,
+   *        i.e. its <tt>getRegisterValue</tt> method.
+   * @param sink receives each value with its index.
+   * @return 0 if the slave responded correctly, the code of the slave exception otherwise.
+   *
+   * @throws ModbusException if the command transaction fails.
+   */
+  private int readRegisterValues(ModbusRequest request, int count,
+      Function<ModbusResponse, IntUnaryOperator> source, RegisterValueSink sink)
+      throws ModbusException {
+    try {
+      IntUnaryOperator values = source.apply(execute(request));
+      for (int i = 0; i < count; i++) {
+        sink.set(i, values.applyAsInt(i));
+      }
+      return 0;
+    } catch (ModbusException ex) {
+      if (ex instanceof ModbusSlaveException) {
+        return ((ModbusSlaveException) ex).getType();
+      }
+      throw ex;
+    }
+  }//readRegisterValues
+
+  /**
+   * Executes the given request, serving reads from the
+   * cache if possible.
+   *
+   * @param request the <tt>ModbusRequest</tt> to be executed.
+   * @return the <tt>ModbusResponse</tt>.
+   * @throws ModbusException if the command transaction fails.
+   */
+  private ModbusResponse execute(ModbusRequest request)
+      throws ModbusException {
+    if (m_ReadCache == null) {
+      m_Transaction.setRequest(request);
+      m_Transaction.execute();
+      return m_Transaction.getResponse();
+    }
+    String slave = m_SlaveAddress.getHostAddress() + ":" + m_Connection.getPort();
+    ModbusResponse response = m_ReadCache.get(slave, request);
+    if (response != null) {
+      return response;
+    }
+    //taken before the read, so a write completing meanwhile is noticed
+    long generation = m_ReadCache.getGeneration(slave, request.getUnitID());
+    try {
+      m_Transaction.setRequest(request);
+      m_Transaction.execute();
+      response = m_Transaction.getResponse();
+      return response;
+    } finally {
+      //writes invalidate even if they failed, they may have been applied
+      m_ReadCache.update(slave, request, response, generation);
+    }
+  }//execute
+
+  /**
+   * Receives the register values decoded by
+   * <tt>readRegisterValues</tt>.
+   */
+  private interface RegisterValueSink {
+    void set(int index, int value);
+  }//interface RegisterValueSink
+
 }//class ModbusUDPMaster
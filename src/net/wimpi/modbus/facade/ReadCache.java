@@ -0,0 +1,439 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.facade;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.msg.ExceptionResponse;
+import net.wimpi.modbus.msg.ModbusRequest;
+import net.wimpi.modbus.msg.ModbusResponse;
+import net.wimpi.modbus.msg.ReadCoilsRequest;
+import net.wimpi.modbus.msg.ReadInputDiscretesRequest;
+import net.wimpi.modbus.msg.ReadInputRegistersRequest;
+import net.wimpi.modbus.msg.ReadMultipleRegistersRequest;
+import net.wimpi.modbus.msg.WriteCoilRequest;
+import net.wimpi.modbus.msg.WriteMultipleCoilsRequest;
+import net.wimpi.modbus.msg.WriteMultipleRegistersRequest;
+import net.wimpi.modbus.msg.WriteSingleRegisterRequest;
+
+/**
+ * Class implementing a cache for the responses to
+ * read requests (function codes 1 to 4), which can be
+ * set on the master facades.
+ * <p>
+ * Entries are keyed by slave, unit, function code and address
+ * range, and are served until they exceed their maximum age.
+ * The maximum age can be set for address ranges, falling
+ * back to a default. Writes through a master using the cache
+ * invalidate all entries overlapping the written range.
+ * <p>
+ * Every invalidation advances the generation of the slave and
+ * unit. A master takes the generation before it executes a read,
+ * and the response is only stored if no write invalidated entries
+ * of the same slave and unit meanwhile; otherwise a read that was
+ * answered before the write could store an outdated value.
+ * <p>
+ * The cache holds at most the given number of entries, evicting
+ * the least recently used one. Responses are kept as their encoded
+ * data (at most 253 bytes each), so every hit returns a response
+ * instance of its own.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class ReadCache {
+
+  //instance attributes
+  private LinkedHashMap<String, Entry> m_Entries;
+  private int m_MaxEntries;
+  private long m_DefaultMaxAge;
+  private Vector<Rule> m_Rules;
+  //slave and unit -> generation of the last invalidation
+  private Map<String, Long> m_Generations = new HashMap<String, Long>();
+  private long m_Generation;
+  private long m_HitCount;
+  private long m_MissCount;
+  private long m_EvictionCount;
+  private long m_InvalidationCount;
+
+  /**
+   * Constructs a new <tt>ReadCache</tt> instance.
+   *
+   * @param maxEntries the maximum number of entries held.
+   * @param maxAge the default maximum age of an entry in milliseconds.
+   */
+  public ReadCache(int maxEntries, long maxAge) {
+    m_MaxEntries = maxEntries;
+    m_DefaultMaxAge = maxAge;
+    m_Rules = new Vector<Rule>();
+    m_Entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > m_MaxEntries) {
+          m_EvictionCount++;
+          return true;
+        }
+        return false;
+      }//removeEldestEntry
+    };
+  }//constructor
+
+  /**
+   * Sets the default maximum age of an entry.
+   *
+   * @param maxAge the maximum age in milliseconds; 0 disables caching
+   *        for reads not covered by a range.
+   */
+  public synchronized void setMaxAge(long maxAge) {
+    m_DefaultMaxAge = maxAge;
+  }//setMaxAge
+
+  /**
+   * Returns the default maximum age of an entry.
+   *
+   * @return the maximum age in milliseconds.
+   */
+  public synchronized long getMaxAge() {
+    return m_DefaultMaxAge;
+  }//getMaxAge
+
+  /**
+   * Sets the maximum age of entries for reads that lie
+   * within the given range.
+   * <p>
+   * Ranges set later take precedence over ranges set earlier.
+   *
+   * @param functionCode the function code of the reads.
+   * @param ref the first reference of the range.
+   * @param count the number of references of the range.
+   * @param maxAge the maximum age in milliseconds; 0 disables caching.
+   */
+  public synchronized void setMaxAge(int functionCode, int ref, int count, long maxAge) {
+    m_Rules.insertElementAt(new Rule(functionCode, ref, count, maxAge), 0);
+  }//setMaxAge
+
+  /**
+   * Returns the maximum age of entries for the given read.
+   *
+   * @param functionCode the function code of the read.
+   * @param ref the first reference read.
+   * @param count the number of references read.
+   * @return the maximum age in milliseconds.
+   */
+  public synchronized long getMaxAge(int functionCode, int ref, int count) {
+    for (int i = 0; i < m_Rules.size(); i++) {
+      Rule r = m_Rules.elementAt(i);
+      if (r.m_FunctionCode == functionCode
+          && ref >= r.m_Reference && ref + count <= r.m_Reference + r.m_Count) {
+        return r.m_MaxAge;
+      }
+    }
+    return m_DefaultMaxAge;
+  }//getMaxAge
+
+  /**
+   * Returns the cached response to the given read request,
+   * if there is one that is fresh enough.
+   *
+   * @param slave the identifier of the slave, e.g. address and port.
+   * @param request the read <tt>ModbusRequest</tt>.
+   * @return a <tt>ModbusResponse</tt>, or null if not cached.
+   */
+  public synchronized ModbusResponse get(String slave, ModbusRequest request) {
+    int[] range = getRange(request);
+    if (range == null) {
+      return null;
+    }
+    String key = createKey(slave, request.getUnitID(), request.getFunctionCode(), range);
+    Entry e = m_Entries.get(key);
+    if (e == null) {
+      m_MissCount++;
+      return null;
+    }
+    if (System.currentTimeMillis() - e.m_Time > e.m_MaxAge) {
+      m_Entries.remove(key);
+      m_MissCount++;
+      return null;
+    }
+    ModbusResponse res = ModbusResponse.createModbusResponse(request.getFunctionCode());
+    res.setTransactionID(request.getTransactionID());
+    res.setUnitID(request.getUnitID());
+    try {
+      res.readData(ByteBuffer.wrap(e.m_Data));
+    } catch (IOException ex) {
+      //cannot happen, the data was encoded by us
+      m_Entries.remove(key);
+      m_MissCount++;
+      return null;
+    }
+    m_HitCount++;
+    return res;
+  }//get
+
+  /**
+   * Returns the generation of the given slave and unit,
+   * which advances whenever entries for them are invalidated.
+   *
+   * @param slave the identifier of the slave, e.g. address and port.
+   * @param unitid the unit identifier.
+   * @return the generation as <tt>long</tt>.
+   */
+  public synchronized long getGeneration(String slave, int unitid) {
+    Long gen = m_Generations.get(slave + "/" + unitid);
+    return (gen == null) ? 0 : gen.longValue();
+  }//getGeneration
+
+  /**
+   * Updates the cache with the given transaction.
+   * <p>
+   * Responses to reads are stored, unless entries for the same
+   * slave and unit have been invalidated since the given generation
+   * was taken. Writes invalidate the entries overlapping the
+   * written range.
+   *
+   * @param slave the identifier of the slave, e.g. address and port.
+   * @param request the <tt>ModbusRequest</tt> executed.
+   * @param response the <tt>ModbusResponse</tt> received.
+   * @param generation the generation taken with {@link #getGeneration}
+   *        before the request was executed.
+   */
+  public synchronized void update(String slave, ModbusRequest request,
+                                  ModbusResponse response, long generation) {
+    int[] range = getRange(request);
+    if (range == null) {
+      return;
+    }
+    int fc = request.getFunctionCode();
+    switch (fc) {
+      case Modbus.WRITE_COIL:
+      case Modbus.WRITE_MULTIPLE_COILS:
+        invalidate(slave, request.getUnitID(), Modbus.READ_COILS, range[0], range[1]);
+        return;
+      case Modbus.WRITE_SINGLE_REGISTER:
+      case Modbus.WRITE_MULTIPLE_REGISTERS:
+        invalidate(slave, request.getUnitID(), Modbus.READ_MULTIPLE_REGISTERS, range[0], range[1]);
+        return;
+    }
+    if (response == null || response instanceof ExceptionResponse) {
+      return;
+    }
+    if (getGeneration(slave, request.getUnitID()) != generation) {
+      //a write may have overtaken the read
+      return;
+    }
+    long maxAge = getMaxAge(fc, range[0], range[1]);
+    if (maxAge <= 0 || m_MaxEntries <= 0) {
+      return;
+    }
+    ByteBuffer buf = ByteBuffer.allocate(Modbus.MAX_MESSAGE_LENGTH);
+    response.writeData(buf);
+    byte[] data = new byte[buf.position()];
+    System.arraycopy(buf.array(), 0, data, 0, data.length);
+    m_Entries.put(
+        createKey(slave, request.getUnitID(), fc, range),
+        new Entry(slave, request.getUnitID(), fc, range[0], range[1], maxAge, data)
+    );
+  }//update
+
+  /**
+   * Invalidates all entries for the given slave and unit that
+   * overlap the given range.
+   *
+   * @param slave the identifier of the slave.
+   * @param unitid the unit identifier.
+   * @param functionCode the function code of the reads to be invalidated.
+   * @param ref the first reference of the range.
+   * @param count the number of references of the range.
+   */
+  public synchronized void invalidate(String slave, int unitid, int functionCode,
+                                      int ref, int count) {
+    m_Generations.put(slave + "/" + unitid, Long.valueOf(++m_Generation));
+    for (Iterator<Entry> iter = m_Entries.values().iterator(); iter.hasNext();) {
+      Entry e = iter.next();
+      if (e.m_FunctionCode == functionCode && e.m_UnitID == unitid
+          && e.m_Reference < ref + count && ref < e.m_Reference + e.m_Count
+          && e.m_Slave.equals(slave)) {
+        iter.remove();
+        m_InvalidationCount++;
+      }
+    }
+  }//invalidate
+
+  /**
+   * Removes all entries.
+   */
+  public synchronized void clear() {
+    m_Entries.clear();
+  }//clear
+
+  /**
+   * Returns the number of entries held.
+   *
+   * @return the number of entries.
+   */
+  public synchronized int size() {
+    return m_Entries.size();
+  }//size
+
+  /**
+   * Returns the number of reads served from the cache.
+   *
+   * @return the number of hits.
+   */
+  public synchronized long getHitCount() {
+    return m_HitCount;
+  }//getHitCount
+
+  /**
+   * Returns the number of reads that could not be served
+   * from the cache.
+   *
+   * @return the number of misses.
+   */
+  public synchronized long getMissCount() {
+    return m_MissCount;
+  }//getMissCount
+
+  /**
+   * Returns the number of entries evicted to keep
+   * the cache within its size.
+   *
+   * @return the number of evictions.
+   */
+  public synchronized long getEvictionCount() {
+    return m_EvictionCount;
+  }//getEvictionCount
+
+  /**
+   * Returns the number of entries invalidated by writes.
+   *
+   * @return the number of invalidations.
+   */
+  public synchronized long getInvalidationCount() {
+    return m_InvalidationCount;
+  }//getInvalidationCount
+
+  /**
+   * Returns the range of references accessed by the
+   * given request.
+   *
+   * @param request a <tt>ModbusRequest</tt>.
+   * @return the reference and count as <tt>int[2]</tt>, or null if
+   *         the request is neither a read nor a write of data.
+   */
+  private static int[] getRange(ModbusRequest request) {
+    if (request instanceof ReadCoilsRequest) {
+      ReadCoilsRequest r = (ReadCoilsRequest) request;
+      return new int[]{r.getReference(), r.getBitCount()};
+    } else if (request instanceof ReadInputDiscretesRequest) {
+      ReadInputDiscretesRequest r = (ReadInputDiscretesRequest) request;
+      return new int[]{r.getReference(), r.getBitCount()};
+    } else if (request instanceof ReadMultipleRegistersRequest) {
+      ReadMultipleRegistersRequest r = (ReadMultipleRegistersRequest) request;
+      return new int[]{r.getReference(), r.getWordCount()};
+    } else if (request instanceof ReadInputRegistersRequest) {
+      ReadInputRegistersRequest r = (ReadInputRegistersRequest) request;
+      return new int[]{r.getReference(), r.getWordCount()};
+    } else if (request instanceof WriteCoilRequest) {
+      return new int[]{((WriteCoilRequest) request).getReference(), 1};
+    } else if (request instanceof WriteMultipleCoilsRequest) {
+      WriteMultipleCoilsRequest r = (WriteMultipleCoilsRequest) request;
+      return new int[]{r.getReference(), r.getBitCount()};
+    } else if (request instanceof WriteSingleRegisterRequest) {
+      return new int[]{((WriteSingleRegisterRequest) request).getReference(), 1};
+    } else if (request instanceof WriteMultipleRegistersRequest) {
+      WriteMultipleRegistersRequest r = (WriteMultipleRegistersRequest) request;
+      return new int[]{r.getReference(), r.getWordCount()};
+    }
+    return null;
+  }//getRange
+
+  private static String createKey(String slave, int unitid, int fc, int[] range) {
+    return slave + "/" + unitid + "/" + fc + "/" + range[0] + "/" + range[1];
+  }//createKey
+
+  /**
+   * A cached response.
+   */
+  private static class Entry {
+
+    private String m_Slave;
+    private int m_UnitID;
+    private int m_FunctionCode;
+    private int m_Reference;
+    private int m_Count;
+    private long m_MaxAge;
+    private long m_Time;
+    private byte[] m_Data;
+
+    public Entry(String slave, int unitid, int fc, int ref, int count,
+                 long maxAge, byte[] data) {
+      m_Slave = slave;
+      m_UnitID = unitid;
+      m_FunctionCode = fc;
+      m_Reference = ref;
+      m_Count = count;
+      m_MaxAge = maxAge;
+      m_Data = data;
+      m_Time = System.currentTimeMillis();
+    }//constructor
+
+  }//class Entry
+
+  /**
+   * A maximum age set for a range.
+   */
+  private static class Rule {
+
+    private int m_FunctionCode;
+    private int m_Reference;
+    private int m_Count;
+    private long m_MaxAge;
+
+    public Rule(int fc, int ref, int count, long maxAge) {
+      m_FunctionCode = fc;
+      m_Reference = ref;
+      m_Count = count;
+      m_MaxAge = maxAge;
+    }//constructor
+
+  }//class Rule
+
+}//class ReadCache
@@ -303,6 +303,14 @@ public class ModbusRTUTransport
           out.write(m_InputStream.read());
         }
         break;
+      default:
+        if ((fn & Modbus.EXCEPTION_OFFSET) != 0) {
+          // exception response: the exception code and the 2 CRC bytes
+          for (i = 0; i < 3; i++) {
+            out.write(m_InputStream.read());
+          }
+        }
+        break;
     }
   }//getResponse
 
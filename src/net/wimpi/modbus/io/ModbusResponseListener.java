@@ -0,0 +1,76 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.io;
+
+import net.wimpi.modbus.ModbusException;
+import net.wimpi.modbus.msg.ModbusRequest;
+import net.wimpi.modbus.msg.ModbusResponse;
+
+/**
+ * Interface defining a listener that is notified
+ * when an asynchronously sent request has been
+ * answered or has failed.
+ * <p>
+ * Notifications are delivered from the thread that
+ * reads the responses, so implementations should
+ * return quickly.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public interface ModbusResponseListener {
+
+  /**
+   * Called when the response related to the given
+   * request has been received.
+   * <p>
+   * Note that an <tt>ExceptionResponse</tt> is
+   * delivered through this method as well.
+   *
+   * @param req the <tt>ModbusRequest</tt> that was sent.
+   * @param res the <tt>ModbusResponse</tt> received.
+   */
+  public void responseReceived(ModbusRequest req, ModbusResponse res);
+
+  /**
+   * Called when the transaction related to the given
+   * request failed, e.g. because it timed out or the
+   * connection was lost.
+   *
+   * @param req the <tt>ModbusRequest</tt> that was sent.
+   * @param ex the <tt>ModbusException</tt> describing the failure.
+   */
+  public void transactionFailed(ModbusRequest req, ModbusException ex);
+
+}//interface ModbusResponseListener
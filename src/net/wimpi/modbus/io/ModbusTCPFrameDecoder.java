@@ -0,0 +1,269 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusIOException;
+
+/**
+ * Class implementing an incremental decoder for
+ * Modbus/TCP (MBAP) frames.
+ * <p>
+ * Bytes are accumulated as they arrive, regardless of how
+ * the network splits or merges them, and complete frames are
+ * taken out one by one. The header of each frame is validated
+ * before its body is awaited: the protocol identifier has to be
+ * <tt>Modbus.DEFAULT_PROTOCOL_ID</tt> and the length field has to be
+ * between 2 and <tt>Modbus.MAX_MESSAGE_LENGTH</tt>.
+ * <p>
+ * The decoder can be filled from a blocking <tt>InputStream</tt>,
+ * from a <tt>ReadableByteChannel</tt> or with bytes received
+ * elsewhere. Instances are not thread safe.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class ModbusTCPFrameDecoder {
+
+  /**
+   * Defines the length of the MBAP header up to
+   * and including the length field.
+   */
+  public static final int HEADER_LENGTH = 6;
+
+  /**
+   * Defines the maximum length of a frame in bytes.
+   */
+  public static final int MAX_FRAME_LENGTH = HEADER_LENGTH + Modbus.MAX_MESSAGE_LENGTH;
+
+  //instance attributes
+  private byte[] m_Data;
+  private int m_Start;
+  private int m_End;
+
+  /**
+   * Constructs a new <tt>ModbusTCPFrameDecoder</tt> instance
+   * with room for a few frames.
+   */
+  public ModbusTCPFrameDecoder() {
+    this(MAX_FRAME_LENGTH * 4);
+  }//constructor
+
+  /**
+   * Constructs a new <tt>ModbusTCPFrameDecoder</tt> instance
+   * with a given buffer capacity.
+   *
+   * @param capacity the capacity in bytes, at least <tt>MAX_FRAME_LENGTH</tt>.
+   */
+  public ModbusTCPFrameDecoder(int capacity) {
+    if (capacity < MAX_FRAME_LENGTH) {
+      throw new IllegalArgumentException("Capacity below maximum frame length.");
+    }
+    m_Data = new byte[capacity];
+  }//constructor
+
+  /**
+   * Returns the number of buffered bytes that
+   * have not been taken out as frame yet.
+   *
+   * @return the number of buffered bytes.
+   */
+  public int available() {
+    return m_End - m_Start;
+  }//available
+
+  /**
+   * Discards all buffered bytes.
+   */
+  public void reset() {
+    m_Start = 0;
+    m_End = 0;
+  }//reset
+
+  /**
+   * Appends the given bytes.
+   *
+   * @param data the bytes to be appended.
+   * @param off the offset of the first byte.
+   * @param len the number of bytes.
+   * @throws ModbusIOException if there is not enough room left,
+   *         because complete frames have not been taken out.
+   */
+  public void append(byte[] data, int off, int len)
+      throws ModbusIOException {
+    int space = prepareSpace();
+    if (len > space) {
+      throw new ModbusIOException("Frame buffer overflow.");
+    }
+    System.arraycopy(data, off, m_Data, m_End, len);
+    m_End += len;
+  }//append
+
+  /**
+   * Reads as many bytes as are available from the
+   * given stream, blocking until at least one byte
+   * has been read.
+   *
+   * @param in the <tt>InputStream</tt> to read from.
+   * @return the number of bytes read, or -1 at the end of the stream.
+   * @throws IOException if an I/O error occurs.
+   */
+  public int fill(InputStream in)
+      throws IOException {
+    int space = prepareSpace();
+    int n = in.read(m_Data, m_End, space);
+    if (n > 0) {
+      m_End += n;
+    }
+    return n;
+  }//fill
+
+  /**
+   * Reads as many bytes as the given channel
+   * provides.
+   *
+   * @param ch the <tt>ReadableByteChannel</tt> to read from.
+   * @return the number of bytes read, or -1 at the end of the stream.
+   * @throws IOException if an I/O error occurs.
+   */
+  public int fill(ReadableByteChannel ch)
+      throws IOException {
+    int space = prepareSpace();
+    int n = ch.read(ByteBuffer.wrap(m_Data, m_End, space));
+    if (n > 0) {
+      m_End += n;
+    }
+    return n;
+  }//fill
+
+  /**
+   * Tests if a complete frame is buffered.
+   *
+   * @return true if a complete frame is buffered, false otherwise.
+   * @throws ModbusIOException if the buffered header is invalid.
+   */
+  public boolean hasFrame()
+      throws ModbusIOException {
+    return frameLength() > 0;
+  }//hasFrame
+
+  /**
+   * Takes the next complete frame out and copies it
+   * to the given array.
+   *
+   * @param frame the array to copy the frame to, with room
+   *        for at least <tt>MAX_FRAME_LENGTH</tt> bytes.
+   * @return the length of the frame, or 0 if no complete frame
+   *         is buffered.
+   * @throws ModbusIOException if the buffered header is invalid.
+   */
+  public int nextFrame(byte[] frame)
+      throws ModbusIOException {
+    int len = frameLength();
+    if (len > 0) {
+      System.arraycopy(m_Data, m_Start, frame, 0, len);
+      m_Start += len;
+    }
+    return len;
+  }//nextFrame
+
+  /**
+   * Takes the next complete frame out.
+   *
+   * @return the frame as <tt>byte[]</tt>, or null if no complete
+   *         frame is buffered.
+   * @throws ModbusIOException if the buffered header is invalid.
+   */
+  public byte[] nextFrame()
+      throws ModbusIOException {
+    int len = frameLength();
+    if (len == 0) {
+      return null;
+    }
+    byte[] frame = new byte[len];
+    System.arraycopy(m_Data, m_Start, frame, 0, len);
+    m_Start += len;
+    return frame;
+  }//nextFrame
+
+  /**
+   * Returns the length of the next frame if it is
+   * complete.
+   *
+   * @return the length of the frame, or 0 if not complete.
+   * @throws ModbusIOException if the buffered header is invalid.
+   */
+  private int frameLength()
+      throws ModbusIOException {
+    if (m_End - m_Start < HEADER_LENGTH) {
+      return 0;
+    }
+    int pid = ((m_Data[m_Start + 2] & 0xff) << 8) | (m_Data[m_Start + 3] & 0xff);
+    int bf = ((m_Data[m_Start + 4] & 0xff) << 8) | (m_Data[m_Start + 5] & 0xff);
+    if (pid != Modbus.DEFAULT_PROTOCOL_ID) {
+      throw new ModbusIOException("Invalid protocol identifier " + pid + ".");
+    }
+    if (bf < 2 || bf > Modbus.MAX_MESSAGE_LENGTH) {
+      throw new ModbusIOException("Invalid message length " + bf + ".");
+    }
+    if (m_End - m_Start < HEADER_LENGTH + bf) {
+      return 0;
+    }
+    return HEADER_LENGTH + bf;
+  }//frameLength
+
+  /**
+   * Moves the buffered bytes to the start of the
+   * buffer if necessary.
+   *
+   * @return the number of bytes that can be appended.
+   */
+  private int prepareSpace() {
+    if (m_Start == m_End) {
+      m_Start = 0;
+      m_End = 0;
+    } else if (m_Data.length - m_End < MAX_FRAME_LENGTH && m_Start > 0) {
+      System.arraycopy(m_Data, m_Start, m_Data, 0, m_End - m_Start);
+      m_End -= m_Start;
+      m_Start = 0;
+    }
+    return m_Data.length - m_End;
+  }//prepareSpace
+
+}//class ModbusTCPFrameDecoder
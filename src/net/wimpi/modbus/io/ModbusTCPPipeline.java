@@ -0,0 +1,536 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.io;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusException;
+import net.wimpi.modbus.ModbusIOException;
+import net.wimpi.modbus.ModbusSlaveException;
+import net.wimpi.modbus.msg.ExceptionResponse;
+import net.wimpi.modbus.msg.ModbusRequest;
+import net.wimpi.modbus.msg.ModbusResponse;
+import net.wimpi.modbus.net.TCPMasterConnection;
+
+/**
+ * Class implementing pipelined transactions over a
+ * single <tt>TCPMasterConnection</tt>.
+ * <p>
+ * Requests are written back-to-back without waiting for
+ * the responses of earlier requests, up to a configurable
+ * number of requests in flight (the window). A reader thread
+ * matches incoming responses to their requests by the MBAP
+ * transaction identifier, and completes each of them
+ * independently through a <tt>ModbusResponseListener</tt>.
+ * <p>
+ * While the pipeline is open it owns the transaction
+ * identifiers of the requests sent through it, as well as
+ * the input side of the connection; the connection should not
+ * be used with a <tt>ModbusTCPTransaction</tt> at the same time.
+ * Request instances must not be shared between concurrent
+ * sends, as their transaction identifier is overwritten.
+ * <p>
+ * The identifier of a transaction that timed out is not reused
+ * until a late response with this identifier has been received,
+ * or for {@link #TIMED_OUT_RESERVATION} milliseconds, so that a
+ * late response cannot complete a newer transaction.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class ModbusTCPPipeline
+    implements Runnable {
+
+  /**
+   * Defines the time in milliseconds for which the identifier
+   * of a timed out transaction is not reused.
+   */
+  public static final long TIMED_OUT_RESERVATION = 30000;
+
+  //instance attributes and associations
+  private TCPMasterConnection m_Connection;
+  private ModbusTransport m_IO;
+  private int m_Window;
+  private int m_Timeout = -1;
+  private int m_SavedTimeout;
+  private Map<Integer, Pending> m_Pending = new HashMap<Integer, Pending>();
+  //transaction identifier -> end of reservation
+  private Map<Integer, Long> m_TimedOut = new HashMap<Integer, Long>();
+  private int m_TransactionID = Modbus.DEFAULT_TRANSACTION_ID;
+  private Object m_WriteLock = new Object();
+  private Timer m_Timer;
+  private Thread m_Reader;
+  private boolean m_Open;
+
+  /**
+   * Constructs a new <tt>ModbusTCPPipeline</tt> instance
+   * for the given connection.
+   *
+   * @param con the <tt>TCPMasterConnection</tt> to be used.
+   * @param window the maximum number of requests in flight.
+   */
+  public ModbusTCPPipeline(TCPMasterConnection con, int window) {
+    m_Connection = con;
+    setWindowSize(window);
+  }//constructor
+
+  /**
+   * Returns the maximum number of requests in flight.
+   *
+   * @return the window size as <tt>int</tt>.
+   */
+  public synchronized int getWindowSize() {
+    return m_Window;
+  }//getWindowSize
+
+  /**
+   * Sets the maximum number of requests in flight.
+   * Senders will block while the window is full.
+   *
+   * @param window the window size, between 1 and 65535.
+   */
+  public synchronized void setWindowSize(int window) {
+    if (window < 1 || window > Modbus.MAX_TRANSACTION_ID) {
+      throw new IllegalArgumentException("Window size out of range.");
+    }
+    m_Window = window;
+    notifyAll();
+  }//setWindowSize
+
+  /**
+   * Returns the default timeout for transactions in
+   * milliseconds. Unless set explicitly, the timeout of the
+   * connection at the time the pipeline was opened is used.
+   *
+   * @return the timeout as <tt>int</tt>.
+   */
+  public int getTimeout() {
+    return m_Timeout;
+  }//getTimeout
+
+  /**
+   * Sets the default timeout for transactions in
+   * milliseconds. A timeout of 0 means no timeout.
+   *
+   * @param timeout the timeout as <tt>int</tt>.
+   */
+  public void setTimeout(int timeout) {
+    m_Timeout = timeout;
+  }//setTimeout
+
+  /**
+   * Returns the number of requests that are currently
+   * awaiting their response.
+   *
+   * @return the number of requests in flight.
+   */
+  public synchronized int getInFlightCount() {
+    return m_Pending.size();
+  }//getInFlightCount
+
+  /**
+   * Tests if this <tt>ModbusTCPPipeline</tt> is open.
+   *
+   * @return true if open, false otherwise.
+   */
+  public synchronized boolean isOpen() {
+    return m_Open;
+  }//isOpen
+
+  /**
+   * Opens this <tt>ModbusTCPPipeline</tt>, connecting the
+   * underlying connection if necessary and starting
+   * the reader thread.
+   *
+   * @throws ModbusIOException if the connection cannot be opened.
+   */
+  public synchronized void open() throws ModbusIOException {
+    if (m_Open) {
+      return;
+    }
+    if (!m_Connection.isConnected()) {
+      try {
+        m_Connection.connect();
+      } catch (Exception ex) {
+        throw new ModbusIOException("Connecting failed.");
+      }
+    }
+    m_IO = m_Connection.getModbusTransport();
+    //the reader blocks until a response arrives,
+    //timeouts are handled per transaction
+    m_SavedTimeout = m_Connection.getTimeout();
+    if (m_Timeout < 0) {
+      m_Timeout = m_SavedTimeout;
+    }
+    m_Connection.setTimeout(0);
+    m_Timer = new Timer(true);
+    m_Open = true;
+    m_Reader = new Thread(this, "ModbusTCPPipeline-" + m_Connection.getAddress());
+    m_Reader.setDaemon(true);
+    m_Reader.start();
+  }//open
+
+  /**
+   * Closes this <tt>ModbusTCPPipeline</tt> and the
+   * underlying connection. All requests in flight are failed.
+   */
+  public void close() {
+    synchronized (this) {
+      if (!m_Open) {
+        return;
+      }
+      m_Open = false;
+      notifyAll();
+    }
+    m_Timer.cancel();
+    m_Connection.setTimeout(m_SavedTimeout);
+    m_Connection.close();
+    failAll(new ModbusIOException("Pipeline closed."));
+    if (Thread.currentThread() != m_Reader) {
+      try {
+        m_Reader.join();
+      } catch (InterruptedException ex) {
+        //ignore
+      }
+    }
+  }//close
+
+  /**
+   * Sends the given request, using the default timeout.
+   *
+   * @param req the <tt>ModbusRequest</tt> to be sent.
+   * @param l the <tt>ModbusResponseListener</tt> to be notified.
+   * @throws ModbusIOException if the pipeline is not open.
+   */
+  public void send(ModbusRequest req, ModbusResponseListener l)
+      throws ModbusIOException {
+    send(req, m_Timeout, l);
+  }//send
+
+  /**
+   * Sends the given request, blocking while the window is full.
+   * <p>
+   * Once the request has been accepted, its outcome
+   * (including a failure to write it) is reported to the
+   * given listener exactly once.
+   *
+   * @param req the <tt>ModbusRequest</tt> to be sent.
+   * @param timeout the timeout in milliseconds, 0 for no timeout.
+   * @param l the <tt>ModbusResponseListener</tt> to be notified.
+   * @throws ModbusIOException if the pipeline is not open, or
+   *         the caller was interrupted while waiting for the window.
+   */
+  public void send(ModbusRequest req, long timeout, ModbusResponseListener l)
+      throws ModbusIOException {
+    Pending p = new Pending(req, l);
+    synchronized (this) {
+      while (m_Open && m_Pending.size() >= m_Window) {
+        try {
+          wait();
+        } catch (InterruptedException ex) {
+          throw new ModbusIOException("Interrupted while waiting for window.");
+        }
+      }
+      if (!m_Open) {
+        throw new ModbusIOException("Pipeline not open.");
+      }
+      p.m_TransactionID = nextTransactionID();
+      req.setTransactionID(p.m_TransactionID);
+      m_Pending.put(Integer.valueOf(p.m_TransactionID), p);
+      if (timeout > 0) {
+        m_Timer.schedule(p, timeout);
+      }
+    }
+    try {
+      synchronized (m_WriteLock) {
+        m_IO.writeMessage(req);
+      }
+    } catch (ModbusIOException ex) {
+      if (remove(p.m_TransactionID) == p) {
+        p.fail(ex);
+      }
+      //the connection is broken
+      close();
+    }
+  }//send
+
+  /**
+   * Executes the given request and waits for the
+   * response, using the default timeout.
+   *
+   * @param req the <tt>ModbusRequest</tt> to be sent.
+   * @return the <tt>ModbusResponse</tt> received.
+   * @throws ModbusException if the transaction failed, or
+   *         the slave answered with an exception.
+   */
+  public ModbusResponse execute(ModbusRequest req)
+      throws ModbusException {
+    return execute(req, m_Timeout);
+  }//execute
+
+  /**
+   * Executes the given request and waits for the
+   * response.
+   *
+   * @param req the <tt>ModbusRequest</tt> to be sent.
+   * @param timeout the timeout in milliseconds, 0 for no timeout.
+   * @return the <tt>ModbusResponse</tt> received.
+   * @throws ModbusException if the transaction failed, or
+   *         the slave answered with an exception.
+   */
+  public ModbusResponse execute(ModbusRequest req, long timeout)
+      throws ModbusException {
+    Waiter w = new Waiter();
+    send(req, timeout, w);
+    ModbusResponse res = w.await();
+    if (res instanceof ExceptionResponse) {
+      throw new ModbusSlaveException(
+          ((ExceptionResponse) res).getExceptionCode()
+      );
+    }
+    return res;
+  }//execute
+
+  /**
+   * Reads responses and dispatches them to the
+   * listeners of the related requests.
+   */
+  public void run() {
+    try {
+      while (isOpen()) {
+        ModbusResponse res = m_IO.readResponse();
+        Pending p = remove(res.getTransactionID());
+        if (p == null) {
+          release(res.getTransactionID());
+          if (Modbus.debug) System.out.println("Dropping response with unknown transaction id " + res.getTransactionID());
+          continue;
+        }
+        p.cancel();
+        p.complete(res);
+      }
+    } catch (ModbusIOException ex) {
+      if (Modbus.debug && isOpen()) System.out.println("Pipeline reader failed: " + ex.getMessage());
+    } finally {
+      close();
+    }
+  }//run
+
+  /**
+   * Returns the next transaction identifier that is
+   * neither in flight nor reserved after a timeout.
+   * The caller has to hold the lock on this instance.
+   *
+   * @return the transaction identifier as <tt>int</tt>.
+   */
+  private int nextTransactionID() {
+    long now = System.currentTimeMillis();
+    int tries = 0;
+    Integer tid;
+    do {
+      if (m_TransactionID == Modbus.MAX_TRANSACTION_ID) {
+        m_TransactionID = 0;
+      } else {
+        m_TransactionID++;
+      }
+      tid = Integer.valueOf(m_TransactionID);
+      tries++;
+      //if all free identifiers are reserved, take the next free one
+    } while (m_Pending.containsKey(tid)
+        || (tries <= Modbus.MAX_TRANSACTION_ID && isReserved(tid, now)));
+    return m_TransactionID;
+  }//nextTransactionID
+
+  /**
+   * Tests if the given transaction identifier is reserved
+   * after a timeout, dropping the reservation once it ended.
+   * The caller has to hold the lock on this instance.
+   */
+  private boolean isReserved(Integer tid, long now) {
+    Long end = m_TimedOut.get(tid);
+    if (end == null) {
+      return false;
+    }
+    if (end.longValue() <= now) {
+      m_TimedOut.remove(tid);
+      return false;
+    }
+    return true;
+  }//isReserved
+
+  /**
+   * Removes the pending transaction with the given identifier
+   * after it timed out, and reserves the identifier.
+   *
+   * @param tid the transaction identifier.
+   * @return the removed <tt>Pending</tt>, or null if there was none.
+   */
+  private synchronized Pending expire(int tid) {
+    Pending p = remove(tid);
+    if (p != null) {
+      m_TimedOut.put(Integer.valueOf(tid),
+          Long.valueOf(System.currentTimeMillis() + TIMED_OUT_RESERVATION));
+    }
+    return p;
+  }//expire
+
+  /**
+   * Releases the reservation of the given transaction
+   * identifier, as its late response has been received.
+   *
+   * @param tid the transaction identifier.
+   */
+  private synchronized void release(int tid) {
+    m_TimedOut.remove(Integer.valueOf(tid));
+  }//release
+
+  /**
+   * Removes the pending transaction with the given identifier,
+   * freeing its slot in the window.
+   *
+   * @param tid the transaction identifier.
+   * @return the removed <tt>Pending</tt>, or null if there was none.
+   */
+  private synchronized Pending remove(int tid) {
+    Pending p = m_Pending.remove(Integer.valueOf(tid));
+    if (p != null) {
+      notifyAll();
+    }
+    return p;
+  }//remove
+
+  /**
+   * Fails all pending transactions.
+   *
+   * @param ex the <tt>ModbusException</tt> to be reported.
+   */
+  private void failAll(ModbusException ex) {
+    Map<Integer, Pending> pending;
+    synchronized (this) {
+      pending = m_Pending;
+      m_Pending = new HashMap<Integer, Pending>();
+      m_TimedOut.clear();
+      notifyAll();
+    }
+    for (Iterator<Pending> iter = pending.values().iterator(); iter.hasNext();) {
+      Pending p = iter.next();
+      p.cancel();
+      p.fail(ex);
+    }
+  }//failAll
+
+  /**
+   * Inner class representing a transaction in flight,
+   * which doubles as its timeout task.
+   */
+  private class Pending
+      extends TimerTask {
+
+    private ModbusRequest m_Request;
+    private ModbusResponseListener m_Listener;
+    private int m_TransactionID;
+
+    public Pending(ModbusRequest req, ModbusResponseListener l) {
+      m_Request = req;
+      m_Listener = l;
+    }//constructor
+
+    public void run() {
+      if (expire(m_TransactionID) == this) {
+        fail(new ModbusIOException("Transaction timed out."));
+      }
+    }//run
+
+    public void complete(ModbusResponse res) {
+      try {
+        m_Listener.responseReceived(m_Request, res);
+      } catch (RuntimeException ex) {
+        ex.printStackTrace();
+      }
+    }//complete
+
+    public void fail(ModbusException ex) {
+      try {
+        m_Listener.transactionFailed(m_Request, ex);
+      } catch (RuntimeException rex) {
+        rex.printStackTrace();
+      }
+    }//fail
+
+  }//inner class Pending
+
+  /**
+   * Inner class implementing a listener that
+   * a caller can wait on.
+   */
+  private static class Waiter
+      implements ModbusResponseListener {
+
+    private ModbusResponse m_Response;
+    private ModbusException m_Exception;
+    private boolean m_Done;
+
+    public synchronized void responseReceived(ModbusRequest req, ModbusResponse res) {
+      m_Response = res;
+      m_Done = true;
+      notifyAll();
+    }//responseReceived
+
+    public synchronized void transactionFailed(ModbusRequest req, ModbusException ex) {
+      m_Exception = ex;
+      m_Done = true;
+      notifyAll();
+    }//transactionFailed
+
+    public synchronized ModbusResponse await() throws ModbusException {
+      while (!m_Done) {
+        try {
+          wait();
+        } catch (InterruptedException ex) {
+          throw new ModbusIOException("Interrupted while waiting for response.");
+        }
+      }
+      if (m_Exception != null) {
+        throw m_Exception;
+      }
+      return m_Response;
+    }//await
+
+  }//inner class Waiter
+
+}//class ModbusTCPPipeline
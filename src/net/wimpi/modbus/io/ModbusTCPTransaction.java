@@ -65,6 +65,7 @@ public class ModbusTCPTransaction
       Modbus.DEFAULT_VALIDITYCHECK;
   private boolean m_Reconnecting = Modbus.DEFAULT_RECONNECTING;
   private int m_Retries = Modbus.DEFAULT_RETRIES;
+  private boolean m_CoalescingReads = false;
 
   /**
    * Constructs a new <tt>ModbusTCPTransaction</tt>
@@ -162,12 +163,80 @@ public class ModbusTCPTransaction
     m_Retries = num;
   }//setRetries
 
+  /**
+   * Sets the flag that controls whether read requests
+   * are coalesced with identical reads in progress on
+   * other transactions.
+   * <p>
+   * If coalescing, an execution may return the response
+   * received by another transaction, without a request of
+   * its own being sent. Such shared responses have to be
+   * treated as read-only.
+   *
+   * @param b true if coalescing reads, false otherwise.
+   * @see ReadCoalescer
+   */
+  public void setCoalescingReads(boolean b) {
+    m_CoalescingReads = b;
+  }//setCoalescingReads
+
+  /**
+   * Tests if read requests are coalesced with identical
+   * reads in progress on other transactions.
+   *
+   * @return true if coalescing reads, false otherwise.
+   */
+  public boolean isCoalescingReads() {
+    return m_CoalescingReads;
+  }//isCoalescingReads
+
   public void execute() throws ModbusIOException,
       ModbusSlaveException,
       ModbusException {
 
     //1. assert executeability
     assertExecutable();
+
+    if (m_CoalescingReads && ReadCoalescer.isRead(m_Request.getFunctionCode())) {
+      ReadCoalescer.Flight flight = ReadCoalescer.getReference().join(
+          ReadCoalescer.createKey(
+              m_Connection.getAddress(), m_Connection.getPort(), m_Request)
+      );
+      if (!flight.isLeader()) {
+        //share the response of the identical read in progress
+        m_Response = flight.await();
+        return;
+      }
+      boolean done = false;
+      try {
+        executeTransaction();
+        flight.complete(m_Response);
+        done = true;
+      } catch (ModbusException ex) {
+        flight.fail(ex);
+        done = true;
+        throw ex;
+      } finally {
+        if (!done) {
+          flight.fail(new ModbusIOException("Executing transaction failed."));
+        }
+      }
+    } else {
+      executeTransaction();
+    }
+  }//execute
+
+  /**
+   * Executes the transaction on the connection.
+   *
+   * @throws ModbusIOException if the transaction fails on I/O level.
+   * @throws ModbusSlaveException if the slave answers with an exception.
+   * @throws ModbusException if the transaction fails otherwise.
+   */
+  private void executeTransaction() throws ModbusIOException,
+      ModbusSlaveException,
+      ModbusException {
+
     //2. open the connection if not connected
     if (!m_Connection.isConnected()) {
       try {
@@ -220,7 +289,7 @@ public class ModbusTCPTransaction
 
     //toggle the id
     toggleTransactionID();
-  }//execute
+  }//executeTransaction
 
   /**
    * Asserts if this <tt>ModbusTCPTransaction</tt> is
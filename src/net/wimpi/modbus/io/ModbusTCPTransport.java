@@ -33,22 +33,21 @@
  ***/
 package net.wimpi.modbus.io;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutput;
-import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
 
-import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.ModbusIOException;
 import net.wimpi.modbus.msg.ModbusMessage;
 import net.wimpi.modbus.msg.ModbusRequest;
 import net.wimpi.modbus.msg.ModbusResponse;
-import net.wimpi.modbus.util.ModbusUtil;
+import net.wimpi.modbus.msg.RequestPool;
 
 /**
  * Class that implements the Modbus transport
@@ -61,9 +60,17 @@ public class ModbusTCPTransport
     implements ModbusTransport {
 
   //instance attributes
-  private DataInputStream m_Input;	  //input stream
-  private DataOutputStream m_Output;	 //output stream
-  private BytesInputStream m_ByteIn;
+  private InputStream m_Input;	  //input stream
+  private OutputStream m_Output;	 //output stream
+  private byte[] m_InBuffer;
+  private ByteBuffer m_In;
+  private ByteBuffer m_Out;
+  private ModbusTCPFrameDecoder m_Decoder;
+  private RequestPool m_RequestPool;
+  //locks instead of monitors, so that virtual threads blocked
+  //in socket I/O do not pin their carrier thread
+  private final ReentrantLock m_ReadLock = new ReentrantLock();
+  private final ReentrantLock m_WriteLock = new ReentrantLock();
 
   /**
    * Constructs a new <tt>ModbusTransport</tt> instance,
@@ -90,6 +97,30 @@ public class ModbusTCPTransport
     prepareStreams(socket);
   }//setSocket
 
+  /**
+   * Sets the pool that requests are read into.
+   * <p>
+   * With a pool set, {@link #readRequest()} returns the pooled,
+   * reusable instance for the function code of the received
+   * request, instead of creating a new instance every time.
+   * A response has to be written before the next request is read.
+   *
+   * @param pool a <tt>RequestPool</tt>, or null to create new
+   *        instances for every request.
+   */
+  public void setRequestPool(RequestPool pool) {
+    m_RequestPool = pool;
+  }//setRequestPool
+
+  /**
+   * Returns the pool that requests are read into.
+   *
+   * @return the <tt>RequestPool</tt>, or null if there is none.
+   */
+  public RequestPool getRequestPool() {
+    return m_RequestPool;
+  }//getRequestPool
+
   public void close() throws IOException {
     m_Input.close();
     m_Output.close();
@@ -97,14 +128,90 @@ public class ModbusTCPTransport
 
   public void writeMessage(ModbusMessage msg)
       throws ModbusIOException {
+    writeMessage(msg, true);
+  }//write
+
+  /**
+   * Writes the given message to the output buffer, and
+   * optionally flushes the buffer to the socket.
+   * <p>
+   * Deferring the flush allows to answer several
+   * requests with a single write to the socket.
+   *
+   * @param msg the <tt>ModbusMessage</tt> to be written.
+   * @param flush true if the buffer should be flushed, false otherwise.
+   * @throws ModbusIOException if an I/O related error occurs.
+   */
+  public void writeMessage(ModbusMessage msg, boolean flush)
+      throws ModbusIOException {
     try {
-      msg.writeTo((DataOutput) m_Output);
-      m_Output.flush();
+      //encode into the buffer and hand it to the socket in one write
+      m_WriteLock.lock();
+      try {
+        if (m_Out.remaining() < ModbusTCPFrameDecoder.MAX_FRAME_LENGTH) {
+          flushBuffer();
+        }
+        msg.writeTo(m_Out);
+        if (flush) {
+          flushBuffer();
+        }
+      } finally {
+        m_WriteLock.unlock();
+      }
       //write more sophisticated exception handling
     } catch (Exception ex) {
       throw new ModbusIOException("I/O exception - failed to write.");
     }
-  }//write
+  }//writeMessage
+
+  /**
+   * Flushes all buffered messages to the socket.
+   *
+   * @throws ModbusIOException if an I/O related error occurs.
+   */
+  public void flush()
+      throws ModbusIOException {
+    try {
+      m_WriteLock.lock();
+      try {
+        flushBuffer();
+      } finally {
+        m_WriteLock.unlock();
+      }
+    } catch (IOException ex) {
+      throw new ModbusIOException("I/O exception - failed to write.");
+    }
+  }//flush
+
+  /**
+   * Tests if another request has already been received
+   * completely, without blocking.
+   *
+   * @return true if a request can be read without blocking,
+   *         false otherwise.
+   * @throws ModbusIOException if an I/O related error occurs,
+   *         or the received data is invalid.
+   */
+  public boolean isRequestAvailable()
+      throws ModbusIOException {
+    try {
+      m_ReadLock.lock();
+      try {
+        if (!m_Decoder.hasFrame() && m_Input.available() > 0) {
+          m_Decoder.fill(m_Input);
+        }
+        return m_Decoder.hasFrame();
+      } catch (ModbusIOException ex) {
+        //drop the invalid data
+        m_Decoder.reset();
+        throw ex;
+      } finally {
+        m_ReadLock.unlock();
+      }
+    } catch (IOException ex) {
+      throw new ModbusIOException("I/O exception - failed to read.");
+    }
+  }//isRequestAvailable
 
   public ModbusRequest readRequest()
       throws ModbusIOException {
@@ -113,26 +220,24 @@ public class ModbusTCPTransport
     try {
 
       ModbusRequest req = null;
-      synchronized (m_ByteIn) {
+      m_ReadLock.lock();
+      try {
         //use same buffer
-        byte[] buffer = m_ByteIn.getBuffer();
+        byte[] buffer = m_InBuffer;
 
-        //read to byte length of message
-        if (m_Input.read(buffer, 0, 6) == -1) {
-          throw new EOFException("Premature end of stream (Header truncated).");
-        }
-        //extract length of bytes following in message
-        int bf = ModbusUtil.registerToShort(buffer, 4);
-        //read rest
-        if (m_Input.read(buffer, 6, bf) == -1) {
-          throw new ModbusIOException("Premature end of stream (Message truncated).");
+        //read a complete frame; bytes of following
+        //(pipelined) frames stay in the decoder
+        int len = readFrame(buffer);
+        m_In.limit(len).position(0);
+        int functionCode = buffer[7] & 0xff;
+        if (m_RequestPool != null) {
+          req = m_RequestPool.getRequest(functionCode);
+        } else {
+          req = ModbusRequest.createModbusRequest(functionCode);
         }
-        m_ByteIn.reset(buffer, (6 + bf));
-        m_ByteIn.skip(7);
-        int functionCode = m_ByteIn.readUnsignedByte();
-        m_ByteIn.reset();
-        req = ModbusRequest.createModbusRequest(functionCode);
-        req.readFrom(m_ByteIn);
+        req.readFrom(m_In);
+      } finally {
+        m_ReadLock.unlock();
       }
       return req;
 /*
@@ -164,6 +269,8 @@ public class ModbusTCPTransport
     } catch (SocketException sockex) {
       //connection reset by peer, also EOF
       throw new ModbusIOException(true);
+    } catch (ModbusIOException ex) {
+      throw ex;
     } catch (Exception ex) {
       ex.printStackTrace();
       throw new ModbusIOException("I/O exception - failed to read.");
@@ -177,26 +284,20 @@ public class ModbusTCPTransport
     try {
 
       ModbusResponse res = null;
-      synchronized (m_ByteIn) {
+      m_ReadLock.lock();
+      try {
         //use same buffer
-        byte[] buffer = m_ByteIn.getBuffer();
+        byte[] buffer = m_InBuffer;
 
-        //read to byte length of message
-        if (m_Input.read(buffer, 0, 6) == -1) {
-          throw new ModbusIOException("Premature end of stream (Header truncated).");
-        }
-        //extract length of bytes following in message
-        int bf = ModbusUtil.registerToShort(buffer, 4);
-        //read rest
-        if (m_Input.read(buffer, 6, bf) == -1) {
-          throw new ModbusIOException("Premature end of stream (Message truncated).");
-        }
-        m_ByteIn.reset(buffer, (6 + bf));
-        m_ByteIn.skip(7);
-        int functionCode = m_ByteIn.readUnsignedByte();
-        m_ByteIn.reset();
+        //read a complete frame; responses may arrive
+        //back-to-back when pipelining
+        int len = readFrame(buffer);
+        m_In.limit(len).position(0);
+        int functionCode = buffer[7] & 0xff;
         res = ModbusResponse.createModbusResponse(functionCode);
-        res.readFrom(m_ByteIn);
+        res.readFrom(m_In);
+      } finally {
+        m_ReadLock.unlock();
       }
       return res;
       /*
@@ -225,12 +326,66 @@ public class ModbusTCPTransport
          response.setUnitID(unitID);
          return response;
          */
+    } catch (EOFException eoex) {
+      throw new ModbusIOException(true);
+    } catch (SocketException sockex) {
+      //connection closed or reset, also EOF
+      throw new ModbusIOException(true);
+    } catch (ModbusIOException ex) {
+      throw ex;
     } catch (Exception ex) {
       ex.printStackTrace();
       throw new ModbusIOException("I/O exception - failed to read.");
     }
   }//readResponse
 
+  /**
+   * Writes the buffered messages to the socket.
+   * The caller has to hold the write lock.
+   *
+   * @throws IOException if an I/O related error occurs.
+   */
+  private void flushBuffer() throws IOException {
+    if (m_Out.position() > 0) {
+      m_Output.write(m_Out.array(), 0, m_Out.position());
+      m_Output.flush();
+      m_Out.clear();
+    }
+  }//flushBuffer
+
+  /**
+   * Reads the next complete frame into the given buffer,
+   * blocking until it has been received.
+   * <p>
+   * If the header is invalid or the read times out, the
+   * buffered bytes are discarded, so that the next read starts
+   * with fresh data instead of failing on the same bytes, or
+   * taking the rest of a late frame for a header.
+   *
+   * @param buffer the buffer to copy the frame to.
+   * @return the length of the frame.
+   * @throws IOException if an I/O error occurs or the stream ends.
+   * @throws ModbusIOException if the frame is invalid.
+   */
+  private int readFrame(byte[] buffer)
+      throws IOException, ModbusIOException {
+    try {
+      int len;
+      while ((len = m_Decoder.nextFrame(buffer)) == 0) {
+        if (m_Decoder.fill(m_Input) == -1) {
+          throw new EOFException("Premature end of stream.");
+        }
+      }
+      return len;
+    } catch (ModbusIOException ex) {
+      m_Decoder.reset();
+      throw ex;
+    } catch (InterruptedIOException ex) {
+      m_Decoder.reset();
+      throw ex;
+    }
+  }//readFrame
+
   /**
    * Prepares the input and output streams of this
    * <tt>ModbusTCPTransport</tt> instance based on the given
@@ -241,13 +396,16 @@ public class ModbusTCPTransport
    */
   private void prepareStreams(Socket socket) throws IOException {
 
-    m_Input = new DataInputStream(
-        new BufferedInputStream(socket.getInputStream())
-    );
-    m_Output = new DataOutputStream(
-        new BufferedOutputStream(socket.getOutputStream())
-    );
-    m_ByteIn = new BytesInputStream(Modbus.MAX_MESSAGE_LENGTH);
+    //the frame decoder buffers the input
+    m_Input = socket.getInputStream();
+    m_Decoder = new ModbusTCPFrameDecoder();
+    //messages are encoded into a buffer and written at once,
+    //so there is no need for a buffered stream
+    m_Output = socket.getOutputStream();
+    m_InBuffer = new byte[ModbusTCPFrameDecoder.MAX_FRAME_LENGTH];
+    m_In = ByteBuffer.wrap(m_InBuffer);
+    //room for the responses to a burst of pipelined requests
+    m_Out = ByteBuffer.allocate(ModbusTCPFrameDecoder.MAX_FRAME_LENGTH * 8);
   }//prepareStreams
 
 }//class ModbusTCPTransport
@@ -42,6 +42,7 @@ import net.wimpi.modbus.ModbusIOException;
 import net.wimpi.modbus.msg.ModbusMessage;
 import net.wimpi.modbus.msg.ModbusRequest;
 import net.wimpi.modbus.msg.ModbusResponse;
+import net.wimpi.modbus.msg.RequestPool;
 import net.wimpi.modbus.net.UDPTerminal;
 
 /**
@@ -58,6 +59,7 @@ public class ModbusUDPTransport
   private UDPTerminal m_Terminal;
   private BytesOutputStream m_ByteOut;
   private BytesInputStream m_ByteIn;
+  private RequestPool m_RequestPool;
 
   /**
    * Constructs a new <tt>ModbusTransport</tt> instance,
@@ -72,6 +74,30 @@ public class ModbusUDPTransport
   }//constructor
 
 
+  /**
+   * Sets the pool that requests are read into.
+   * <p>
+   * With a pool set, {@link #readRequest()} returns the pooled,
+   * reusable instance for the function code of the received
+   * request, instead of creating a new instance every time.
+   * A response has to be written before the next request is read.
+   *
+   * @param pool a <tt>RequestPool</tt>, or null to create new
+   *        instances for every request.
+   */
+  public void setRequestPool(RequestPool pool) {
+    m_RequestPool = pool;
+  }//setRequestPool
+
+  /**
+   * Returns the pool that requests are read into.
+   *
+   * @return the <tt>RequestPool</tt>, or null if there is none.
+   */
+  public RequestPool getRequestPool() {
+    return m_RequestPool;
+  }//getRequestPool
+
   public void close()
       throws IOException {
     //?
@@ -99,7 +125,11 @@ public class ModbusUDPTransport
         m_ByteIn.skip(7);
         int functionCode = m_ByteIn.readUnsignedByte();
         m_ByteIn.reset();
-        req = ModbusRequest.createModbusRequest(functionCode);
+        if (m_RequestPool != null) {
+          req = m_RequestPool.getRequest(functionCode);
+        } else {
+          req = ModbusRequest.createModbusRequest(functionCode);
+        }
         req.readFrom(m_ByteIn);
       }
       return req;
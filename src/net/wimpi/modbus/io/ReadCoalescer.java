@@ -0,0 +1,279 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.io;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Hashtable;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusException;
+import net.wimpi.modbus.ModbusIOException;
+import net.wimpi.modbus.msg.ModbusRequest;
+import net.wimpi.modbus.msg.ModbusResponse;
+import net.wimpi.modbus.util.ModbusUtil;
+
+/**
+ * Class that coalesces identical read requests
+ * executed concurrently against the same slave.
+ * <p>
+ * The first caller of a read becomes the leader of a
+ * <tt>Flight</tt> and executes it; callers issuing an identical
+ * read (same slave, unit, function code, reference and count)
+ * while the flight is in progress attach to it and receive the
+ * same response (or exception) once the leader completes.
+ * A flight is removed before its result is published, so later
+ * reads always go to the slave again.
+ * <p>
+ * Note that attached callers share the response instance,
+ * which therefore has to be treated as read-only.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class ReadCoalescer {
+
+  //class attributes
+  private static ReadCoalescer c_Self = new ReadCoalescer();
+
+  //instance attributes
+  private Hashtable<String, Flight> m_Flights = new Hashtable<String, Flight>();
+  private long m_LeaderCount;
+  private long m_CoalescedCount;
+
+  /**
+   * Returns the shared <tt>ReadCoalescer</tt> instance.
+   *
+   * @return the shared <tt>ReadCoalescer</tt>.
+   */
+  public static final ReadCoalescer getReference() {
+    return c_Self;
+  }//getReference
+
+  /**
+   * Joins the flight for the given key, starting a new
+   * one if there is none in progress.
+   * <p>
+   * If the returned flight is led by the caller, it has
+   * to complete or fail it.
+   *
+   * @param key the key identifying the read, see {@link #createKey}.
+   * @return the <tt>Flight</tt> joined.
+   */
+  public synchronized Flight join(String key) {
+    Flight flight = m_Flights.get(key);
+    if (flight != null) {
+      m_CoalescedCount++;
+      return new Flight(flight);
+    }
+    flight = new Flight(key);
+    m_Flights.put(key, flight);
+    m_LeaderCount++;
+    return flight;
+  }//join
+
+  /**
+   * Returns the number of reads currently in flight.
+   *
+   * @return the number of flights.
+   */
+  public synchronized int getFlightCount() {
+    return m_Flights.size();
+  }//getFlightCount
+
+  /**
+   * Returns the number of reads that have actually
+   * been executed.
+   *
+   * @return the number of flights started.
+   */
+  public synchronized long getLeaderCount() {
+    return m_LeaderCount;
+  }//getLeaderCount
+
+  /**
+   * Returns the number of reads that have been served
+   * by attaching to a flight in progress.
+   *
+   * @return the number of coalesced reads.
+   */
+  public synchronized long getCoalescedCount() {
+    return m_CoalescedCount;
+  }//getCoalescedCount
+
+  /**
+   * Removes the given flight.
+   *
+   * @param flight the <tt>Flight</tt> to be removed.
+   */
+  private synchronized void remove(Flight flight) {
+    if (m_Flights.get(flight.m_Key) == flight) {
+      m_Flights.remove(flight.m_Key);
+    }
+  }//remove
+
+  /**
+   * Tests if the given function code is a read that
+   * can be coalesced.
+   *
+   * @param functionCode the function code.
+   * @return true if the function can be coalesced, false otherwise.
+   */
+  public static boolean isRead(int functionCode) {
+    switch (functionCode) {
+      case Modbus.READ_COILS:
+      case Modbus.READ_INPUT_DISCRETES:
+      case Modbus.READ_MULTIPLE_REGISTERS:
+      case Modbus.READ_INPUT_REGISTERS:
+        return true;
+      default:
+        return false;
+    }
+  }//isRead
+
+  /**
+   * Creates the key identifying the given read request
+   * sent to the given slave.
+   * <p>
+   * The key is made up of the slave address and port, the
+   * unit identifier and the encoded PDU, which holds function
+   * code, reference and count.
+   *
+   * @param addr the address of the slave.
+   * @param port the port of the slave.
+   * @param request the <tt>ModbusRequest</tt>.
+   * @return the key as <tt>String</tt>.
+   */
+  public static String createKey(InetAddress addr, int port, ModbusRequest request) {
+    ByteBuffer pdu = ByteBuffer.allocate(Modbus.MAX_MESSAGE_LENGTH);
+    request.writeData(pdu);
+    StringBuffer key = new StringBuffer(48);
+    key.append(addr.getHostAddress()).append(':').append(port)
+        .append('/').append(request.getUnitID())
+        .append('/').append(request.getFunctionCode())
+        .append('/').append(ModbusUtil.toHex(pdu.array(), 0, pdu.position()));
+    return key.toString();
+  }//createKey
+
+  /**
+   * A read in progress, as seen by one of its callers.
+   */
+  public class Flight {
+
+    private String m_Key;
+    private Flight m_Leader;
+    private ModbusResponse m_Response;
+    private ModbusException m_Exception;
+    private boolean m_Done;
+
+    private Flight(String key) {
+      m_Key = key;
+    }//constructor
+
+    private Flight(Flight leader) {
+      m_Key = leader.m_Key;
+      m_Leader = leader;
+    }//constructor
+
+    /**
+     * Tests if the caller leads this flight, i.e. has to
+     * execute the read.
+     *
+     * @return true if leader, false otherwise.
+     */
+    public boolean isLeader() {
+      return m_Leader == null;
+    }//isLeader
+
+    /**
+     * Completes this flight with the given response.
+     *
+     * @param response the <tt>ModbusResponse</tt> received.
+     */
+    public void complete(ModbusResponse response) {
+      finish(response, null);
+    }//complete
+
+    /**
+     * Fails this flight with the given exception.
+     *
+     * @param ex the <tt>ModbusException</tt> raised by the read.
+     */
+    public void fail(ModbusException ex) {
+      finish(null, ex);
+    }//fail
+
+    /**
+     * Waits for the leader to complete the flight.
+     *
+     * @return the <tt>ModbusResponse</tt> received by the leader.
+     * @throws ModbusException the exception raised by the leader's read.
+     */
+    public ModbusResponse await()
+        throws ModbusException {
+      Flight f = (m_Leader != null) ? m_Leader : this;
+      synchronized (f) {
+        try {
+          while (!f.m_Done) {
+            f.wait();
+          }
+        } catch (InterruptedException ex) {
+          throw new ModbusIOException("Interrupted while waiting for read.");
+        }
+        if (f.m_Exception != null) {
+          throw f.m_Exception;
+        }
+        return f.m_Response;
+      }
+    }//await
+
+    private void finish(ModbusResponse response, ModbusException ex) {
+      if (m_Leader != null) {
+        throw new IllegalStateException("Not leading the flight.");
+      }
+      remove(this);
+      synchronized (this) {
+        if (m_Done) {
+          return;
+        }
+        m_Response = response;
+        m_Exception = ex;
+        m_Done = true;
+        notifyAll();
+      }
+    }//finish
+
+  }//class Flight
+
+}//class ReadCoalescer
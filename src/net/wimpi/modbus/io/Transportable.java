@@ -3,6 +3,7 @@ package net.wimpi.modbus.io;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Interface defining a transportable class.
@@ -41,4 +42,27 @@ public interface Transportable {
   public void readFrom(DataInput din)
       throws IOException;
 
+  /**
+   * Writes this <tt>Transportable</tt> to the
+   * given <tt>ByteBuffer</tt>, starting at its current
+   * position. The buffer has to use big endian byte order.
+   *
+   * @param buf the <tt>ByteBuffer</tt> to write to.
+   * @throws java.nio.BufferOverflowException if the buffer
+   *         has not enough space remaining.
+   */
+  public void writeTo(ByteBuffer buf);
+
+  /**
+   * Reads this <tt>Transportable</tt> from the given
+   * <tt>ByteBuffer</tt>, starting at its current position.
+   * The buffer has to use big endian byte order.
+   *
+   * @param buf the <tt>ByteBuffer</tt> to read from.
+   * @throws java.io.IOException if the buffer ends prematurely or
+   *         the data is invalid.
+   */
+  public void readFrom(ByteBuffer buf)
+      throws IOException;
+
 }//interface Transportable
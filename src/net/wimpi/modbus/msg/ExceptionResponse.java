@@ -36,6 +36,7 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 
@@ -108,4 +109,13 @@ public class ExceptionResponse
     m_ExceptionCode = din.readUnsignedByte();
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    buf.put((byte) getExceptionCode());
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    m_ExceptionCode = buf.get() & 0xFF;
+  }//readData
+
 }//ExceptionResponse
@@ -38,6 +38,7 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 
@@ -82,4 +83,14 @@ public class IllegalFunctionRequest
     }
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    throw new IllegalStateException("Illegal function requests cannot be written.");
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    //skip the rest of the frame
+    buf.position(buf.limit());
+  }//readData
+
 }//IllegalFunctionRequest
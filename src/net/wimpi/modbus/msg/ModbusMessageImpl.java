@@ -35,7 +35,10 @@ package net.wimpi.modbus.msg;
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.util.ModbusUtil;
@@ -76,10 +79,13 @@ public abstract class ModbusMessageImpl
 
   /**
    * Sets the headless flag of this message.
+   * <p>
+   * This allows to pass a message between headless
+   * (serial) and header based transports, e.g. in a gateway.
    *
    * @param b true if headless, false otherwise.
    */
-  protected void setHeadless(boolean b) {
+  public void setHeadless(boolean b) {
     m_Headless = b;
   }//setHeadless
 
@@ -228,6 +234,49 @@ public abstract class ModbusMessageImpl
   public abstract void readData(DataInput din)
       throws IOException;
 
+  public void writeTo(ByteBuffer buf) {
+    if (!isHeadless()) {
+      buf.putShort((short) getTransactionID());
+      buf.putShort((short) getProtocolID());
+      buf.putShort((short) getDataLength());
+    }
+    buf.put((byte) getUnitID());
+    buf.put((byte) getFunctionCode());
+    writeData(buf);
+  }//writeTo
+
+  /**
+   * Writes the subclass specific data to the given <tt>ByteBuffer</tt>.
+   *
+   * @param buf the <tt>ByteBuffer</tt> to be written to.
+   */
+  public abstract void writeData(ByteBuffer buf);
+
+  public void readFrom(ByteBuffer buf)
+      throws IOException {
+    try {
+      if (!isHeadless()) {
+        setTransactionID(buf.getShort() & 0xFFFF);
+        setProtocolID(buf.getShort() & 0xFFFF);
+        m_DataLength = buf.getShort() & 0xFFFF;
+      }
+      setUnitID(buf.get() & 0xFF);
+      setFunctionCode(buf.get() & 0xFF);
+      readData(buf);
+    } catch (BufferUnderflowException ex) {
+      throw new EOFException("Premature end of message.");
+    }
+  }//readFrom
+
+  /**
+   * Reads the subclass specific data from the given <tt>ByteBuffer</tt>.
+   *
+   * @param buf the <tt>ByteBuffer</tt> to read from.
+   * @throws IOException if the data is invalid.
+   */
+  public abstract void readData(ByteBuffer buf)
+      throws IOException;
+
   public int getOutputLength() {
     int l = 2 + getDataLength();
     if (!isHeadless()) {
@@ -46,6 +46,60 @@ import net.wimpi.modbus.Modbus;
 public abstract class ModbusRequest
     extends ModbusMessageImpl {
 
+  private boolean m_Reusable = false;
+  private ModbusResponse m_Response;
+
+  /**
+   * Sets the flag that determines whether this request
+   * reuses the instances it creates, i.e. the response returned
+   * by {@link #createResponse()} and the objects holding the
+   * received values.
+   * <p>
+   * A reusable request returns the same response instance from
+   * every call to {@link #createResponse()}, refilled with the new
+   * data, so a response has to be written before the request
+   * is read or answered again. This allows a slave to serve
+   * requests without allocating objects (see {@link RequestPool}).
+   *
+   * @param b true if instances should be reused, false otherwise.
+   */
+  public void setReusable(boolean b) {
+    m_Reusable = b;
+    m_Response = null;
+  }//setReusable
+
+  /**
+   * Tests if this request reuses the instances it creates.
+   *
+   * @return true if instances are reused, false otherwise.
+   */
+  public boolean isReusable() {
+    return m_Reusable;
+  }//isReusable
+
+  /**
+   * Returns the response kept for reuse by
+   * {@link #keepResponse(ModbusResponse)}.
+   *
+   * @return the response, or null if there is none, or
+   *         this request is not reusable.
+   */
+  protected ModbusResponse getKeptResponse() {
+    return m_Response;
+  }//getKeptResponse
+
+  /**
+   * Keeps the given response for reuse, if this
+   * request is reusable.
+   *
+   * @param response the <tt>ModbusResponse</tt> to be kept.
+   */
+  protected void keepResponse(ModbusResponse response) {
+    if (m_Reusable) {
+      m_Response = response;
+    }
+  }//keepResponse
+
   /**
    * Returns the <tt>ModbusResponse</tt> that
    * correlates with this <tt>ModbusRequest</tt>.
@@ -83,6 +137,7 @@ public abstract class ModbusRequest
     } else {
       response.setHeadless();
     }
+    response.setUnitID(this.getUnitID());
     return response;
   }//createExceptionResponse
 
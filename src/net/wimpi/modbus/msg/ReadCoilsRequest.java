@@ -36,9 +36,12 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.ModbusCoupler;
+import net.wimpi.modbus.procimg.BulkProcessImage;
+import net.wimpi.modbus.procimg.DeviceFailureException;
 import net.wimpi.modbus.procimg.DigitalOut;
 import net.wimpi.modbus.procimg.IllegalAddressException;
 import net.wimpi.modbus.procimg.ProcessImage;
@@ -96,14 +99,26 @@ public final class ReadCoilsRequest
     DigitalOut[] douts = null;
 
     //1. get process image
-    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage();
-    //2. get coil range
+    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage(this.getUnitID());
+    //2. get coil range, copying the bits in bulk if supported by the image
     try {
-      douts = procimg.getDigitalOutRange(this.getReference(), this.getBitCount());
+      if (procimg instanceof BulkProcessImage) {
+        response = (ReadCoilsResponse) getKeptResponse();
+        if (response == null || response.getBitCount() != this.getBitCount()) {
+          response = new ReadCoilsResponse(this.getBitCount());
+          keepResponse(response);
+        }
+        ((BulkProcessImage) procimg).getDigitalOutBytes(
+            this.getReference(), this.getBitCount(), response.getCoils().getBytes(), 0);
+      } else {
+        douts = procimg.getDigitalOutRange(this.getReference(), this.getBitCount());
+        response = new ReadCoilsResponse(douts.length);
+      }
     } catch (IllegalAddressException iaex) {
       return createExceptionResponse(Modbus.ILLEGAL_ADDRESS_EXCEPTION);
+    } catch (DeviceFailureException dfex) {
+      return createExceptionResponse(Modbus.SLAVE_DEVICE_FAILURE_EXCEPTION);
     }
-    response = new ReadCoilsResponse(douts.length);
 
     //transfer header data
     if (!isHeadless()) {
@@ -115,8 +130,10 @@ public final class ReadCoilsRequest
     response.setUnitID(this.getUnitID());
     response.setFunctionCode(this.getFunctionCode());
 
-    for (int i = 0; i < douts.length; i++) {
-      response.setCoilStatus(i, douts[i].isSet());
+    if (douts != null) {
+      for (int i = 0; i < douts.length; i++) {
+        response.setCoilStatus(i, douts[i].isSet());
+      }
     }
     return response;
   }//createResponse
@@ -180,4 +197,15 @@ public final class ReadCoilsRequest
     m_BitCount = din.readUnsignedShort();
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) m_Reference);
+    buf.putShort((short) m_BitCount);
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    m_Reference = buf.getShort() & 0xFFFF;
+    m_BitCount = buf.getShort() & 0xFFFF;
+  }//readData
+
 }//class ReadCoilsRequest
@@ -36,6 +36,7 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.util.BitVector;
 
@@ -152,12 +153,26 @@ public final class ReadCoilsResponse
   public void readData(DataInput din)
       throws IOException {
     int count = din.readUnsignedByte();
-    byte[] data = new byte[count];
-    for (int k = 0; k < count; k++) {
-      data[k] = din.readByte();
-    }
-    //decode bytes into bitvector, sets data and remembers bit count
-    m_Coils = BitVector.createBitVector(data);
+    //read the packed bits straight into the bitvector
+    m_Coils = new BitVector(count * 8);
+    din.readFully(m_Coils.getBytes(), 0, count);
+    m_Coils.setStartLSB(true);
+    m_BitCount = m_Coils.size();
+    //update data length
+    setDataLength(count + 1);
+  }//readData
+
+  public void writeData(ByteBuffer buf) {
+    buf.put((byte) m_Coils.byteSize());
+    buf.put(m_Coils.getBytes(), 0, m_Coils.byteSize());
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    int count = buf.get() & 0xFF;
+    //read the packed bits straight into the bitvector
+    m_Coils = new BitVector(count * 8);
+    buf.get(m_Coils.getBytes(), 0, count);
     m_Coils.setStartLSB(true);
     m_BitCount = m_Coils.size();
     //update data length
@@ -36,9 +36,12 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.ModbusCoupler;
+import net.wimpi.modbus.procimg.BulkProcessImage;
+import net.wimpi.modbus.procimg.DeviceFailureException;
 import net.wimpi.modbus.procimg.DigitalIn;
 import net.wimpi.modbus.procimg.IllegalAddressException;
 import net.wimpi.modbus.procimg.ProcessImage;
@@ -105,14 +108,26 @@ public final class ReadInputDiscretesRequest
     DigitalIn[] dins = null;
 
     //1. get process image
-    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage();
-    //2. get inputdiscretes range
+    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage(this.getUnitID());
+    //2. get inputdiscretes range, copying the bits in bulk if supported by the image
     try {
-      dins = procimg.getDigitalInRange(this.getReference(), this.getBitCount());
+      if (procimg instanceof BulkProcessImage) {
+        response = (ReadInputDiscretesResponse) getKeptResponse();
+        if (response == null || response.getBitCount() != this.getBitCount()) {
+          response = new ReadInputDiscretesResponse(this.getBitCount());
+          keepResponse(response);
+        }
+        ((BulkProcessImage) procimg).getDigitalInBytes(
+            this.getReference(), this.getBitCount(), response.getDiscretes().getBytes(), 0);
+      } else {
+        dins = procimg.getDigitalInRange(this.getReference(), this.getBitCount());
+        response = new ReadInputDiscretesResponse(dins.length);
+      }
     } catch (IllegalAddressException iaex) {
       return createExceptionResponse(Modbus.ILLEGAL_ADDRESS_EXCEPTION);
+    } catch (DeviceFailureException dfex) {
+      return createExceptionResponse(Modbus.SLAVE_DEVICE_FAILURE_EXCEPTION);
     }
-    response = new ReadInputDiscretesResponse(dins.length);
     //transfer header data
     if (!isHeadless()) {
       response.setTransactionID(this.getTransactionID());
@@ -123,8 +138,10 @@ public final class ReadInputDiscretesRequest
     response.setUnitID(this.getUnitID());
     response.setFunctionCode(this.getFunctionCode());
 
-    for (int i = 0; i < dins.length; i++) {
-      response.setDiscreteStatus(i, dins[i].isSet());
+    if (dins != null) {
+      for (int i = 0; i < dins.length; i++) {
+        response.setDiscreteStatus(i, dins[i].isSet());
+      }
     }
     return response;
   }//createResponse
@@ -189,6 +206,17 @@ public final class ReadInputDiscretesRequest
     m_BitCount = din.readUnsignedShort();
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) m_Reference);
+    buf.putShort((short) m_BitCount);
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    m_Reference = buf.getShort() & 0xFFFF;
+    m_BitCount = buf.getShort() & 0xFFFF;
+  }//readData
+
 /*
   protected void assembleData() throws IOException {
     m_DataOut.writeShort(m_Reference);
@@ -36,6 +36,7 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.util.BitVector;
 
@@ -154,19 +155,31 @@ public final class ReadInputDiscretesResponse
       throws IOException {
 
     int count = din.readUnsignedByte();
-    byte[] data = new byte[count];
-    for (int k = 0; k < count; k++) {
-      data[k] = din.readByte();
-    }
-
-    //decode bytes into bitvector
-    m_Discretes = BitVector.createBitVector(data);
+    //read the packed bits straight into the bitvector
+    m_Discretes = new BitVector(count * 8);
+    din.readFully(m_Discretes.getBytes(), 0, count);
     m_Discretes.setStartLSB(true);
 
     //update data length
     setDataLength(count + 1);
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    buf.put((byte) m_Discretes.byteSize());
+    buf.put(m_Discretes.getBytes(), 0, m_Discretes.byteSize());
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    int count = buf.get() & 0xFF;
+    //read the packed bits straight into the bitvector
+    m_Discretes = new BitVector(count * 8);
+    buf.get(m_Discretes.getBytes(), 0, count);
+    m_Discretes.setStartLSB(true);
+    //update data length
+    setDataLength(count + 1);
+  }//readData
+
   /*
   protected void assembleData() throws IOException {
     m_DataOut.writeByte(m_Discretes.byteSize());
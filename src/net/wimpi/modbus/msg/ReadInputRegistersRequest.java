@@ -36,9 +36,12 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.ModbusCoupler;
+import net.wimpi.modbus.procimg.BulkProcessImage;
+import net.wimpi.modbus.procimg.DeviceFailureException;
 import net.wimpi.modbus.procimg.IllegalAddressException;
 import net.wimpi.modbus.procimg.InputRegister;
 import net.wimpi.modbus.procimg.ProcessImage;
@@ -102,14 +105,26 @@ public final class ReadInputRegistersRequest
     InputRegister[] inpregs = null;
 
     //1. get process image
-    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage();
-    //2. get input registers range
+    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage(this.getUnitID());
+    //2. get the range, in bulk if supported by the image
     try {
-      inpregs = procimg.getInputRegisterRange(this.getReference(), this.getWordCount());
+      if (procimg instanceof BulkProcessImage) {
+        response = (ReadInputRegistersResponse) getKeptResponse();
+        if (response == null) {
+          response = new ReadInputRegistersResponse();
+          keepResponse(response);
+        }
+        byte[] data = response.prepareData(this.getWordCount() * 2);
+        ((BulkProcessImage) procimg).getInputRegisterBytes(this.getReference(), this.getWordCount(), data, 0);
+      } else {
+        inpregs = procimg.getInputRegisterRange(this.getReference(), this.getWordCount());
+        response = new ReadInputRegistersResponse(inpregs);
+      }
     } catch (IllegalAddressException iaex) {
       return createExceptionResponse(Modbus.ILLEGAL_ADDRESS_EXCEPTION);
+    } catch (DeviceFailureException dfex) {
+      return createExceptionResponse(Modbus.SLAVE_DEVICE_FAILURE_EXCEPTION);
     }
-    response = new ReadInputRegistersResponse(inpregs);
     //transfer header data
     if (!isHeadless()) {
       response.setTransactionID(this.getTransactionID());
@@ -180,6 +195,17 @@ public final class ReadInputRegistersRequest
     m_WordCount = din.readUnsignedShort();
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) m_Reference);
+    buf.putShort((short) m_WordCount);
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    m_Reference = buf.getShort() & 0xFFFF;
+    m_WordCount = buf.getShort() & 0xFFFF;
+  }//readData
+
   /*
   protected void assembleData() throws IOException {
     m_DataOut.writeShort(m_Reference);
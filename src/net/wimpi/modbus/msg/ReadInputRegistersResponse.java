@@ -36,6 +36,7 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.procimg.InputRegister;
 import net.wimpi.modbus.procimg.Register;
@@ -57,6 +58,7 @@ public final class ReadInputRegistersResponse
   private int m_ByteCount;
   //private int[] m_RegisterValues;
   private InputRegister[] m_Registers;
+  private byte[] m_Data;  //register values as received, until needed as registers
 
   /**
    * Constructs a new <tt>ReadInputRegistersResponse</tt>
@@ -94,6 +96,41 @@ public final class ReadInputRegistersResponse
     setDataLength(m_ByteCount + 1);
   }//constructor
 
+  /**
+   * Constructs a new <tt>ReadInputRegistersResponse</tt>
+   * instance with the given register values.
+   * <p>
+   * The values are written as they are, without creating
+   * a register instance per value.
+   *
+   * @param data the register values (2 bytes each, big endian).
+   */
+  public ReadInputRegistersResponse(byte[] data) {
+    super();
+    m_Data = data;
+    m_ByteCount = data.length;
+    //set correct data length excluding unit id and fc
+    setDataLength(m_ByteCount + 1);
+  }//constructor
+
+
+  /**
+   * Prepares this response for holding the given number
+   * of data bytes, reusing its buffer if possible.
+   *
+   * @param bytecount the number of data bytes.
+   * @return the buffer to copy the register values to.
+   */
+  byte[] prepareData(int bytecount) {
+    if (m_Data == null || m_Data.length < bytecount) {
+      m_Data = new byte[bytecount];
+    }
+    m_Registers = null;
+    setByteCount(bytecount);
+    //set correct data length excluding unit id and fc
+    setDataLength(m_ByteCount + 1);
+    return m_Data;
+  }//prepareData
 
   /**
    * Returns the number of bytes that have been read.
@@ -144,16 +181,46 @@ public final class ReadInputRegistersResponse
     if (index >= getWordCount()) {
       throw new IndexOutOfBoundsException();
     } else {
-      return m_Registers[index];
+      return registers()[index];
     }
   }//getRegister
 
+  /**
+   * Returns a reference to the array of registers
+   * read.
+   *
+   * @return a <tt>InputRegister[]</tt> instance.
+   */
+  public InputRegister[] getRegisters() {
+    return registers();
+  }//getRegisters
+
+  /**
+   * Returns the registers, creating them from the
+   * register values if required.
+   *
+   * @return the <tt>InputRegister[]</tt>.
+   */
+  private InputRegister[] registers() {
+    if (m_Registers == null && m_Data != null) {
+      InputRegister[] registers = new InputRegister[getWordCount()];
+      for (int k = 0; k < registers.length; k++) {
+        registers[k] = new SimpleRegister(m_Data[k * 2], m_Data[k * 2 + 1]);
+      }
+      m_Registers = registers;
+    }
+    return m_Registers;
+  }//registers
+
   /**
    * Returns the value of the register at
    * the given position (relative to the reference
    * used in the request) interpreted as usigned
    * short.
    * <p>
+   * The value is decoded from the received data, without
+   * creating a register instance.
+   * <p>
    * @param index the relative index of the register
    *        for which the value should be retrieved.
    *
@@ -168,6 +235,9 @@ public final class ReadInputRegistersResponse
     if (index >= getWordCount()) {
       throw new IndexOutOfBoundsException();
     } else {
+      if (m_Registers == null) {
+        return ((m_Data[index * 2] & 0xff) << 8) | (m_Data[index * 2 + 1] & 0xff);
+      }
       return m_Registers[index].toUnsignedShort();
     }
   }//getRegisterValue
@@ -175,6 +245,10 @@ public final class ReadInputRegistersResponse
   public void writeData(DataOutput dout)
       throws IOException {
     dout.writeByte(m_ByteCount);
+    if (m_Registers == null) {
+      dout.write(m_Data, 0, m_ByteCount);
+      return;
+    }
     for (int k = 0; k < getWordCount(); k++) {
       dout.write(m_Registers[k].toBytes());
     }
@@ -182,17 +256,28 @@ public final class ReadInputRegistersResponse
 
   public void readData(DataInput din)
       throws IOException {
-    setByteCount(din.readUnsignedByte());
+    int bytecount = din.readUnsignedByte();
+    //keep the values as received, registers are created when needed
+    din.readFully(prepareData(bytecount), 0, bytecount);
+  }//readData
 
-    Register[] registers = new Register[getWordCount()];
+  public void writeData(ByteBuffer buf) {
+    buf.put((byte) m_ByteCount);
+    if (m_Registers == null) {
+      buf.put(m_Data, 0, m_ByteCount);
+      return;
+    }
     for (int k = 0; k < getWordCount(); k++) {
-      //TODO: Replace with instance from factory method
-      registers[k] = new SimpleRegister(din.readByte(), din.readByte());
+      buf.putShort(m_Registers[k].toShort());
     }
-    m_Registers = registers;
-    //update data length
-    setDataLength(getByteCount() + 1);
-  }
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    int bytecount = buf.get() & 0xFF;
+    //keep the values as received, registers are created when needed
+    buf.get(prepareData(bytecount), 0, bytecount);
+  }//readData
 
   /*
   protected void assembleData() throws IOException {
@@ -36,6 +36,7 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.procimg.Register;
 import net.wimpi.modbus.procimg.SimpleRegister;
@@ -56,6 +57,7 @@ public final class ReadMultipleRegistersResponse
   private int m_ByteCount;
   //private int[] m_RegisterValues;
   private Register[] m_Registers;
+  private byte[] m_Data;  //register values as received, until needed as registers
 
   /**
    * Constructs a new <tt>ReadMultipleRegistersResponse</tt>
@@ -79,6 +81,41 @@ public final class ReadMultipleRegistersResponse
     setDataLength(m_ByteCount + 1);
   }//constructor
 
+  /**
+   * Constructs a new <tt>ReadMultipleRegistersResponse</tt>
+   * instance with the given register values.
+   * <p>
+   * The values are written as they are, without creating
+   * a register instance per value.
+   *
+   * @param data the register values (2 bytes each, big endian).
+   */
+  public ReadMultipleRegistersResponse(byte[] data) {
+    super();
+    m_Data = data;
+    m_ByteCount = data.length;
+    //set correct data length excluding unit id and fc
+    setDataLength(m_ByteCount + 1);
+  }//constructor
+
+
+  /**
+   * Prepares this response for holding the given number
+   * of data bytes, reusing its buffer if possible.
+   *
+   * @param bytecount the number of data bytes.
+   * @return the buffer to copy the register values to.
+   */
+  byte[] prepareData(int bytecount) {
+    if (m_Data == null || m_Data.length < bytecount) {
+      m_Data = new byte[bytecount];
+    }
+    m_Registers = null;
+    setByteCount(bytecount);
+    //set correct data length excluding unit id and fc
+    setDataLength(m_ByteCount + 1);
+    return m_Data;
+  }//prepareData
 
   /**
    * Returns the number of bytes that have been read.
@@ -117,6 +154,9 @@ public final class ReadMultipleRegistersResponse
    * the given position (relative to the reference
    * used in the request) interpreted as unsigned short.
    * <p>
+   * The value is decoded from the received data, without
+   * creating a register instance.
+   * <p>
    * @param index the relative index of the register
    *        for which the value should be retrieved.
    *
@@ -127,6 +167,12 @@ public final class ReadMultipleRegistersResponse
    */
   public int getRegisterValue(int index)
       throws IndexOutOfBoundsException {
+    if (index >= getWordCount()) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (m_Registers == null) {
+      return ((m_Data[index * 2] & 0xff) << 8) | (m_Data[index * 2 + 1] & 0xff);
+    }
     return m_Registers[index].toUnsignedShort();
   }//getRegisterValue
 
@@ -148,10 +194,37 @@ public final class ReadMultipleRegistersResponse
     if (index >= getWordCount()) {
       throw new IndexOutOfBoundsException();
     } else {
-      return m_Registers[index];
+      return registers()[index];
     }
   }//getRegister
 
+  /**
+   * Returns a reference to the array of registers
+   * read.
+   *
+   * @return a <tt>Register[]</tt> instance.
+   */
+  public Register[] getRegisters() {
+    return registers();
+  }//getRegisters
+
+  /**
+   * Returns the registers, creating them from the
+   * register values if required.
+   *
+   * @return the <tt>Register[]</tt>.
+   */
+  private Register[] registers() {
+    if (m_Registers == null && m_Data != null) {
+      Register[] registers = new Register[getWordCount()];
+      for (int k = 0; k < registers.length; k++) {
+        registers[k] = new SimpleRegister(m_Data[k * 2], m_Data[k * 2 + 1]);
+      }
+      m_Registers = registers;
+    }
+    return m_Registers;
+  }//registers
+
   //public void setRegisterValue(int index, int value)
   //    throws IndexOutOfBoundsException {
   //  m_RegisterValues[index] = value;
@@ -160,6 +233,10 @@ public final class ReadMultipleRegistersResponse
   public void writeData(DataOutput dout)
       throws IOException {
     dout.writeByte(m_ByteCount);
+    if (m_Registers == null) {
+      dout.write(m_Data, 0, m_ByteCount);
+      return;
+    }
     for (int k = 0; k < getWordCount(); k++) {
       dout.write(m_Registers[k].toBytes());
     }
@@ -167,16 +244,27 @@ public final class ReadMultipleRegistersResponse
 
   public void readData(DataInput din)
       throws IOException {
-    setByteCount(din.readUnsignedByte());
+    int bytecount = din.readUnsignedByte();
+    //keep the values as received, registers are created when needed
+    din.readFully(prepareData(bytecount), 0, bytecount);
+  }//readData
 
-    //TODO: get instance from factory method
-    m_Registers = new Register[getWordCount()];
+  public void writeData(ByteBuffer buf) {
+    buf.put((byte) m_ByteCount);
+    if (m_Registers == null) {
+      buf.put(m_Data, 0, m_ByteCount);
+      return;
+    }
     for (int k = 0; k < getWordCount(); k++) {
-      m_Registers[k] = new SimpleRegister(din.readByte(), din.readByte());
+      buf.putShort(m_Registers[k].toShort());
     }
+  }//writeData
 
-    //update data length
-    setDataLength(getByteCount() + 1);
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    int bytecount = buf.get() & 0xFF;
+    //keep the values as received, registers are created when needed
+    buf.get(prepareData(bytecount), 0, bytecount);
   }//readData
 
   /*
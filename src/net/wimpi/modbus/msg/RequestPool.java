@@ -0,0 +1,72 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.msg;
+
+/**
+ * Class implementing a pool of reusable requests,
+ * holding one instance per function code.
+ * <p>
+ * A slave transport reading its requests from a pool decodes
+ * every request into the instance for its function code, and
+ * the request refills its own response instance (see
+ * {@link ModbusRequest#setReusable(boolean)}), so that requests
+ * are served without allocations in the steady state.
+ * A pool serves a single connection; it is not thread safe.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class RequestPool {
+
+  //instance attributes
+  private ModbusRequest[] m_Requests = new ModbusRequest[256];
+
+  /**
+   * Returns the request instance for the given function code,
+   * creating it on first use.
+   *
+   * @param functionCode the function code of the request.
+   * @return the reusable <tt>ModbusRequest</tt> instance.
+   */
+  public ModbusRequest getRequest(int functionCode) {
+    ModbusRequest request = m_Requests[functionCode & 0xff];
+    if (request == null) {
+      request = ModbusRequest.createModbusRequest(functionCode);
+      request.setReusable(true);
+      m_Requests[functionCode & 0xff] = request;
+    }
+    return request;
+  }//getRequest
+
+}//class RequestPool
@@ -36,9 +36,12 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.ModbusCoupler;
+import net.wimpi.modbus.procimg.BulkProcessImage;
+import net.wimpi.modbus.procimg.DeviceFailureException;
 import net.wimpi.modbus.procimg.DigitalOut;
 import net.wimpi.modbus.procimg.IllegalAddressException;
 import net.wimpi.modbus.procimg.ProcessImage;
@@ -58,6 +61,7 @@ public final class WriteCoilRequest
   //instance attributes
   private int m_Reference;
   private boolean m_Coil;
+  private byte[] m_Buffer = new byte[1];
 
   /**
    * Constructs a new <tt>WriteCoilRequest</tt>
@@ -100,19 +104,33 @@ public final class WriteCoilRequest
   
   public ModbusResponse createResponse() {
     WriteCoilResponse response = null;
-    DigitalOut dout = null;
+    boolean state;
 
     //1. get process image
-    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage();
-    //2. get coil
+    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage(this.getUnitID());
+    //2. set coil
     try {
-      dout = procimg.getDigitalOut(this.getReference());
-      //3. set coil
-      dout.set(this.getCoil());
+      if (procimg instanceof BulkProcessImage) {
+        m_Buffer[0] = (byte) (this.getCoil() ? 0x80 : 0);
+        ((BulkProcessImage) procimg).setDigitalOutBytes(this.getReference(), 1, m_Buffer, 0);
+        state = this.getCoil();
+      } else {
+        DigitalOut dout = procimg.getDigitalOut(this.getReference());
+        dout.set(this.getCoil());
+        state = dout.isSet();
+      }
     } catch (IllegalAddressException iaex) {
       return createExceptionResponse(Modbus.ILLEGAL_ADDRESS_EXCEPTION);
+    } catch (DeviceFailureException dfex) {
+      return createExceptionResponse(Modbus.SLAVE_DEVICE_FAILURE_EXCEPTION);
     }
-    response = new WriteCoilResponse(this.getReference(), dout.isSet());
+    response = (WriteCoilResponse) getKeptResponse();
+    if (response == null) {
+      response = new WriteCoilResponse();
+      keepResponse(response);
+    }
+    response.setReference(this.getReference());
+    response.setCoil(state);
     //transfer header data
     if (!isHeadless()) {
       response.setTransactionID(this.getTransactionID());
@@ -194,6 +212,23 @@ public final class WriteCoilRequest
     //skip last byte
     din.readByte();
   }//readData
+
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) m_Reference);
+    if (m_Coil) {
+      buf.put(Modbus.COIL_ON_BYTES, 0, 2);
+    } else {
+      buf.put(Modbus.COIL_OFF_BYTES, 0, 2);
+    }
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    m_Reference = buf.getShort() & 0xFFFF;
+    m_Coil = (buf.get() == Modbus.COIL_ON);
+    //skip last byte
+    buf.get();
+  }//readData
 /*
   protected void assembleData() throws IOException {
     m_DataOut.writeShort(m_Reference);
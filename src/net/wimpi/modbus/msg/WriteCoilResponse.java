@@ -36,6 +36,7 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 
@@ -85,7 +86,7 @@ public final class WriteCoilResponse
    * @param b true if the coil should be set of
    *        false if it should be unset.
    */
-  private void setCoil(boolean b) {
+  void setCoil(boolean b) {
     m_Coil = b;
   }//setCoil
 
@@ -115,7 +116,7 @@ public final class WriteCoilResponse
    * <p>
    * @param ref the reference of the coil's register.
    */
-  private void setReference(int ref) {
+  void setReference(int ref) {
     m_Reference = ref;
     //setChanged(true);
   }//setReference
@@ -149,6 +150,25 @@ public final class WriteCoilResponse
     setDataLength(4);
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) getReference());
+    if (getCoil()) {
+      buf.put(Modbus.COIL_ON_BYTES, 0, 2);
+    } else {
+      buf.put(Modbus.COIL_OFF_BYTES, 0, 2);
+    }
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    setReference(buf.getShort() & 0xFFFF);
+    //set toggle, skip last byte
+    setCoil(buf.get() == Modbus.COIL_ON);
+    buf.get();
+    //update data length
+    setDataLength(4);
+  }//readData
+
   /*
   protected void assembleData() throws IOException {
     m_DataOut.writeShort(getReference());
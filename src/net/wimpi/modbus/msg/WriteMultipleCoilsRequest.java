@@ -36,9 +36,12 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.ModbusCoupler;
+import net.wimpi.modbus.procimg.BulkProcessImage;
+import net.wimpi.modbus.procimg.DeviceFailureException;
 import net.wimpi.modbus.procimg.DigitalOut;
 import net.wimpi.modbus.procimg.IllegalAddressException;
 import net.wimpi.modbus.procimg.ProcessImage;
@@ -85,7 +88,7 @@ public final class WriteMultipleCoilsRequest
    */
   public WriteMultipleCoilsRequest(int ref, int count) {
     super();
-    setFunctionCode(Modbus.READ_COILS);
+    setFunctionCode(Modbus.WRITE_MULTIPLE_COILS);
     setReference(ref);
     setBitCount(count);
   }//constructor
@@ -103,18 +106,32 @@ public final class WriteMultipleCoilsRequest
     DigitalOut douts[] = null;
 
     //1. get process image
-    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage();
+    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage(this.getUnitID());
     //2. get coil range
     try {
-      douts = procimg.getDigitalOutRange(m_Reference, m_BitCount);
-      //3. set coils
-      for(int i=0;i<douts.length;i++) {
-        douts[i].set(m_Coils.getBit(i));
+      if (procimg instanceof BulkProcessImage) {
+        //set the coils word-wise from the received bytes
+        ((BulkProcessImage) procimg).setDigitalOutBytes(
+            m_Reference, m_BitCount, m_Coils.getBytes(), 0);
+      } else {
+        douts = procimg.getDigitalOutRange(m_Reference, m_BitCount);
+        //3. set coils
+        for(int i=0;i<douts.length;i++) {
+          douts[i].set(m_Coils.getBit(i));
+        }
       }
     } catch (IllegalAddressException iaex) {
       return createExceptionResponse(Modbus.ILLEGAL_ADDRESS_EXCEPTION);
+    } catch (DeviceFailureException dfex) {
+      return createExceptionResponse(Modbus.SLAVE_DEVICE_FAILURE_EXCEPTION);
+    }
+    response = (WriteMultipleCoilsResponse) getKeptResponse();
+    if (response == null) {
+      response = new WriteMultipleCoilsResponse();
+      keepResponse(response);
     }
-    response = new WriteMultipleCoilsResponse(m_Reference, m_BitCount);
+    response.setReference(m_Reference);
+    response.setBitCount(m_BitCount);
 
     //transfer header data
     if (!isHeadless()) {
@@ -246,5 +263,30 @@ public final class WriteMultipleCoilsRequest
     setDataLength(count + 5);
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) m_Reference);
+    buf.putShort((short) m_BitCount);
+    buf.put((byte) m_Coils.byteSize());
+    buf.put(m_Coils.getBytes(), 0, m_Coils.byteSize());
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    m_Reference = buf.getShort() & 0xFFFF;
+    m_BitCount = buf.getShort() & 0xFFFF;
+    int count = buf.get() & 0xFF;
+    if (isReusable() && m_Coils != null && m_Coils.byteSize() == count) {
+      buf.get(m_Coils.getBytes(), 0, count);
+    } else {
+      byte[] data = new byte[count];
+      buf.get(data);
+      //decode bytes into bitvector, sets data
+      m_Coils = BitVector.createBitVector(data);
+      m_Coils.setStartLSB(true);
+    }
+    //update data length
+    setDataLength(count + 5);
+  }//readData
+
 
 }//class WriteMultipleCoilsRequest
@@ -36,6 +36,7 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Class implementing a <tt>WriteMultipleCoilsResponse</tt>.
@@ -76,6 +77,7 @@ public final class WriteMultipleCoilsResponse
     super();
     m_Reference = ref;
     m_BitCount = count;
+    setDataLength(4);
   }//constructor(int)
 
   /**
@@ -89,6 +91,15 @@ public final class WriteMultipleCoilsResponse
     return m_Reference;
   }//getReference
 
+  /**
+   * Sets the reference of the register to start writing to.
+   *
+   * @param ref the reference of the first coil.
+   */
+  void setReference(int ref) {
+    m_Reference = ref;
+  }//setReference
+
   /**
    * Returns the number of bits (i.e. coils)
    * read with the request.
@@ -123,4 +134,15 @@ public final class WriteMultipleCoilsResponse
     m_BitCount = din.readUnsignedShort();
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) m_Reference);
+    buf.putShort((short) m_BitCount);
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    m_Reference = buf.getShort() & 0xFFFF;
+    m_BitCount = buf.getShort() & 0xFFFF;
+  }//readData
+
 }//class ReadCoilsResponse
@@ -36,10 +36,13 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.ModbusCoupler;
 import net.wimpi.modbus.io.NonWordDataHandler;
+import net.wimpi.modbus.procimg.BulkProcessImage;
+import net.wimpi.modbus.procimg.DeviceFailureException;
 import net.wimpi.modbus.procimg.IllegalAddressException;
 import net.wimpi.modbus.procimg.ProcessImage;
 import net.wimpi.modbus.procimg.Register;
@@ -62,6 +65,7 @@ public final class WriteMultipleRegistersRequest
   //private int[] m_RegisterValues;
   private Register[] m_Registers;
   private NonWordDataHandler m_NonWordDataHandler = null;
+  private byte[] m_Buffer;
   //private static boolean m_NonWord=false;
 
   /**
@@ -92,21 +96,40 @@ public final class WriteMultipleRegistersRequest
     WriteMultipleRegistersResponse response = null;
 
     if (m_NonWordDataHandler == null) {
-      Register[] regs = null;
       //1. get process image
-      ProcessImage procimg = ModbusCoupler.getReference().getProcessImage();
-      //2. get registers
+      ProcessImage procimg = ModbusCoupler.getReference().getProcessImage(this.getUnitID());
+      //2. set register values
       try {
-        //TODO: realize a setRegisterRange()?
-        regs = procimg.getRegisterRange(this.getReference(), this.getWordCount());
-        //3. set Register values
-        for (int i = 0; i < regs.length; i++) {
-          regs[i].setValue(this.getRegister(i).toBytes());
+        if (procimg instanceof BulkProcessImage) {
+          //set the whole range at once, so it is updated atomically
+          if (m_Buffer == null || m_Buffer.length < getByteCount()) {
+            m_Buffer = new byte[getByteCount()];
+          }
+          byte[] data = m_Buffer;
+          for (int i = 0; i < m_Registers.length; i++) {
+            int v = m_Registers[i].toUnsignedShort();
+            data[i * 2] = (byte) (v >> 8);
+            data[i * 2 + 1] = (byte) v;
+          }
+          ((BulkProcessImage) procimg).setRegisterBytes(this.getReference(), this.getWordCount(), data, 0);
+        } else {
+          Register[] regs = procimg.getRegisterRange(this.getReference(), this.getWordCount());
+          for (int i = 0; i < regs.length; i++) {
+            regs[i].setValue(this.getRegister(i).toBytes());
+          }
         }
       } catch (IllegalAddressException iaex) {
         return createExceptionResponse(Modbus.ILLEGAL_ADDRESS_EXCEPTION);
+      } catch (DeviceFailureException dfex) {
+        return createExceptionResponse(Modbus.SLAVE_DEVICE_FAILURE_EXCEPTION);
       }
-      response = new WriteMultipleRegistersResponse(this.getReference(), regs.length);
+      response = (WriteMultipleRegistersResponse) getKeptResponse();
+      if (response == null) {
+        response = new WriteMultipleRegistersResponse();
+        keepResponse(response);
+      }
+      response.setReference(this.getReference());
+      response.setWordCount(this.getWordCount());
     } else {
       int result = m_NonWordDataHandler.commitUpdate();
       if (result > 0) {
@@ -161,6 +184,8 @@ public final class WriteMultipleRegistersRequest
    */
   public void setRegisters(Register[] registers) {
     m_Registers = registers;
+    //reference, word count, byte count and values
+    setDataLength(5 + registers.length * 2);
   }//setRegisters
 
 
@@ -293,4 +318,43 @@ public final class WriteMultipleRegistersRequest
     }
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) m_Reference);
+    buf.putShort((short) getWordCount());
+    buf.put((byte) getByteCount());
+    if (m_NonWordDataHandler == null) {
+      for (int n = 0; n < m_Registers.length; n++) {
+        buf.putShort(m_Registers[n].toShort());
+      }
+    } else {
+      m_NonWordDataHandler.prepareData(getReference(), getWordCount());
+      buf.put(m_NonWordDataHandler.getData());
+    }
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    m_Reference = buf.getShort() & 0xFFFF;
+    //read lengths
+    int wc = buf.getShort() & 0xFFFF;
+    int bc = buf.get() & 0xFF;
+
+    //read values
+    if (m_NonWordDataHandler == null) {
+      if (isReusable() && m_Registers != null && m_Registers.length == wc) {
+        for (int i = 0; i < wc; i++) {
+          m_Registers[i].setValue(buf.getShort());
+        }
+        return;
+      }
+      m_Registers = new Register[wc];
+      for (int i = 0; i < wc; i++) {
+        m_Registers[i] = new SimpleRegister(buf.get(), buf.get());
+      }
+    } else {
+      //skip the values, like the stream based implementation
+      buf.position(buf.position() + bc);
+    }
+  }//readData
+
 }//class WriteMultipleRegistersRequest
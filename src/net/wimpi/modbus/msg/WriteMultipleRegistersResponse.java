@@ -36,6 +36,7 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Class implementing a <tt>WriteMultipleRegistersResponse</tt>.
@@ -59,6 +60,7 @@ public final class WriteMultipleRegistersResponse
    */
   public WriteMultipleRegistersResponse() {
     super();
+    setDataLength(4);
   }//constructor
 
   /**
@@ -82,7 +84,7 @@ public final class WriteMultipleRegistersResponse
    * @param ref the reference of the register
    *        to start writing to as <tt>int</tt>.
    */
-  private void setReference(int ref) {
+  void setReference(int ref) {
     m_Reference = ref;
     //setChanged(true);
   }//setReference
@@ -126,7 +128,7 @@ public final class WriteMultipleRegistersResponse
    * <p>
    * @param count the number of words as <tt>int</tt>.
    */
-  private void setWordCount(int count) {
+  void setWordCount(int count) {
     m_WordCount = count;
     //setChanged(true);
   }//setWordCount
@@ -148,6 +150,21 @@ public final class WriteMultipleRegistersResponse
     setDataLength(4);
   }
 
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) m_Reference);
+    buf.putShort((short) getWordCount());
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    setReference(buf.getShort() & 0xFFFF);
+    setWordCount(buf.getShort() & 0xFFFF);
+    //NOTE: register values are not echoed
+
+    //update data length
+    setDataLength(4);
+  }//readData
+
   /*
   protected void assembleData() throws IOException {
     m_DataOut.writeShort(m_Reference);
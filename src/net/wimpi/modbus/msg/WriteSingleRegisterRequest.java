@@ -36,9 +36,12 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.ModbusCoupler;
+import net.wimpi.modbus.procimg.BulkProcessImage;
+import net.wimpi.modbus.procimg.DeviceFailureException;
 import net.wimpi.modbus.procimg.IllegalAddressException;
 import net.wimpi.modbus.procimg.ProcessImage;
 import net.wimpi.modbus.procimg.Register;
@@ -59,6 +62,7 @@ public final class WriteSingleRegisterRequest
   //instance attributes
   private int m_Reference;
   private Register m_Register;
+  private byte[] m_Buffer = new byte[2];
 
   /**
    * Constructs a new <tt>WriteSingleRegisterRequest</tt>
@@ -90,19 +94,34 @@ public final class WriteSingleRegisterRequest
   
   public ModbusResponse createResponse() {
     WriteSingleRegisterResponse response = null;
-    Register reg = null;
+    int value;
 
     //1. get process image
-    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage();
-    //2. get register
+    ProcessImage procimg = ModbusCoupler.getReference().getProcessImage(this.getUnitID());
+    //2. set register
     try {
-      reg = procimg.getRegister(m_Reference);
-      //3. set Register
-      reg.setValue(m_Register.toBytes());
+      if (procimg instanceof BulkProcessImage) {
+        value = m_Register.toUnsignedShort();
+        m_Buffer[0] = (byte) (value >> 8);
+        m_Buffer[1] = (byte) value;
+        ((BulkProcessImage) procimg).setRegisterBytes(m_Reference, 1, m_Buffer, 0);
+      } else {
+        Register reg = procimg.getRegister(m_Reference);
+        reg.setValue(m_Register.toBytes());
+        value = reg.getValue();
+      }
     } catch (IllegalAddressException iaex) {
       return createExceptionResponse(Modbus.ILLEGAL_ADDRESS_EXCEPTION);
+    } catch (DeviceFailureException dfex) {
+      return createExceptionResponse(Modbus.SLAVE_DEVICE_FAILURE_EXCEPTION);
     }
-    response = new WriteSingleRegisterResponse(this.getReference(), reg.getValue());
+    response = (WriteSingleRegisterResponse) getKeptResponse();
+    if (response == null) {
+      response = new WriteSingleRegisterResponse();
+      keepResponse(response);
+    }
+    response.setReference(this.getReference());
+    response.setRegisterValue(value);
     //transfer header data
     if (!isHeadless()) {
       response.setTransactionID(this.getTransactionID());
@@ -172,4 +191,19 @@ public final class WriteSingleRegisterRequest
     m_Register = new SimpleRegister(din.readByte(), din.readByte());
   }//readData
 
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) m_Reference);
+    buf.putShort(m_Register.toShort());
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    m_Reference = buf.getShort() & 0xFFFF;
+    if (isReusable() && m_Register != null) {
+      m_Register.setValue(buf.getShort());
+    } else {
+      m_Register = new SimpleRegister(buf.get(), buf.get());
+    }
+  }//readData
+
 }//class WriteSingleRegisterRequest
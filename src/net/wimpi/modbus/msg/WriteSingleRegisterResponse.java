@@ -36,6 +36,7 @@ package net.wimpi.modbus.msg;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Class implementing a <tt>WriteSingleRegisterResponse</tt>.
@@ -59,6 +60,7 @@ public final class WriteSingleRegisterResponse
    */
   public WriteSingleRegisterResponse() {
     super();
+    setDataLength(4);
   }//constructor
 
   /**
@@ -92,7 +94,7 @@ public final class WriteSingleRegisterResponse
    * <p>
    * @param value the returned register value.
    */
-  private void setRegisterValue(int value) {
+  void setRegisterValue(int value) {
     m_RegisterValue = value;
   }//setRegisterValue
 
@@ -112,7 +114,7 @@ public final class WriteSingleRegisterResponse
    * <p>
    * @param ref the reference of the written register.
    */
-  private void setReference(int ref) {
+  void setReference(int ref) {
     m_Reference = ref;
     //setChanged(true);
   }//setReference
@@ -130,6 +132,19 @@ public final class WriteSingleRegisterResponse
     //update data length
     setDataLength(4);
   }//readData
+
+  public void writeData(ByteBuffer buf) {
+    buf.putShort((short) getReference());
+    buf.putShort((short) getRegisterValue());
+  }//writeData
+
+  public void readData(ByteBuffer buf)
+      throws IOException {
+    setReference(buf.getShort() & 0xFFFF);
+    setRegisterValue(buf.getShort() & 0xFFFF);
+    //update data length
+    setDataLength(4);
+  }//readData
 /*
   protected void assembleData() throws IOException {
     m_DataOut.writeShort(getReference());
@@ -0,0 +1,180 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.net;
+
+import java.net.InetAddress;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusIOException;
+import net.wimpi.modbus.msg.ModbusRequest;
+import net.wimpi.modbus.msg.ModbusResponse;
+
+/**
+ * Class that implements a gateway forwarding the
+ * requests of Modbus/TCP masters to slaves on serial
+ * (RTU) buses.
+ * <p>
+ * Requests are routed to a <tt>SerialBusQueue</tt> by their
+ * unit identifier. Each request has to be put on the bus within
+ * the request timeout; requests that expire while queued are
+ * dropped without an answer, as the master has already given
+ * up on them.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class ModbusTCPGateway
+    extends ModbusTCPListener {
+
+  private SerialBusQueue[] m_Routes = new SerialBusQueue[256];
+  private SerialBusQueue m_DefaultBus;
+  private long m_RequestTimeout = Modbus.DEFAULT_TIMEOUT;
+
+  /**
+   * Constructs a ModbusTCPGateway instance.<br>
+   *
+   * @param poolsize the size of the <tt>ThreadPool</tt> used to handle
+   *        incoming requests.
+   */
+  public ModbusTCPGateway(int poolsize) {
+    super(poolsize);
+  }//constructor
+
+  /**
+   * Constructs a ModbusTCPGateway instance.<br>
+   *
+   * @param poolsize the size of the <tt>ThreadPool</tt> used to handle
+   *        incoming requests.
+   * @param addr the interface to use for listening.
+   */
+  public ModbusTCPGateway(int poolsize, InetAddress addr) {
+    super(poolsize, addr);
+  }//constructor
+
+  /**
+   * Sets the bus requests are forwarded to, if no
+   * specific bus has been set for their unit identifier.
+   *
+   * @param bus the default <tt>SerialBusQueue</tt>, or null.
+   */
+  public synchronized void setBus(SerialBusQueue bus) {
+    m_DefaultBus = bus;
+  }//setBus
+
+  /**
+   * Sets the bus requests for the given unit identifier
+   * are forwarded to.
+   *
+   * @param unitid the unit identifier (0-255).
+   * @param bus the <tt>SerialBusQueue</tt>, or null to
+   *        use the default bus.
+   */
+  public synchronized void setBus(int unitid, SerialBusQueue bus) {
+    m_Routes[unitid & 0xff] = bus;
+  }//setBus
+
+  /**
+   * Returns the bus requests for the given unit identifier
+   * are forwarded to.
+   *
+   * @param unitid the unit identifier (0-255).
+   * @return the <tt>SerialBusQueue</tt>, or null if there is no route.
+   */
+  public synchronized SerialBusQueue getBus(int unitid) {
+    SerialBusQueue bus = m_Routes[unitid & 0xff];
+    return (bus != null) ? bus : m_DefaultBus;
+  }//getBus
+
+  /**
+   * Sets the time within which a received request has
+   * to be put on the bus.
+   *
+   * @param timeout the timeout in milliseconds.
+   */
+  public void setRequestTimeout(long timeout) {
+    m_RequestTimeout = timeout;
+  }//setRequestTimeout
+
+  /**
+   * Returns the time within which a received request has
+   * to be put on the bus.
+   *
+   * @return the timeout in milliseconds.
+   */
+  public long getRequestTimeout() {
+    return m_RequestTimeout;
+  }//getRequestTimeout
+
+  protected TCPConnectionHandler createConnectionHandler(TCPSlaveConnection con) {
+    return new GatewayHandler(con);
+  }//createConnectionHandler
+
+  /**
+   * Handler forwarding the requests of a connection.
+   */
+  private class GatewayHandler
+      extends TCPConnectionHandler {
+
+    public GatewayHandler(TCPSlaveConnection con) {
+      super(con);
+    }//constructor
+
+    protected ModbusResponse createResponse(ModbusRequest request) {
+      long deadline = System.currentTimeMillis() + m_RequestTimeout;
+      SerialBusQueue bus = getBus(request.getUnitID());
+      if (bus == null) {
+        return request.createExceptionResponse(
+            Modbus.GATEWAY_PATH_UNAVAILABLE_EXCEPTION);
+      }
+      ModbusResponse response;
+      try {
+        response = bus.execute(request, deadline);
+      } catch (ModbusIOException ex) {
+        if (Modbus.debug) System.out.println("Forwarding failed: " + ex.getMessage());
+        return request.createExceptionResponse(
+            Modbus.GATEWAY_TARGET_FAILED_EXCEPTION);
+      }
+      if (response != null) {
+        //restore the MBAP header for the TCP side
+        response.setHeadless(false);
+        response.setTransactionID(request.getTransactionID());
+        response.setProtocolID(request.getProtocolID());
+        response.setUnitID(request.getUnitID());
+      }
+      return response;
+    }//createResponse
+
+  }//class GatewayHandler
+
+}//class ModbusTCPGateway
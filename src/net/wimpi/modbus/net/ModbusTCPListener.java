@@ -63,6 +63,9 @@ public class ModbusTCPListener
   private int m_FloodProtection = 5;
   private boolean m_Listening;
   private InetAddress m_Address;
+  private int m_MaxConnections = 0;
+  private int m_ConnectionCount = 0;
+  private boolean m_ReusingMessages = false;
 
   /**
    * Constructs a ModbusTCPListener instance.<br>
@@ -91,6 +94,21 @@ public class ModbusTCPListener
     m_Address = addr;
   }//constructor
 
+  /**
+   * Constructs a ModbusTCPListener instance that hands
+   * incoming connections to the given <tt>ThreadPool</tt>.<br>
+   * Passing a <tt>VirtualThreadPool</tt> will handle each
+   * connection on its own (virtual) thread.
+   *
+   * @param pool the <tt>ThreadPool</tt> used to handle
+   *        incoming requests.
+   * @param addr the interface to use for listening.
+   */
+  public ModbusTCPListener(ThreadPool pool, InetAddress addr) {
+    m_ThreadPool = pool;
+    m_Address = addr;
+  }//constructor
+
 
   /**
    * Sets the port to be listened to.
@@ -110,6 +128,60 @@ public class ModbusTCPListener
     m_Address = addr;
   }//setAddress
 
+  /**
+   * Sets the maximum number of connections that are
+   * handled at the same time. Connections exceeding
+   * this limit are closed right after they have been
+   * accepted.
+   *
+   * @param max the maximum number of connections, or 0 for no limit.
+   */
+  public void setMaxConnections(int max) {
+    m_MaxConnections = max;
+  }//setMaxConnections
+
+  /**
+   * Returns the maximum number of connections that are
+   * handled at the same time.
+   *
+   * @return the maximum number of connections, or 0 if there is no limit.
+   */
+  public int getMaxConnections() {
+    return m_MaxConnections;
+  }//getMaxConnections
+
+  /**
+   * Sets the flag that determines whether connections
+   * reuse request and response instances, instead of
+   * allocating new ones for every request.
+   * Applies to connections accepted afterwards.
+   *
+   * @param b true if instances should be reused, false otherwise.
+   * @see TCPConnectionHandler#setReusingMessages(boolean)
+   */
+  public void setReusingMessages(boolean b) {
+    m_ReusingMessages = b;
+  }//setReusingMessages
+
+  /**
+   * Tests if connections reuse request and response instances.
+   *
+   * @return true if instances are reused, false otherwise.
+   */
+  public boolean isReusingMessages() {
+    return m_ReusingMessages;
+  }//isReusingMessages
+
+  /**
+   * Returns the number of connections that are currently
+   * being handled.
+   *
+   * @return the number of connections as <tt>int</tt>.
+   */
+  public synchronized int getConnectionCount() {
+    return m_ConnectionCount;
+  }//getConnectionCount
+
   /**
    * Starts this <tt>ModbusTCPListener</tt>.
    */
@@ -151,15 +223,17 @@ public class ModbusTCPListener
       do {
         Socket incoming = m_ServerSocket.accept();
         if (Modbus.debug) System.out.println("Making new connection " + incoming.toString());
-        if (m_Listening) {
+        if (m_Listening && acquireConnection()) {
           //FIXME: Replace with object pool due to resource issues
-          m_ThreadPool.execute(
-              new TCPConnectionHandler(
-                  new TCPSlaveConnection(incoming)
-              )
-          );
+          TCPConnectionHandler handler =
+              createConnectionHandler(new TCPSlaveConnection(incoming));
+          if (m_ReusingMessages) {
+            handler.setReusingMessages(true);
+          }
+          m_ThreadPool.execute(new CountedHandler(handler));
           count();
         } else {
+          if (Modbus.debug) System.out.println("Refusing connection " + incoming.toString());
           //just close the socket
           incoming.close();
         }
@@ -186,6 +260,40 @@ public class ModbusTCPListener
     return m_Listening;
   }//isListening
 
+  /**
+   * Creates the handler for an incoming connection.
+   * <p>
+   * Subclasses may override this method to handle
+   * connections differently.
+   *
+   * @param con the incoming <tt>TCPSlaveConnection</tt>.
+   * @return the <tt>TCPConnectionHandler</tt> for the connection.
+   */
+  protected TCPConnectionHandler createConnectionHandler(TCPSlaveConnection con) {
+    return new TCPConnectionHandler(con);
+  }//createConnectionHandler
+
+  /**
+   * Reserves a connection slot, if the maximum number
+   * of connections has not been reached.
+   *
+   * @return true if a slot was reserved, false otherwise.
+   */
+  private synchronized boolean acquireConnection() {
+    if (m_MaxConnections > 0 && m_ConnectionCount >= m_MaxConnections) {
+      return false;
+    }
+    m_ConnectionCount++;
+    return true;
+  }//acquireConnection
+
+  /**
+   * Releases a connection slot.
+   */
+  private synchronized void releaseConnection() {
+    m_ConnectionCount--;
+  }//releaseConnection
+
   private void count() {
     c_RequestCounter++;
     if (c_RequestCounter == REQUESTS_TOGC) {
@@ -196,4 +304,27 @@ public class ModbusTCPListener
 
   private static final int REQUESTS_TOGC = 10;
 
+  /**
+   * Inner class that releases the connection slot
+   * once the wrapped handler has finished.
+   */
+  private class CountedHandler
+      implements Runnable {
+
+    private TCPConnectionHandler m_Handler;
+
+    public CountedHandler(TCPConnectionHandler handler) {
+      m_Handler = handler;
+    }//constructor
+
+    public void run() {
+      try {
+        m_Handler.run();
+      } finally {
+        releaseConnection();
+      }
+    }//run
+
+  }//inner class CountedHandler
+
 }//class ModbusTCPListener
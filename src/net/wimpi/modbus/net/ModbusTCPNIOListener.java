@@ -0,0 +1,559 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.net;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusCoupler;
+import net.wimpi.modbus.ModbusIOException;
+import net.wimpi.modbus.io.ModbusTCPFrameDecoder;
+import net.wimpi.modbus.msg.ModbusRequest;
+import net.wimpi.modbus.msg.ModbusResponse;
+import net.wimpi.modbus.util.LinkedQueue;
+import net.wimpi.modbus.util.ThreadPool;
+
+/**
+ * Class that implements a non-blocking ModbusTCPListener.<br>
+ * A single selector thread accepts incoming connections
+ * and reads from all of them, decoding MBAP frames as
+ * the bytes arrive. Only complete requests are passed on
+ * to the threads of the <tt>ThreadPool</tt>, so idle
+ * connections do not occupy a thread.
+ * <p>
+ * Requests of one connection are handled one after the
+ * other and in order of arrival, while requests of different
+ * connections are handled in parallel.
+ * <p>
+ * A connection stops being read while it has more requests
+ * queued or responses unsent than allowed (see
+ * {@link #setMaxPending(int)}), so a client that sends requests
+ * without reading the responses is held back by TCP flow control
+ * instead of filling the heap.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class ModbusTCPNIOListener
+    implements Runnable {
+
+  private ServerSocketChannel m_ServerChannel;
+  private Selector m_Selector;
+  private ThreadPool m_ThreadPool;
+  private Thread m_Listener;
+  private int m_Port = Modbus.DEFAULT_PORT;
+  private int m_Backlog = 128;
+  private volatile boolean m_Listening;
+  private InetAddress m_Address;
+  private LinkedQueue m_WriteRequests;
+  private int m_ConnectionCount;
+  private int m_MaxPending = 16;
+
+  /**
+   * Constructs a ModbusTCPNIOListener instance.<br>
+   *
+   * @param poolsize the size of the <tt>ThreadPool</tt> used to handle
+   *        incoming requests.
+   */
+  public ModbusTCPNIOListener(int poolsize) {
+    m_ThreadPool = new ThreadPool(poolsize);
+    m_WriteRequests = new LinkedQueue();
+    try {
+      m_Address = InetAddress.getLocalHost();
+    } catch (UnknownHostException ex) {
+
+    }
+  }//constructor
+
+  /**
+   * Constructs a ModbusTCPNIOListener instance.<br>
+   *
+   * @param poolsize the size of the <tt>ThreadPool</tt> used to handle
+   *        incoming requests.
+   * @param addr the interface to use for listening.
+   */
+  public ModbusTCPNIOListener(int poolsize, InetAddress addr) {
+    m_ThreadPool = new ThreadPool(poolsize);
+    m_WriteRequests = new LinkedQueue();
+    m_Address = addr;
+  }//constructor
+
+  /**
+   * Sets the port to be listened to.
+   *
+   * @param port the number of the IP port as <tt>int</tt>.
+   */
+  public void setPort(int port) {
+    m_Port = port;
+  }//setPort
+
+  /**
+   * Sets the address of the interface to be listened to.
+   *
+   * @param addr an <tt>InetAddress</tt> instance.
+   */
+  public void setAddress(InetAddress addr) {
+    m_Address = addr;
+  }//setAddress
+
+  /**
+   * Sets the maximum length of the queue of connections
+   * that have not been accepted yet.
+   * <p>
+   * Has to be set before the listener is started.
+   *
+   * @param backlog the length of the accept queue as <tt>int</tt>.
+   */
+  public void setBacklog(int backlog) {
+    m_Backlog = backlog;
+  }//setBacklog
+
+  /**
+   * Sets the maximum number of requests per connection that are
+   * queued or whose responses have not been sent yet. Reading from
+   * a connection is suspended while the maximum is reached.
+   *
+   * @param max the maximum number of pending requests, at least 1.
+   */
+  public void setMaxPending(int max) {
+    if (max < 1) {
+      throw new IllegalArgumentException();
+    }
+    m_MaxPending = max;
+  }//setMaxPending
+
+  /**
+   * Returns the maximum number of pending requests
+   * per connection.
+   *
+   * @return the maximum number of pending requests.
+   */
+  public int getMaxPending() {
+    return m_MaxPending;
+  }//getMaxPending
+
+  /**
+   * Returns the number of currently open connections.
+   *
+   * @return the number of connections as <tt>int</tt>.
+   */
+  public synchronized int getConnectionCount() {
+    return m_ConnectionCount;
+  }//getConnectionCount
+
+  /**
+   * Starts this <tt>ModbusTCPNIOListener</tt>.
+   */
+  public void start() {
+    m_Listener = new Thread(this);
+    m_Listening = true;
+    m_Listener.start();
+  }//start
+
+  /**
+   * Stops this <tt>ModbusTCPNIOListener</tt>.
+   */
+  public void stop() {
+    m_Listening = false;
+    try {
+      if (m_Selector != null) {
+        m_Selector.wakeup();
+      }
+      m_Listener.join();
+    } catch (Exception ex) {
+      //?
+    }
+  }//stop
+
+  /**
+   * Tests if this <tt>ModbusTCPNIOListener</tt> is listening
+   * and accepting incoming connections.
+   *
+   * @return true if listening (and accepting incoming connections),
+   *          false otherwise.
+   */
+  public boolean isListening() {
+    return m_Listening;
+  }//isListening
+
+  /**
+   * Accepts incoming connections and reads incoming
+   * frames, until this listener is stopped.
+   */
+  public void run() {
+    try {
+      m_Selector = Selector.open();
+      m_ServerChannel = ServerSocketChannel.open();
+      m_ServerChannel.configureBlocking(false);
+      m_ServerChannel.socket().bind(
+          new InetSocketAddress(m_Address, m_Port),
+          m_Backlog
+      );
+      m_ServerChannel.register(m_Selector, SelectionKey.OP_ACCEPT);
+      if (Modbus.debug) System.out.println("Listenening to " + m_ServerChannel.toString() + "(Port " + m_Port + ")");
+
+      while (m_Listening) {
+        m_Selector.select();
+        //1. register interest for connections with pending responses
+        ChannelConnection con = null;
+        while ((con = (ChannelConnection) m_WriteRequests.poll(0)) != null) {
+          con.enableWrite();
+        }
+        //2. handle ready keys
+        Iterator<SelectionKey> iter = m_Selector.selectedKeys().iterator();
+        while (iter.hasNext()) {
+          SelectionKey key = iter.next();
+          iter.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+            continue;
+          }
+          con = (ChannelConnection) key.attachment();
+          try {
+            if (key.isReadable()) {
+              con.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+              con.write();
+            }
+          } catch (IOException ex) {
+            //connection reset by peer or similar
+            con.close();
+          }
+        }
+      }
+    } catch (InterruptedException ex) {
+      //stop listening
+    } catch (IOException ex) {
+      //FIXME: this is a major failure, how do we handle this
+      if (m_Listening) {
+        ex.printStackTrace();
+      }
+    } finally {
+      m_Listening = false;
+      closeAll();
+    }
+  }//run
+
+  /**
+   * Accepts a pending connection and registers it
+   * for reading with the selector.
+   *
+   * @throws IOException if an I/O related error occurs.
+   */
+  private void accept() throws IOException {
+    SocketChannel channel = m_ServerChannel.accept();
+    if (channel == null) {
+      return;
+    }
+    if (Modbus.debug) System.out.println("Making new connection " + channel.toString());
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    ChannelConnection con = new ChannelConnection(channel);
+    con.m_Key = channel.register(m_Selector, SelectionKey.OP_READ, con);
+    synchronized (this) {
+      m_ConnectionCount++;
+    }
+  }//accept
+
+  /**
+   * Closes the server channel, all open connections
+   * and the selector.
+   */
+  private void closeAll() {
+    if (m_Selector == null) {
+      return;
+    }
+    Iterator<SelectionKey> iter = m_Selector.keys().iterator();
+    while (iter.hasNext()) {
+      SelectionKey key = iter.next();
+      if (key.attachment() instanceof ChannelConnection) {
+        ((ChannelConnection) key.attachment()).close();
+      }
+    }
+    try {
+      m_ServerChannel.close();
+      m_Selector.close();
+    } catch (IOException ex) {
+      //ignore
+    }
+  }//closeAll
+
+  /**
+   * Inner class holding the state of a single
+   * connection, and handling its complete requests
+   * through the <tt>ThreadPool</tt>.
+   */
+  private class ChannelConnection
+      implements Runnable {
+
+    private SocketChannel m_Channel;
+    private SelectionKey m_Key;
+    private ModbusTCPFrameDecoder m_Decoder;
+    private LinkedQueue m_Requests;
+    private LinkedList<ByteBuffer> m_Responses;
+    //requests taken from the decoder whose response is not sent yet;
+    //only used by the selector thread
+    private int m_Pending;
+    private ByteBuffer m_Encoder;
+    private boolean m_Busy;
+    private boolean m_Closed;
+
+    public ChannelConnection(SocketChannel channel) {
+      m_Channel = channel;
+      m_Decoder = new ModbusTCPFrameDecoder();
+      m_Requests = new LinkedQueue();
+      m_Responses = new LinkedList<ByteBuffer>();
+      m_Encoder = ByteBuffer.allocate(ModbusTCPFrameDecoder.MAX_FRAME_LENGTH);
+    }//constructor
+
+    /**
+     * Reads the available bytes and queues all complete
+     * frames. Called from the selector thread.
+     *
+     * @throws IOException if an I/O error occurs or the
+     *         peer sent an invalid frame.
+     */
+    public void read() throws IOException {
+      if (m_Decoder.fill(m_Channel) == -1) {
+        close();
+        return;
+      }
+      takeFrames();
+    }//read
+
+    /**
+     * Queues the complete frames held by the decoder, as long
+     * as the maximum of pending requests is not reached, and
+     * suspends reading once it is. Called from the selector thread.
+     *
+     * @throws IOException if the peer sent an invalid frame.
+     */
+    private void takeFrames() throws IOException {
+      boolean queued = false;
+      try {
+        byte[] frame;
+        while (m_Pending < m_MaxPending
+            && (frame = m_Decoder.nextFrame()) != null) {
+          m_Requests.put(frame);
+          m_Pending++;
+          queued = true;
+        }
+      } catch (ModbusIOException ex) {
+        throw new IOException(ex.getMessage());
+      } catch (InterruptedException ex) {
+        throw new IOException("Interrupted.");
+      }
+      if (queued) {
+        schedule();
+      }
+      updateInterest();
+    }//takeFrames
+
+    /**
+     * Sets the interest of the key: reading while fewer than
+     * the maximum of requests are pending, writing while
+     * there are responses to be sent.
+     */
+    private void updateInterest() {
+      if (!m_Key.isValid()) {
+        return;
+      }
+      int ops = (m_Pending < m_MaxPending) ? SelectionKey.OP_READ : 0;
+      synchronized (m_Responses) {
+        if (!m_Responses.isEmpty()) {
+          ops |= SelectionKey.OP_WRITE;
+        }
+      }
+      try {
+        m_Key.interestOps(ops);
+      } catch (CancelledKeyException ex) {
+        //closed by a pool thread meanwhile
+      }
+    }//updateInterest
+
+    /**
+     * Writes as many pending responses as the channel accepts.
+     * Called from the selector thread.
+     *
+     * @throws IOException if an I/O related error occurs.
+     */
+    public void write() throws IOException {
+      synchronized (m_Responses) {
+        if (!m_Responses.isEmpty()) {
+          //hand all pending responses to the channel at once
+          ByteBuffer[] bufs =
+              m_Responses.toArray(new ByteBuffer[m_Responses.size()]);
+          m_Channel.write(bufs);
+          while (!m_Responses.isEmpty()
+              && !m_Responses.getFirst().hasRemaining()) {
+            m_Responses.removeFirst();
+            m_Pending--;
+          }
+        }
+      }
+      //frames held back while the maximum was reached
+      takeFrames();
+    }//write
+
+    /**
+     * Adds write interest for this connection.
+     * Called from the selector thread.
+     */
+    public void enableWrite() {
+      updateInterest();
+    }//enableWrite
+
+    /**
+     * Closes this connection.
+     */
+    public void close() {
+      synchronized (this) {
+        if (m_Closed) {
+          return;
+        }
+        m_Closed = true;
+      }
+      m_Key.cancel();
+      try {
+        m_Channel.close();
+      } catch (IOException ex) {
+        //ignore
+      }
+      synchronized (ModbusTCPNIOListener.this) {
+        m_ConnectionCount--;
+      }
+    }//close
+
+    /**
+     * Hands this connection to the pool, unless it
+     * is already being handled.
+     */
+    private void schedule() {
+      synchronized (this) {
+        if (m_Busy) {
+          return;
+        }
+        m_Busy = true;
+      }
+      m_ThreadPool.execute(this);
+    }//schedule
+
+    /**
+     * Handles the queued requests of this connection.
+     * Called from a pool thread.
+     */
+    public void run() {
+      do {
+        byte[] frame = null;
+        synchronized (this) {
+          if (m_Closed || m_Requests.isEmpty()) {
+            m_Busy = false;
+            return;
+          }
+          try {
+            frame = (byte[]) m_Requests.take();
+          } catch (InterruptedException ex) {
+            m_Busy = false;
+            return;
+          }
+        }
+        try {
+          handle(frame);
+        } catch (Exception ex) {
+          //invalid request, drop the connection
+          if (Modbus.debug) ex.printStackTrace();
+          close();
+        }
+      } while (true);
+    }//run
+
+    /**
+     * Decodes and answers a single request frame.
+     *
+     * @param frame a complete MBAP frame.
+     * @throws Exception if the request cannot be decoded or
+     *         the response cannot be encoded.
+     */
+    private void handle(byte[] frame) throws Exception {
+      //1. read the request
+      int functionCode = frame[7] & 0xff;
+      ModbusRequest request = ModbusRequest.createModbusRequest(functionCode);
+      request.readFrom(ByteBuffer.wrap(frame));
+      ModbusResponse response = null;
+
+      //test if Process image exists
+      if (ModbusCoupler.getReference().getProcessImage(request.getUnitID()) == null) {
+        response =
+            request.createExceptionResponse(Modbus.ILLEGAL_FUNCTION_EXCEPTION);
+      } else {
+        response = request.createResponse();
+      }
+      /*DEBUG*/
+      if (Modbus.debug) System.out.println("Request:" + request.getHexMessage());
+      if (Modbus.debug) System.out.println("Response:" + response.getHexMessage());
+
+      //2. encode the response and pass it to the selector thread,
+      //in a buffer of its own length
+      m_Encoder.clear();
+      response.writeTo(m_Encoder);
+      m_Encoder.flip();
+      ByteBuffer buf = ByteBuffer.allocate(m_Encoder.remaining());
+      buf.put(m_Encoder);
+      buf.flip();
+      synchronized (m_Responses) {
+        m_Responses.addLast(buf);
+      }
+      m_WriteRequests.put(this);
+      m_Selector.wakeup();
+    }//handle
+
+  }//inner class ChannelConnection
+
+}//class ModbusTCPNIOListener
@@ -41,6 +41,7 @@ import net.wimpi.modbus.ModbusIOException;
 import net.wimpi.modbus.io.ModbusUDPTransport;
 import net.wimpi.modbus.msg.ModbusRequest;
 import net.wimpi.modbus.msg.ModbusResponse;
+import net.wimpi.modbus.msg.RequestPool;
 
 /**
  * Class that implements a ModbusUDPListener.<br>
@@ -56,6 +57,7 @@ public class ModbusUDPListener {
   private int m_Port = Modbus.DEFAULT_PORT;
   private boolean m_Listening;
   private InetAddress m_Interface;
+  private boolean m_ReusingMessages = false;
 
   /**
    * Constructs a new ModbusUDPListener instance.
@@ -93,6 +95,30 @@ public class ModbusUDPListener {
     m_Port = ((port>0)? port : Modbus.DEFAULT_PORT);
   }//setPort
 
+  /**
+   * Sets the flag that determines whether the listener
+   * reuses request and response instances, one per function
+   * code, instead of allocating new ones for every request.
+   * Has to be set before the listener is started.
+   * <p>
+   * Note that the terminal still allocates the buffer
+   * of every datagram received.
+   *
+   * @param b true if instances should be reused, false otherwise.
+   */
+  public void setReusingMessages(boolean b) {
+    m_ReusingMessages = b;
+  }//setReusingMessages
+
+  /**
+   * Tests if the listener reuses request and response instances.
+   *
+   * @return true if instances are reused, false otherwise.
+   */
+  public boolean isReusingMessages() {
+    return m_ReusingMessages;
+  }//isReusingMessages
+
   /**
    * Starts this <tt>ModbusUDPListener</tt>.
    */
@@ -107,6 +133,9 @@ public class ModbusUDPListener {
       m_Terminal.setLocalPort(m_Port);
       m_Terminal.activate();
 
+      if (m_ReusingMessages) {
+        m_Terminal.getModbusTransport().setRequestPool(new RequestPool());
+      }
       m_Handler = new ModbusUDPHandler(m_Terminal.getModbusTransport());
       m_HandlerThread = new Thread(m_Handler);
       m_HandlerThread.start();
@@ -157,7 +186,7 @@ public class ModbusUDPListener {
           ModbusResponse response = null;
 
           //test if Process image exists
-          if (ModbusCoupler.getReference().getProcessImage() == null) {
+          if (ModbusCoupler.getReference().getProcessImage(request.getUnitID()) == null) {
             response =
                 request.createExceptionResponse(Modbus.ILLEGAL_FUNCTION_EXCEPTION);
           } else {
@@ -0,0 +1,354 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.net;
+
+import java.util.LinkedList;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusIOException;
+import net.wimpi.modbus.io.ModbusSerialTransport;
+import net.wimpi.modbus.msg.ModbusRequest;
+import net.wimpi.modbus.msg.ModbusResponse;
+
+/**
+ * Class that serializes the access of several
+ * masters to a single serial bus.
+ * <p>
+ * Requests are queued and transferred one at a time
+ * by a worker thread. Write requests are served before
+ * any queued read requests; within each class the order of
+ * arrival is kept. Every request carries a deadline, and a
+ * request that expires while waiting in the queue is
+ * dropped without ever being put on the bus.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class SerialBusQueue
+    implements Runnable {
+
+  //instance attributes
+  private String m_Name;
+  private ModbusSerialTransport m_Transport;
+  private LinkedList<Job> m_Writes;
+  private LinkedList<Job> m_Reads;
+  private Thread m_Worker;
+  private boolean m_Running;
+  private long m_ExecutedCount;
+  private long m_DroppedCount;
+
+  /**
+   * Constructs a new <tt>SerialBusQueue</tt> instance
+   * for the given transport.
+   * <p>
+   * The streams of the transport have to be prepared
+   * by the caller.
+   *
+   * @param name the name of the bus, e.g. the serial port.
+   * @param transport the <tt>ModbusSerialTransport</tt> of the bus.
+   */
+  public SerialBusQueue(String name, ModbusSerialTransport transport) {
+    m_Name = name;
+    m_Transport = transport;
+    m_Writes = new LinkedList<Job>();
+    m_Reads = new LinkedList<Job>();
+  }//constructor
+
+  /**
+   * Returns the name of this <tt>SerialBusQueue</tt>.
+   *
+   * @return the name of the bus.
+   */
+  public String getName() {
+    return m_Name;
+  }//getName
+
+  /**
+   * Starts the worker transferring the queued requests.
+   */
+  public synchronized void start() {
+    if (m_Running) {
+      return;
+    }
+    m_Running = true;
+    m_Worker = new Thread(this, "SerialBusQueue-" + m_Name);
+    m_Worker.setDaemon(true);
+    m_Worker.start();
+  }//start
+
+  /**
+   * Stops the worker. Requests still waiting in the
+   * queue are dropped.
+   */
+  public void stop() {
+    Thread worker;
+    synchronized (this) {
+      if (!m_Running) {
+        return;
+      }
+      m_Running = false;
+      worker = m_Worker;
+      m_Worker = null;
+      dropAll(m_Writes);
+      dropAll(m_Reads);
+      notifyAll();
+    }
+    try {
+      worker.join(Modbus.DEFAULT_TIMEOUT);
+    } catch (InterruptedException ex) {
+      //ignore
+    }
+  }//stop
+
+  /**
+   * Tests if this <tt>SerialBusQueue</tt> is running.
+   *
+   * @return true if running, false otherwise.
+   */
+  public synchronized boolean isRunning() {
+    return m_Running;
+  }//isRunning
+
+  /**
+   * Returns the number of requests waiting in the queue.
+   *
+   * @return the number of queued requests.
+   */
+  public synchronized int getQueueLength() {
+    return m_Writes.size() + m_Reads.size();
+  }//getQueueLength
+
+  /**
+   * Returns the number of requests that have been
+   * transferred on the bus.
+   *
+   * @return the number of executed requests.
+   */
+  public synchronized long getExecutedCount() {
+    return m_ExecutedCount;
+  }//getExecutedCount
+
+  /**
+   * Returns the number of requests that have been
+   * dropped because their deadline expired in the queue.
+   *
+   * @return the number of dropped requests.
+   */
+  public synchronized long getDroppedCount() {
+    return m_DroppedCount;
+  }//getDroppedCount
+
+  /**
+   * Queues the given request and waits until it has been
+   * transferred on the bus.
+   * <p>
+   * If the deadline passes before the request has been
+   * put on the bus, it is dropped and null is returned.
+   * Null is also returned for broadcasts (unit identifier 0),
+   * which are not answered by the slaves.
+   *
+   * @param request the <tt>ModbusRequest</tt> to be transferred.
+   * @param deadline the time (in milliseconds, as returned by
+   *        <tt>System.currentTimeMillis()</tt>) until which the
+   *        request has to be started.
+   * @return the <tt>ModbusResponse</tt> received, or null.
+   * @throws ModbusIOException if the transfer on the bus failed.
+   */
+  public ModbusResponse execute(ModbusRequest request, long deadline)
+      throws ModbusIOException {
+    Job job = new Job(request, deadline);
+    synchronized (this) {
+      if (!m_Running) {
+        throw new ModbusIOException("Bus " + m_Name + " not running.");
+      }
+      if (isWrite(request.getFunctionCode())) {
+        m_Writes.addLast(job);
+      } else {
+        m_Reads.addLast(job);
+      }
+      notifyAll();
+      try {
+        while (!job.m_Done) {
+          long now = System.currentTimeMillis();
+          if (!job.m_Started && now >= deadline) {
+            //expired while waiting; the bus never sees it
+            if (m_Writes.remove(job) || m_Reads.remove(job)) {
+              m_DroppedCount++;
+            }
+            return null;
+          }
+          wait((job.m_Started) ? 0 : deadline - now);
+        }
+      } catch (InterruptedException ex) {
+        m_Writes.remove(job);
+        m_Reads.remove(job);
+        throw new ModbusIOException("Interrupted while waiting for the bus.");
+      }
+    }
+    if (job.m_Exception != null) {
+      throw job.m_Exception;
+    }
+    return job.m_Response;
+  }//execute
+
+  public void run() {
+    while (true) {
+      Job job;
+      synchronized (this) {
+        job = nextJob();
+        if (job == null) {
+          return;
+        }
+        job.m_Started = true;
+      }
+      try {
+        job.m_Response = transfer(job.m_Request);
+      } catch (ModbusIOException ex) {
+        job.m_Exception = ex;
+      }
+      synchronized (this) {
+        m_ExecutedCount++;
+        job.m_Done = true;
+        notifyAll();
+      }
+    }
+  }//run
+
+  /**
+   * Takes the next job from the queue, dropping
+   * those whose deadline has passed.
+   * The caller has to hold the lock on this instance.
+   *
+   * @return the next <tt>Job</tt>, or null if stopped.
+   */
+  private Job nextJob() {
+    while (m_Running) {
+      LinkedList<Job> queue = (!m_Writes.isEmpty()) ? m_Writes : m_Reads;
+      if (queue.isEmpty()) {
+        try {
+          wait();
+        } catch (InterruptedException ex) {
+          return null;
+        }
+        continue;
+      }
+      Job job = queue.removeFirst();
+      if (System.currentTimeMillis() >= job.m_Deadline) {
+        m_DroppedCount++;
+        job.m_Done = true;
+        notifyAll();
+        if (Modbus.debug) System.out.println("Dropped expired request on " + m_Name);
+        continue;
+      }
+      return job;
+    }
+    return null;
+  }//nextJob
+
+  /**
+   * Drops all jobs of the given queue.
+   * The caller has to hold the lock on this instance.
+   *
+   * @param queue the queue to be cleared.
+   */
+  private void dropAll(LinkedList<Job> queue) {
+    while (!queue.isEmpty()) {
+      Job job = queue.removeFirst();
+      job.m_Done = true;
+      m_DroppedCount++;
+    }
+  }//dropAll
+
+  /**
+   * Transfers the given request on the bus and reads
+   * the response.
+   *
+   * @param request the <tt>ModbusRequest</tt> to be transferred.
+   * @return the <tt>ModbusResponse</tt>, or null for a broadcast.
+   * @throws ModbusIOException if an I/O related error occurs.
+   */
+  private ModbusResponse transfer(ModbusRequest request)
+      throws ModbusIOException {
+    try {
+      m_Transport.writeMessage(request);
+      if (request.getUnitID() == 0) {
+        //broadcast, no answer
+        return null;
+      }
+      return m_Transport.readResponse();
+    } finally {
+      //the transport strips the header for the serial frame
+      request.setHeadless(false);
+    }
+  }//transfer
+
+  /**
+   * Tests if the given function code modifies data
+   * on the slave.
+   *
+   * @param functionCode the function code.
+   * @return true if the function is a write, false otherwise.
+   */
+  public static boolean isWrite(int functionCode) {
+    switch (functionCode) {
+      case Modbus.WRITE_COIL:
+      case Modbus.WRITE_SINGLE_REGISTER:
+      case Modbus.WRITE_MULTIPLE_COILS:
+      case Modbus.WRITE_MULTIPLE_REGISTERS:
+        return true;
+      default:
+        return false;
+    }
+  }//isWrite
+
+  /**
+   * A request waiting for the bus.
+   */
+  private static class Job {
+
+    private ModbusRequest m_Request;
+    private long m_Deadline;
+    private ModbusResponse m_Response;
+    private ModbusIOException m_Exception;
+    private boolean m_Started;
+    private boolean m_Done;
+
+    public Job(ModbusRequest request, long deadline) {
+      m_Request = request;
+      m_Deadline = deadline;
+    }//constructor
+
+  }//class Job
+
+}//class SerialBusQueue
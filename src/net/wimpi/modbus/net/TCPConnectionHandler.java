@@ -36,9 +36,11 @@ package net.wimpi.modbus.net;
 import net.wimpi.modbus.Modbus;
 import net.wimpi.modbus.ModbusCoupler;
 import net.wimpi.modbus.ModbusIOException;
+import net.wimpi.modbus.io.ModbusTCPTransport;
 import net.wimpi.modbus.io.ModbusTransport;
 import net.wimpi.modbus.msg.ModbusRequest;
 import net.wimpi.modbus.msg.ModbusResponse;
+import net.wimpi.modbus.msg.RequestPool;
 
 /**
  * Class implementing a handler for incoming Modbus/TCP requests.
@@ -71,27 +73,67 @@ public class TCPConnectionHandler implements Runnable {
     m_Transport = m_Connection.getModbusTransport();
   }//setConnection
 
+  /**
+   * Sets the flag that determines whether this handler
+   * reuses request and response instances for the requests
+   * received over its connection, one per function code.
+   * <p>
+   * This keeps the connection from allocating objects for every
+   * request; it requires a transport that supports a
+   * {@link RequestPool}, and responses must not be kept
+   * beyond {@link #createResponse(ModbusRequest)}.
+   *
+   * @param b true if instances should be reused, false otherwise.
+   */
+  public void setReusingMessages(boolean b) {
+    if (m_Transport instanceof ModbusTCPTransport) {
+      ((ModbusTCPTransport) m_Transport).setRequestPool((b) ? new RequestPool() : null);
+    }
+  }//setReusingMessages
+
+  /**
+   * Creates the response to the given request.
+   * <p>
+   * Subclasses may override this method to answer requests
+   * other than from the local process image, e.g. by forwarding
+   * them. Returning null drops the request without an answer.
+   *
+   * @param request the <tt>ModbusRequest</tt> received.
+   * @return the <tt>ModbusResponse</tt> to be sent, or null.
+   */
+  protected ModbusResponse createResponse(ModbusRequest request) {
+    //test if Process image exists
+    if (ModbusCoupler.getReference().getProcessImage(request.getUnitID()) == null) {
+      return request.createExceptionResponse(Modbus.ILLEGAL_FUNCTION_EXCEPTION);
+    }
+    return request.createResponse();
+  }//createResponse
+
   public void run() {
     try {
       do {
         //1. read the request
         ModbusRequest request = m_Transport.readRequest();
         //System.out.println("Request:" + request.getHexMessage());
-        ModbusResponse response = null;
-
-        //test if Process image exists
-        if (ModbusCoupler.getReference().getProcessImage() == null) {
-          response =
-              request.createExceptionResponse(Modbus.ILLEGAL_FUNCTION_EXCEPTION);
-        } else {
-          response = request.createResponse();
-        }
+        ModbusResponse response = createResponse(request);
         /*DEBUG*/
         if (Modbus.debug) System.out.println("Request:" + request.getHexMessage());
-        if (Modbus.debug) System.out.println("Response:" + response.getHexMessage());
+        if (Modbus.debug && response != null) System.out.println("Response:" + response.getHexMessage());
 
         //System.out.println("Response:" + response.getHexMessage());
-        m_Transport.writeMessage(response);
+        if (m_Transport instanceof ModbusTCPTransport) {
+          //flush only once all requests received back-to-back
+          //have been answered
+          ModbusTCPTransport transport = (ModbusTCPTransport) m_Transport;
+          boolean flush = !transport.isRequestAvailable();
+          if (response != null) {
+            transport.writeMessage(response, flush);
+          } else if (flush) {
+            transport.flush();
+          }
+        } else if (response != null) {
+          m_Transport.writeMessage(response);
+        }
       } while (true);
     } catch (ModbusIOException ex) {
       if (!ex.isEOF()) {
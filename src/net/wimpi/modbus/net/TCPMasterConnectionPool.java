@@ -0,0 +1,551 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.net;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.ModbusIOException;
+import net.wimpi.modbus.ModbusSlaveException;
+import net.wimpi.modbus.io.ModbusTCPTransaction;
+import net.wimpi.modbus.msg.ModbusRequest;
+import net.wimpi.modbus.msg.ReadMultipleRegistersRequest;
+
+/**
+ * Class implementing a pool of <tt>TCPMasterConnection</tt>
+ * instances, keyed by slave address and port.
+ * <p>
+ * Connections are borrowed for one or more transactions and
+ * returned afterwards, instead of being opened and closed for
+ * every transaction. For every slave the pool keeps between a
+ * minimum and a maximum number of connections; borrowers
+ * wait when the maximum is reached.
+ * <p>
+ * A background thread probes idle connections, by sending a
+ * probe request (by default reading holding register 0); any
+ * response, including an exception response, counts as alive.
+ * It also closes connections that have been idle for too long,
+ * as long as the minimum number of connections is kept, and
+ * reopens connections to get back to the minimum.
+ * <p>
+ * Usage:
+ * <pre>
+ * TCPMasterConnection con = pool.borrowConnection(addr, port);
+ * try {
+ *   ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
+ *   ...
+ *   pool.returnConnection(con);
+ * } catch (ModbusIOException ex) {
+ *   pool.invalidateConnection(con);
+ * }
+ * </pre>
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class TCPMasterConnectionPool
+    implements Runnable {
+
+  //instance attributes and associations
+  private Hashtable<String, HostPool> m_Pools = new Hashtable<String, HostPool>();
+  private Hashtable<TCPMasterConnection, HostPool> m_Borrowed =
+      new Hashtable<TCPMasterConnection, HostPool>();
+  private int m_MinSize;
+  private int m_MaxSize;
+  private int m_Timeout = Modbus.DEFAULT_TIMEOUT;
+  private long m_BorrowTimeout = Modbus.DEFAULT_TIMEOUT;
+  private long m_IdleTimeout = 60000;
+  private long m_ProbeInterval = 30000;
+  private ModbusRequest m_ProbeRequest;
+  private Thread m_Maintenance;
+  private boolean m_Running;
+  private boolean m_Closed;
+
+  /**
+   * Constructs a new <tt>TCPMasterConnectionPool</tt> instance.
+   *
+   * @param min the minimum number of connections per slave.
+   * @param max the maximum number of connections per slave.
+   */
+  public TCPMasterConnectionPool(int min, int max) {
+    if (min < 0 || max < 1 || min > max) {
+      throw new IllegalArgumentException("Invalid pool size.");
+    }
+    m_MinSize = min;
+    m_MaxSize = max;
+    m_ProbeRequest = new ReadMultipleRegistersRequest(0, 1);
+  }//constructor
+
+  /**
+   * Sets the socket timeout of the pooled connections
+   * in milliseconds.
+   *
+   * @param timeout the timeout as <tt>int</tt>.
+   */
+  public void setTimeout(int timeout) {
+    m_Timeout = timeout;
+  }//setTimeout
+
+  /**
+   * Sets how long a borrower waits for a connection
+   * in milliseconds, if the maximum is reached.
+   *
+   * @param timeout the timeout as <tt>long</tt>, 0 to wait forever.
+   */
+  public void setBorrowTimeout(long timeout) {
+    m_BorrowTimeout = timeout;
+  }//setBorrowTimeout
+
+  /**
+   * Sets the time after which idle connections
+   * are closed, in milliseconds.
+   *
+   * @param timeout the idle timeout as <tt>long</tt>, 0 to keep
+   *        idle connections open.
+   */
+  public void setIdleTimeout(long timeout) {
+    m_IdleTimeout = timeout;
+  }//setIdleTimeout
+
+  /**
+   * Sets the interval in which idle connections
+   * are probed, in milliseconds.
+   *
+   * @param interval the probe interval as <tt>long</tt>.
+   */
+  public void setProbeInterval(long interval) {
+    m_ProbeInterval = interval;
+  }//setProbeInterval
+
+  /**
+   * Sets the request that is sent to probe if
+   * idle connections are still alive.
+   *
+   * @param req the probe <tt>ModbusRequest</tt>.
+   */
+  public void setProbeRequest(ModbusRequest req) {
+    m_ProbeRequest = req;
+  }//setProbeRequest
+
+  /**
+   * Starts the maintenance thread of this pool.
+   */
+  public synchronized void start() {
+    if (m_Running || m_Closed) {
+      return;
+    }
+    m_Running = true;
+    m_Maintenance = new Thread(this, "TCPMasterConnectionPool");
+    m_Maintenance.setDaemon(true);
+    m_Maintenance.start();
+  }//start
+
+  /**
+   * Stops the maintenance thread and closes all
+   * idle connections. Connections that are borrowed
+   * are closed when they are returned.
+   * <p>
+   * The pool cannot be used anymore afterwards; borrowers
+   * that are waiting for a connection fail.
+   */
+  public void stop() {
+    synchronized (this) {
+      m_Running = false;
+      m_Closed = true;
+      notifyAll();
+    }
+    for (Iterator<HostPool> iter = getHostPools().iterator(); iter.hasNext();) {
+      iter.next().close();
+    }
+  }//stop
+
+  /**
+   * Opens the minimum number of connections to
+   * the given slave.
+   *
+   * @param addr the address of the slave.
+   * @param port the port of the slave.
+   * @throws ModbusIOException if a connection cannot be opened.
+   */
+  public void prewarm(InetAddress addr, int port)
+      throws ModbusIOException {
+    getHostPool(addr, port).fill();
+  }//prewarm
+
+  /**
+   * Borrows a connection to the given slave, waiting
+   * at most the borrow timeout if the maximum number of
+   * connections is reached.
+   *
+   * @param addr the address of the slave.
+   * @param port the port of the slave.
+   * @return a connected <tt>TCPMasterConnection</tt>.
+   * @throws ModbusIOException if no connection could be obtained,
+   *         or the pool has been stopped.
+   */
+  public TCPMasterConnection borrowConnection(InetAddress addr, int port)
+      throws ModbusIOException {
+    HostPool hp = getHostPool(addr, port);
+    TCPMasterConnection con = hp.borrow(m_BorrowTimeout);
+    m_Borrowed.put(con, hp);
+    return con;
+  }//borrowConnection
+
+  /**
+   * Returns a borrowed connection to the pool.
+   *
+   * @param con the <tt>TCPMasterConnection</tt> to be returned.
+   */
+  public void returnConnection(TCPMasterConnection con) {
+    HostPool hp = m_Borrowed.remove(con);
+    if (hp != null) {
+      hp.release(con);
+    }
+  }//returnConnection
+
+  /**
+   * Closes a borrowed connection and removes it from
+   * the pool, e.g. after an I/O failure.
+   *
+   * @param con the <tt>TCPMasterConnection</tt> to be invalidated.
+   */
+  public void invalidateConnection(TCPMasterConnection con) {
+    HostPool hp = m_Borrowed.remove(con);
+    if (hp != null) {
+      hp.discard(con);
+    }
+  }//invalidateConnection
+
+  /**
+   * Returns the number of idle connections to the given slave.
+   *
+   * @param addr the address of the slave.
+   * @param port the port of the slave.
+   * @return the number of idle connections.
+   */
+  public int getIdleCount(InetAddress addr, int port) {
+    return getHostPool(addr, port).getIdleCount();
+  }//getIdleCount
+
+  /**
+   * Returns the number of open connections to the given
+   * slave, borrowed or idle.
+   *
+   * @param addr the address of the slave.
+   * @param port the port of the slave.
+   * @return the number of open connections.
+   */
+  public int getConnectionCount(InetAddress addr, int port) {
+    return getHostPool(addr, port).getConnectionCount();
+  }//getConnectionCount
+
+  /**
+   * Runs the maintenance of this pool.
+   */
+  public void run() {
+    while (true) {
+      synchronized (this) {
+        if (!m_Running) {
+          return;
+        }
+        try {
+          wait(Math.max(m_ProbeInterval / 2, 100));
+        } catch (InterruptedException ex) {
+          return;
+        }
+        if (!m_Running) {
+          return;
+        }
+      }
+      for (Iterator<HostPool> iter = getHostPools().iterator(); iter.hasNext();) {
+        HostPool hp = iter.next();
+        hp.evict();
+        hp.probe();
+        try {
+          hp.fill();
+        } catch (ModbusIOException ex) {
+          if (Modbus.debug) System.out.println("Could not reopen connection: " + ex.getMessage());
+        }
+      }
+    }
+  }//run
+
+  /**
+   * Returns the pool for the given slave, creating it
+   * if necessary.
+   */
+  private synchronized HostPool getHostPool(InetAddress addr, int port) {
+    String key = addr.getHostAddress() + ":" + port;
+    HostPool hp = m_Pools.get(key);
+    if (hp == null) {
+      hp = new HostPool(addr, port);
+      if (m_Closed) {
+        //refuses to open connections
+        hp.close();
+      }
+      m_Pools.put(key, hp);
+    }
+    return hp;
+  }//getHostPool
+
+  private synchronized List<HostPool> getHostPools() {
+    return new ArrayList<HostPool>(m_Pools.values());
+  }//getHostPools
+
+  /**
+   * Inner class holding an idle connection and the
+   * time it was last used.
+   */
+  private static class Idle {
+
+    TCPMasterConnection m_Connection;
+    long m_LastUsed;
+    long m_LastProbed;
+
+    Idle(TCPMasterConnection con) {
+      m_Connection = con;
+      m_LastUsed = System.currentTimeMillis();
+      m_LastProbed = m_LastUsed;
+    }//constructor
+
+  }//inner class Idle
+
+  /**
+   * Inner class implementing the pool of
+   * connections to a single slave.
+   */
+  private class HostPool {
+
+    private InetAddress m_Address;
+    private int m_Port;
+    //most recently used first
+    private LinkedList<Idle> m_Idle = new LinkedList<Idle>();
+    private int m_Count = 0;
+    private boolean m_Closed = false;
+
+    HostPool(InetAddress addr, int port) {
+      m_Address = addr;
+      m_Port = port;
+    }//constructor
+
+    synchronized int getIdleCount() {
+      return m_Idle.size();
+    }//getIdleCount
+
+    synchronized int getConnectionCount() {
+      return m_Count;
+    }//getConnectionCount
+
+    TCPMasterConnection borrow(long timeout)
+        throws ModbusIOException {
+      long deadline = System.currentTimeMillis() + timeout;
+      synchronized (this) {
+        while (true) {
+          if (m_Closed) {
+            throw new ModbusIOException("Connection pool stopped.");
+          }
+          if (!m_Idle.isEmpty()) {
+            TCPMasterConnection con = m_Idle.removeFirst().m_Connection;
+            if (con.isConnected()) {
+              return con;
+            }
+            m_Count--;
+            continue;
+          }
+          if (m_Count < m_MaxSize) {
+            //reserve the slot, connect outside the lock
+            m_Count++;
+            break;
+          }
+          long wait = 0;
+          if (timeout > 0) {
+            wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+              throw new ModbusIOException("Timed out waiting for a connection.");
+            }
+          }
+          try {
+            wait(wait);
+          } catch (InterruptedException ex) {
+            throw new ModbusIOException("Interrupted while waiting for a connection.");
+          }
+        }
+      }
+      return open();
+    }//borrow
+
+    synchronized void release(TCPMasterConnection con) {
+      if (m_Closed || !con.isConnected()) {
+        discard(con);
+        return;
+      }
+      m_Idle.addFirst(new Idle(con));
+      notifyAll();
+    }//release
+
+    synchronized void discard(TCPMasterConnection con) {
+      m_Count--;
+      con.close();
+      notifyAll();
+    }//discard
+
+    synchronized void close() {
+      m_Closed = true;
+      while (!m_Idle.isEmpty()) {
+        m_Idle.removeFirst().m_Connection.close();
+        m_Count--;
+      }
+      notifyAll();
+    }//close
+
+    /**
+     * Opens connections until the minimum size is reached.
+     */
+    void fill() throws ModbusIOException {
+      while (true) {
+        synchronized (this) {
+          if (m_Closed || m_Count >= m_MinSize) {
+            return;
+          }
+          m_Count++;
+        }
+        release(open());
+      }
+    }//fill
+
+    /**
+     * Closes connections that have been idle for too long,
+     * keeping the minimum size.
+     */
+    synchronized void evict() {
+      if (m_IdleTimeout <= 0) {
+        return;
+      }
+      long now = System.currentTimeMillis();
+      //least recently used are at the end
+      while (m_Count > m_MinSize && !m_Idle.isEmpty()) {
+        Idle idle = m_Idle.getLast();
+        if (now - idle.m_LastUsed < m_IdleTimeout) {
+          break;
+        }
+        m_Idle.removeLast();
+        idle.m_Connection.close();
+        m_Count--;
+      }
+    }//evict
+
+    /**
+     * Probes the idle connections that were not
+     * used or probed within the probe interval.
+     */
+    void probe() {
+      List<Idle> due = new ArrayList<Idle>();
+      long now = System.currentTimeMillis();
+      synchronized (this) {
+        for (Iterator<Idle> iter = m_Idle.iterator(); iter.hasNext();) {
+          Idle idle = iter.next();
+          if (now - Math.max(idle.m_LastUsed, idle.m_LastProbed) >= m_ProbeInterval) {
+            iter.remove();
+            due.add(idle);
+          }
+        }
+      }
+      for (int i = 0; i < due.size(); i++) {
+        Idle idle = due.get(i);
+        if (isAlive(idle.m_Connection)) {
+          synchronized (this) {
+            if (m_Closed) {
+              discard(idle.m_Connection);
+            } else {
+              //keep its position by last use
+              idle.m_LastProbed = System.currentTimeMillis();
+              int pos = 0;
+              while (pos < m_Idle.size()
+                  && m_Idle.get(pos).m_LastUsed > idle.m_LastUsed) {
+                pos++;
+              }
+              m_Idle.add(pos, idle);
+              notifyAll();
+            }
+          }
+        } else {
+          if (Modbus.debug) System.out.println("Discarding dead connection to " + m_Address + ":" + m_Port);
+          discard(idle.m_Connection);
+        }
+      }
+    }//probe
+
+    private boolean isAlive(TCPMasterConnection con) {
+      ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
+      trans.setRetries(0);
+      trans.setRequest(m_ProbeRequest);
+      try {
+        trans.execute();
+        return true;
+      } catch (ModbusSlaveException ex) {
+        //an exception response still means alive
+        return true;
+      } catch (Exception ex) {
+        return false;
+      }
+    }//isAlive
+
+    /**
+     * Opens a new connection, for which a slot
+     * has already been reserved.
+     */
+    private TCPMasterConnection open() throws ModbusIOException {
+      TCPMasterConnection con = new TCPMasterConnection(m_Address);
+      con.setPort(m_Port);
+      try {
+        con.connect();
+        con.setTimeout(m_Timeout);
+        return con;
+      } catch (Exception ex) {
+        synchronized (this) {
+          m_Count--;
+          notifyAll();
+        }
+        throw new ModbusIOException("Connecting to " + m_Address + ":" + m_Port + " failed.");
+      }
+    }//open
+
+  }//inner class HostPool
+
+}//class TCPMasterConnectionPool
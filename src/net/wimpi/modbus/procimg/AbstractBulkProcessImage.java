@@ -0,0 +1,317 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+/**
+ * Abstract class implementing the object based part of
+ * a <tt>BulkProcessImage</tt> on top of primitive accessors.
+ * <p>
+ * The <tt>Register</tt>, <tt>InputRegister</tt>, <tt>DigitalOut</tt>
+ * and <tt>DigitalIn</tt> instances returned are lightweight views
+ * that read and write through the accessors of the subclass, so
+ * values set through them are stored in the image.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public abstract class AbstractBulkProcessImage
+    implements BulkProcessImage {
+
+  /**
+   * Returns the state of a digital input.
+   * The reference has been checked by the caller.
+   *
+   * @param ref the reference of the digital input.
+   * @return true if set, false otherwise.
+   */
+  protected abstract boolean readDigitalIn(int ref);
+
+  /**
+   * Returns the state of a digital output.
+   * The reference has been checked by the caller.
+   *
+   * @param ref the reference of the digital output.
+   * @return true if set, false otherwise.
+   */
+  protected abstract boolean readDigitalOut(int ref);
+
+  /**
+   * Sets the state of a digital output.
+   * The reference has been checked by the caller.
+   *
+   * @param ref the reference of the digital output.
+   * @param b the state to be set.
+   */
+  protected abstract void writeDigitalOut(int ref, boolean b);
+
+  /**
+   * Returns the value of an input register.
+   * The reference has been checked by the caller.
+   *
+   * @param ref the reference of the input register.
+   * @return the value as <tt>short</tt>.
+   */
+  protected abstract short readInputRegister(int ref);
+
+  /**
+   * Returns the value of a register.
+   * The reference has been checked by the caller.
+   *
+   * @param ref the reference of the register.
+   * @return the value as <tt>short</tt>.
+   */
+  protected abstract short readRegister(int ref);
+
+  /**
+   * Sets the value of a register.
+   * The reference has been checked by the caller.
+   *
+   * @param ref the reference of the register.
+   * @param value the value to be set.
+   */
+  protected abstract void writeRegister(int ref, short value);
+
+  public DigitalIn getDigitalIn(int ref)
+      throws IllegalAddressException {
+    checkRange(ref, 1, getDigitalInCount());
+    return new DigitalInView(ref);
+  }//getDigitalIn
+
+  public DigitalIn[] getDigitalInRange(int ref, int count)
+      throws IllegalAddressException {
+    checkRange(ref, count, getDigitalInCount());
+    DigitalIn[] dins = new DigitalIn[count];
+    for (int i = 0; i < count; i++) {
+      dins[i] = new DigitalInView(ref + i);
+    }
+    return dins;
+  }//getDigitalInRange
+
+  public DigitalOut getDigitalOut(int ref)
+      throws IllegalAddressException {
+    checkRange(ref, 1, getDigitalOutCount());
+    return new DigitalOutView(ref);
+  }//getDigitalOut
+
+  public DigitalOut[] getDigitalOutRange(int ref, int count)
+      throws IllegalAddressException {
+    checkRange(ref, count, getDigitalOutCount());
+    DigitalOut[] douts = new DigitalOut[count];
+    for (int i = 0; i < count; i++) {
+      douts[i] = new DigitalOutView(ref + i);
+    }
+    return douts;
+  }//getDigitalOutRange
+
+  public InputRegister getInputRegister(int ref)
+      throws IllegalAddressException {
+    checkRange(ref, 1, getInputRegisterCount());
+    return new InputRegisterView(ref);
+  }//getInputRegister
+
+  public InputRegister[] getInputRegisterRange(int ref, int count)
+      throws IllegalAddressException {
+    checkRange(ref, count, getInputRegisterCount());
+    InputRegister[] iregs = new InputRegister[count];
+    for (int i = 0; i < count; i++) {
+      iregs[i] = new InputRegisterView(ref + i);
+    }
+    return iregs;
+  }//getInputRegisterRange
+
+  public Register getRegister(int ref)
+      throws IllegalAddressException {
+    checkRange(ref, 1, getRegisterCount());
+    return new RegisterView(ref);
+  }//getRegister
+
+  public Register[] getRegisterRange(int ref, int count)
+      throws IllegalAddressException {
+    checkRange(ref, count, getRegisterCount());
+    Register[] regs = new Register[count];
+    for (int i = 0; i < count; i++) {
+      regs[i] = new RegisterView(ref + i);
+    }
+    return regs;
+  }//getRegisterRange
+
+  /**
+   * Asserts that the given range lies within the given size.
+   *
+   * @param ref the first reference of the range.
+   * @param count the number of references.
+   * @param size the number of references available.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  protected static void checkRange(int ref, int count, int size)
+      throws IllegalAddressException {
+    if (ref < 0 || count < 0 || ref + count > size) {
+      throw new IllegalAddressException();
+    }
+  }//checkRange
+
+  /**
+   * View of a register stored in this image.
+   */
+  private class RegisterView
+      implements Register {
+
+    private int m_Ref;
+
+    public RegisterView(int ref) {
+      m_Ref = ref;
+    }//constructor
+
+    public int getValue() {
+      return readRegister(m_Ref) & 0xffff;
+    }//getValue
+
+    public int toUnsignedShort() {
+      return readRegister(m_Ref) & 0xffff;
+    }//toUnsignedShort
+
+    public short toShort() {
+      return readRegister(m_Ref);
+    }//toShort
+
+    public byte[] toBytes() {
+      short s = readRegister(m_Ref);
+      return new byte[]{(byte) (s >> 8), (byte) s};
+    }//toBytes
+
+    public boolean isValid() {
+      return true;
+    }//isValid
+
+    public void setValue(int v) {
+      writeRegister(m_Ref, (short) v);
+    }//setValue
+
+    public void setValue(short s) {
+      writeRegister(m_Ref, s);
+    }//setValue
+
+    public void setValue(byte[] bytes) {
+      if (bytes.length < 2) {
+        throw new IllegalArgumentException();
+      }
+      writeRegister(m_Ref, (short) ((bytes[0] << 8) | (bytes[1] & 0xff)));
+    }//setValue
+
+  }//class RegisterView
+
+  /**
+   * View of an input register stored in this image.
+   */
+  private class InputRegisterView
+      implements InputRegister {
+
+    private int m_Ref;
+
+    public InputRegisterView(int ref) {
+      m_Ref = ref;
+    }//constructor
+
+    public int getValue() {
+      return readInputRegister(m_Ref) & 0xffff;
+    }//getValue
+
+    public int toUnsignedShort() {
+      return readInputRegister(m_Ref) & 0xffff;
+    }//toUnsignedShort
+
+    public short toShort() {
+      return readInputRegister(m_Ref);
+    }//toShort
+
+    public byte[] toBytes() {
+      short s = readInputRegister(m_Ref);
+      return new byte[]{(byte) (s >> 8), (byte) s};
+    }//toBytes
+
+    public boolean isValid() {
+      return true;
+    }//isValid
+
+  }//class InputRegisterView
+
+  /**
+   * View of a digital output stored in this image.
+   */
+  private class DigitalOutView
+      implements DigitalOut {
+
+    private int m_Ref;
+
+    public DigitalOutView(int ref) {
+      m_Ref = ref;
+    }//constructor
+
+    public boolean isSet() {
+      return readDigitalOut(m_Ref);
+    }//isSet
+
+    public void set(boolean b) {
+      writeDigitalOut(m_Ref, b);
+    }//set
+
+    public boolean isValid() {
+      return true;
+    }//isValid
+
+  }//class DigitalOutView
+
+  /**
+   * View of a digital input stored in this image.
+   */
+  private class DigitalInView
+      implements DigitalIn {
+
+    private int m_Ref;
+
+    public DigitalInView(int ref) {
+      m_Ref = ref;
+    }//constructor
+
+    public boolean isSet() {
+      return readDigitalIn(m_Ref);
+    }//isSet
+
+    public boolean isValid() {
+      return true;
+    }//isValid
+
+  }//class DigitalInView
+
+}//class AbstractBulkProcessImage
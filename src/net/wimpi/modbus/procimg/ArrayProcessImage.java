@@ -0,0 +1,340 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+/**
+ * Class implementing a process image that stores
+ * its data in flat primitive arrays.
+ * <p>
+ * Registers and input registers are held in <tt>short[]</tt>
+ * arrays, digital outputs (coils) and digital inputs in bit sets
+ * backed by <tt>long[]</tt> arrays. Ranges are transferred by bulk
+ * copy, bits 64 at a time (see {@link BulkProcessImage}). The <tt>Register</tt>,
+ * <tt>InputRegister</tt>, <tt>DigitalOut</tt> and <tt>DigitalIn</tt>
+ * instances returned are lightweight views on the arrays,
+ * so values set through them are stored in the image.
+ * <p>
+ * Each section is guarded by a {@link StripedLock}, so that
+ * the transfer of a range is atomic (e.g. a 32 bit value
+ * written to two registers is never read half updated), while
+ * requests for unrelated ranges proceed in parallel.
+ * <p>
+ * The size of the image is fixed on construction.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class ArrayProcessImage
+    extends AbstractBulkProcessImage {
+
+  //instance attributes
+  private long[] m_DigitalInputs;
+  private int m_DigitalInCount;
+  private long[] m_DigitalOutputs;
+  private int m_DigitalOutCount;
+  private short[] m_InputRegisters;
+  private short[] m_Registers;
+  private StripedLock m_DigitalInLock = new StripedLock();
+  private StripedLock m_DigitalOutLock = new StripedLock();
+  private StripedLock m_InputRegisterLock = new StripedLock();
+  private StripedLock m_RegisterLock = new StripedLock();
+
+  /**
+   * Constructs a new <tt>ArrayProcessImage</tt> instance.
+   *
+   * @param dins the number of digital inputs.
+   * @param douts the number of digital outputs (coils).
+   * @param inregs the number of input registers.
+   * @param regs the number of registers.
+   */
+  public ArrayProcessImage(int dins, int douts, int inregs, int regs) {
+    m_DigitalInputs = Bits.create(dins);
+    m_DigitalInCount = dins;
+    m_DigitalOutputs = Bits.create(douts);
+    m_DigitalOutCount = douts;
+    m_InputRegisters = new short[inregs];
+    m_Registers = new short[regs];
+  }//constructor
+
+  public int getDigitalInCount() {
+    return m_DigitalInCount;
+  }//getDigitalInCount
+
+  /**
+   * Sets the state of a digital input.
+   *
+   * @param ref the reference of the digital input.
+   * @param b the state to be set.
+   * @throws IllegalAddressException if the reference is not valid.
+   */
+  public void setDigitalIn(int ref, boolean b)
+      throws IllegalAddressException {
+    checkRange(ref, 1, m_DigitalInCount);
+    m_DigitalInLock.lockWrite(ref, 1);
+    try {
+      Bits.set(m_DigitalInputs, ref, b);
+    } finally {
+      m_DigitalInLock.unlockWrite(ref, 1);
+    }
+  }//setDigitalIn
+
+  /**
+   * Sets the states of a range of digital inputs
+   * from the given array, atomically.
+   *
+   * @param ref the reference of the first digital input.
+   * @param count the number of digital inputs.
+   * @param src the array holding the states (8 per byte).
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  public void setDigitalInBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_DigitalInCount);
+    m_DigitalInLock.lockWrite(ref, count);
+    try {
+      Bits.fromBytes(m_DigitalInputs, ref, count, src, off);
+    } finally {
+      m_DigitalInLock.unlockWrite(ref, count);
+    }
+  }//setDigitalInBytes
+
+  public void getDigitalInBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_DigitalInCount);
+    m_DigitalInLock.lockRead(ref, count);
+    try {
+      Bits.toBytes(m_DigitalInputs, ref, count, dest, off);
+    } finally {
+      m_DigitalInLock.unlockRead(ref, count);
+    }
+  }//getDigitalInBytes
+
+  public int getDigitalOutCount() {
+    return m_DigitalOutCount;
+  }//getDigitalOutCount
+
+  public void getDigitalOutBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_DigitalOutCount);
+    m_DigitalOutLock.lockRead(ref, count);
+    try {
+      Bits.toBytes(m_DigitalOutputs, ref, count, dest, off);
+    } finally {
+      m_DigitalOutLock.unlockRead(ref, count);
+    }
+  }//getDigitalOutBytes
+
+  public void setDigitalOutBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_DigitalOutCount);
+    m_DigitalOutLock.lockWrite(ref, count);
+    try {
+      Bits.fromBytes(m_DigitalOutputs, ref, count, src, off);
+    } finally {
+      m_DigitalOutLock.unlockWrite(ref, count);
+    }
+  }//setDigitalOutBytes
+
+  public int getInputRegisterCount() {
+    return m_InputRegisters.length;
+  }//getInputRegisterCount
+
+  /**
+   * Sets the value of an input register.
+   *
+   * @param ref the reference of the input register.
+   * @param value the value to be set.
+   * @throws IllegalAddressException if the reference is not valid.
+   */
+  public void setInputRegister(int ref, int value)
+      throws IllegalAddressException {
+    checkRange(ref, 1, m_InputRegisters.length);
+    m_InputRegisterLock.lockWrite(ref, 1);
+    try {
+      m_InputRegisters[ref] = (short) value;
+    } finally {
+      m_InputRegisterLock.unlockWrite(ref, 1);
+    }
+  }//setInputRegister
+
+  /**
+   * Sets the values of a range of input registers
+   * from the given array, atomically.
+   *
+   * @param ref the reference of the first input register.
+   * @param count the number of input registers.
+   * @param src the array holding the values (2 bytes each).
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  public void setInputRegisterBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_InputRegisters.length);
+    m_InputRegisterLock.lockWrite(ref, count);
+    try {
+      fromBytes(m_InputRegisters, ref, count, src, off);
+    } finally {
+      m_InputRegisterLock.unlockWrite(ref, count);
+    }
+  }//setInputRegisterBytes
+
+  public void getInputRegisterBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_InputRegisters.length);
+    m_InputRegisterLock.lockRead(ref, count);
+    try {
+      toBytes(m_InputRegisters, ref, count, dest, off);
+    } finally {
+      m_InputRegisterLock.unlockRead(ref, count);
+    }
+  }//getInputRegisterBytes
+
+  public int getRegisterCount() {
+    return m_Registers.length;
+  }//getRegisterCount
+
+  public void getRegisterBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Registers.length);
+    m_RegisterLock.lockRead(ref, count);
+    try {
+      toBytes(m_Registers, ref, count, dest, off);
+    } finally {
+      m_RegisterLock.unlockRead(ref, count);
+    }
+  }//getRegisterBytes
+
+  public void setRegisterBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Registers.length);
+    m_RegisterLock.lockWrite(ref, count);
+    try {
+      fromBytes(m_Registers, ref, count, src, off);
+    } finally {
+      m_RegisterLock.unlockWrite(ref, count);
+    }
+  }//setRegisterBytes
+
+  protected boolean readDigitalIn(int ref) {
+    m_DigitalInLock.lockRead(ref, 1);
+    try {
+      return Bits.get(m_DigitalInputs, ref);
+    } finally {
+      m_DigitalInLock.unlockRead(ref, 1);
+    }
+  }//readDigitalIn
+
+  protected boolean readDigitalOut(int ref) {
+    m_DigitalOutLock.lockRead(ref, 1);
+    try {
+      return Bits.get(m_DigitalOutputs, ref);
+    } finally {
+      m_DigitalOutLock.unlockRead(ref, 1);
+    }
+  }//readDigitalOut
+
+  protected void writeDigitalOut(int ref, boolean b) {
+    m_DigitalOutLock.lockWrite(ref, 1);
+    try {
+      Bits.set(m_DigitalOutputs, ref, b);
+    } finally {
+      m_DigitalOutLock.unlockWrite(ref, 1);
+    }
+  }//writeDigitalOut
+
+  protected short readInputRegister(int ref) {
+    m_InputRegisterLock.lockRead(ref, 1);
+    try {
+      return m_InputRegisters[ref];
+    } finally {
+      m_InputRegisterLock.unlockRead(ref, 1);
+    }
+  }//readInputRegister
+
+  protected short readRegister(int ref) {
+    m_RegisterLock.lockRead(ref, 1);
+    try {
+      return m_Registers[ref];
+    } finally {
+      m_RegisterLock.unlockRead(ref, 1);
+    }
+  }//readRegister
+
+  protected void writeRegister(int ref, short value) {
+    m_RegisterLock.lockWrite(ref, 1);
+    try {
+      m_Registers[ref] = value;
+    } finally {
+      m_RegisterLock.unlockWrite(ref, 1);
+    }
+  }//writeRegister
+
+  /**
+   * Copies a range of register values into a byte array,
+   * in big endian order.
+   *
+   * @param regs the register values.
+   * @param ref the index of the first value.
+   * @param count the number of values.
+   * @param dest the array to copy to.
+   * @param off the offset in the array.
+   */
+  private static void toBytes(short[] regs, int ref, int count,
+                              byte[] dest, int off) {
+    for (int i = ref; i < ref + count; i++) {
+      short s = regs[i];
+      dest[off++] = (byte) (s >> 8);
+      dest[off++] = (byte) s;
+    }
+  }//toBytes
+
+  /**
+   * Sets a range of register values from a byte array,
+   * holding them in big endian order.
+   *
+   * @param regs the register values.
+   * @param ref the index of the first value.
+   * @param count the number of values.
+   * @param src the array to copy from.
+   * @param off the offset in the array.
+   */
+  private static void fromBytes(short[] regs, int ref, int count,
+                                byte[] src, int off) {
+    for (int i = ref; i < ref + count; i++, off += 2) {
+      regs[i] = (short) ((src[off] << 8) | (src[off + 1] & 0xff));
+    }
+  }//fromBytes
+
+}//class ArrayProcessImage
@@ -0,0 +1,189 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+/**
+ * Class with static helpers for bit sets stored in
+ * <tt>long[]</tt> arrays, where bit <i>i</i> is held in
+ * bit <i>i % 64</i> of word <i>i / 64</i>.
+ * <p>
+ * Ranges are transferred 64 bits at a time to and from
+ * byte arrays packed in the wire order of the library
+ * (see {@link BulkProcessImage}).
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+final class Bits {
+
+  private Bits() {
+  }//constructor
+
+  /**
+   * Creates a bit set for the given number of bits.
+   *
+   * @param size the number of bits.
+   * @return the bit set as <tt>long[]</tt>.
+   */
+  static long[] create(int size) {
+    return new long[(size + 63) >>> 6];
+  }//create
+
+  static boolean get(long[] bits, int index) {
+    return (bits[index >>> 6] & (1L << index)) != 0;
+  }//get
+
+  static void set(long[] bits, int index, boolean b) {
+    if (b) {
+      bits[index >>> 6] |= (1L << index);
+    } else {
+      bits[index >>> 6] &= ~(1L << index);
+    }
+  }//set
+
+  /**
+   * Sets a range of bits, a word at a time.
+   *
+   * @param bits the bit set.
+   * @param ref the index of the first bit.
+   * @param count the number of bits.
+   */
+  static void setRange(long[] bits, int ref, int count) {
+    if (count <= 0) {
+      return;
+    }
+    int end = ref + count;
+    int j = ref >>> 6;
+    int last = (end - 1) >>> 6;
+    long first = -1L << ref;
+    long tail = -1L >>> -end;
+    if (j == last) {
+      bits[j] |= first & tail;
+      return;
+    }
+    bits[j] |= first;
+    for (j++; j < last; j++) {
+      bits[j] = -1L;
+    }
+    bits[last] |= tail;
+  }//setRange
+
+  /**
+   * Copies a range of bits into a byte array.
+   *
+   * @param bits the bit set.
+   * @param ref the index of the first bit.
+   * @param count the number of bits.
+   * @param dest the array to copy to.
+   * @param off the offset in the array.
+   */
+  static void toBytes(long[] bits, int ref, int count, byte[] dest, int off) {
+    int nbytes = (count + 7) >>> 3;
+    for (int i = 0; i < nbytes; i += 8) {
+      long x = swap(extract(bits, ref + (i << 3), Math.min(64, count - (i << 3))));
+      int n = Math.min(8, nbytes - i);
+      for (int k = 0; k < n; k++) {
+        dest[off + i + k] = (byte) (x >>> (k << 3));
+      }
+    }
+  }//toBytes
+
+  /**
+   * Sets a range of bits from a byte array.
+   *
+   * @param bits the bit set.
+   * @param ref the index of the first bit.
+   * @param count the number of bits.
+   * @param src the array to copy from.
+   * @param off the offset in the array.
+   */
+  static void fromBytes(long[] bits, int ref, int count, byte[] src, int off) {
+    int nbytes = (count + 7) >>> 3;
+    for (int i = 0; i < nbytes; i += 8) {
+      int n = Math.min(8, nbytes - i);
+      long x = 0;
+      for (int k = 0; k < n; k++) {
+        x |= (src[off + i + k] & 0xffL) << (k << 3);
+      }
+      deposit(bits, ref + (i << 3), Math.min(64, count - (i << 3)), swap(x));
+    }
+  }//fromBytes
+
+  /**
+   * Converts between a word holding bit <i>i</i> in bit <i>i</i>,
+   * and a word holding it in the byte order of the wire, with the
+   * first bit of each byte in its most significant bit.
+   * The conversion is its own inverse.
+   *
+   * @param w the word to be converted.
+   * @return the converted word.
+   */
+  private static long swap(long w) {
+    return Long.reverseBytes(Long.reverse(w));
+  }//swap
+
+  /**
+   * Returns up to 64 bits starting at the given index,
+   * in the low order bits of a word.
+   */
+  private static long extract(long[] bits, int start, int n) {
+    int j = start >>> 6;
+    int s = start & 63;
+    long w = bits[j] >>> s;
+    if (s != 0 && s + n > 64) {
+      w |= bits[j + 1] << (64 - s);
+    }
+    if (n < 64) {
+      w &= (1L << n) - 1;
+    }
+    return w;
+  }//extract
+
+  /**
+   * Stores up to 64 bits, held in the low order bits of
+   * the given word, starting at the given index.
+   */
+  private static void deposit(long[] bits, int start, int n, long w) {
+    long mask = (n < 64) ? (1L << n) - 1 : -1L;
+    w &= mask;
+    int j = start >>> 6;
+    int s = start & 63;
+    bits[j] = (bits[j] & ~(mask << s)) | (w << s);
+    if (s != 0 && s + n > 64) {
+      int hi = 64 - s;
+      bits[j + 1] = (bits[j + 1] & ~(mask >>> hi)) | (w >>> hi);
+    }
+  }//deposit
+
+}//class Bits
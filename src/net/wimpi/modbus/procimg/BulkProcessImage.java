@@ -0,0 +1,137 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+/**
+ * Interface defining a process image that can
+ * transfer ranges of registers in bulk.
+ * <p>
+ * Values are exchanged in their wire format, i.e. two bytes
+ * per register in big endian order, and eight coils or
+ * discretes per byte, packed as by a <tt>BitVector</tt> with
+ * {@link net.wimpi.modbus.util.BitVector#setStartLSB(boolean)}
+ * set. This allows the requests to serve reads and writes
+ * without handling an instance per reference.
+ * <p>
+ * Each transfer should be atomic with respect to other
+ * transfers and to the instances returned by the image,
+ * so that values spanning several registers are consistent.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public interface BulkProcessImage
+    extends ProcessImage {
+
+  /**
+   * Copies the values of a range of registers
+   * into the given array.
+   *
+   * @param ref the reference of the first register.
+   * @param count the number of registers.
+   * @param dest the array to copy the values to (2 bytes each).
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  public void getRegisterBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException;
+
+  /**
+   * Sets the values of a range of registers
+   * from the given array.
+   *
+   * @param ref the reference of the first register.
+   * @param count the number of registers.
+   * @param src the array holding the values (2 bytes each).
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  public void setRegisterBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException;
+
+  /**
+   * Copies the values of a range of input registers
+   * into the given array.
+   *
+   * @param ref the reference of the first input register.
+   * @param count the number of input registers.
+   * @param dest the array to copy the values to (2 bytes each).
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  public void getInputRegisterBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException;
+
+  /**
+   * Copies the states of a range of digital outputs (coils)
+   * into the given array. Bits following the range in the
+   * last byte are cleared.
+   *
+   * @param ref the reference of the first digital output.
+   * @param count the number of digital outputs.
+   * @param dest the array to copy the states to (8 per byte).
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  public void getDigitalOutBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException;
+
+  /**
+   * Sets the states of a range of digital outputs (coils)
+   * from the given array.
+   *
+   * @param ref the reference of the first digital output.
+   * @param count the number of digital outputs.
+   * @param src the array holding the states (8 per byte).
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  public void setDigitalOutBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException;
+
+  /**
+   * Copies the states of a range of digital inputs
+   * into the given array. Bits following the range in the
+   * last byte are cleared.
+   *
+   * @param ref the reference of the first digital input.
+   * @param count the number of digital inputs.
+   * @param dest the array to copy the states to (8 per byte).
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  public void getDigitalInBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException;
+
+}//interface BulkProcessImage
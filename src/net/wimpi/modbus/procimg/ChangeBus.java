@@ -0,0 +1,268 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+import java.util.Vector;
+
+import net.wimpi.modbus.Modbus;
+import net.wimpi.modbus.util.ThreadPool;
+import net.wimpi.modbus.util.VirtualThreadPool;
+
+/**
+ * Class implementing a bus that delivers changes of
+ * registers and digital outputs to listeners asynchronously.
+ * <p>
+ * Writers only set the bit of the changed reference in a
+ * dirty bit set and return immediately. The changes are
+ * delivered as batches ({@link ChangeEvent}) by a task running
+ * on a <tt>ThreadPool</tt>, so a slow listener never blocks
+ * the thread that serves a write request.
+ * <p>
+ * Repeated writes to the same reference are coalesced
+ * into a single change. At most one batch is delivered at a
+ * time; changes made meanwhile are collected into the next
+ * batch. Thus the bus applies backpressure by growing its
+ * batches rather than by queueing events, and its memory use
+ * is bounded by the size of the bit sets.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ * @see ObservableRegister#setChangeBus(ChangeBus, int)
+ * @see ObservableDigitalOut#setChangeBus(ChangeBus, int)
+ */
+public class ChangeBus {
+
+  //instance attributes
+  private ThreadPool m_Pool;
+  private Vector<ChangeListener> m_Listeners = new Vector<ChangeListener>();
+  private long[] m_Registers = Bits.create(65536);
+  private long[] m_DigitalOuts = Bits.create(65536);
+  private int m_Writes = 0;
+  private boolean m_Scheduled = false;
+  private long m_Sequence = 0;
+  private Runnable m_Dispatcher = new Dispatcher();
+
+  /**
+   * Constructs a new <tt>ChangeBus</tt> instance,
+   * delivering the changes on its own (virtual) threads.
+   */
+  public ChangeBus() {
+    this(new VirtualThreadPool());
+  }//constructor
+
+  /**
+   * Constructs a new <tt>ChangeBus</tt> instance,
+   * delivering the changes through the given pool.
+   *
+   * @param pool the <tt>ThreadPool</tt> running the deliveries.
+   */
+  public ChangeBus(ThreadPool pool) {
+    m_Pool = pool;
+  }//constructor
+
+  /**
+   * Adds a listener to this bus.
+   *
+   * @param l the <tt>ChangeListener</tt> to be added.
+   */
+  public void addListener(ChangeListener l) {
+    m_Listeners.addElement(l);
+  }//addListener
+
+  /**
+   * Removes a listener from this bus.
+   *
+   * @param l the <tt>ChangeListener</tt> to be removed.
+   */
+  public void removeListener(ChangeListener l) {
+    m_Listeners.removeElement(l);
+  }//removeListener
+
+  /**
+   * Marks a register as changed.
+   *
+   * @param ref the reference of the register.
+   */
+  public void registerChanged(int ref) {
+    registersChanged(ref, 1);
+  }//registerChanged
+
+  /**
+   * Marks a range of registers as changed.
+   *
+   * @param ref the reference of the first register.
+   * @param count the number of registers.
+   */
+  public synchronized void registersChanged(int ref, int count) {
+    mark(m_Registers, ref, count);
+  }//registersChanged
+
+  /**
+   * Marks a digital output as changed.
+   *
+   * @param ref the reference of the digital output.
+   */
+  public void digitalOutChanged(int ref) {
+    digitalOutsChanged(ref, 1);
+  }//digitalOutChanged
+
+  /**
+   * Marks a range of digital outputs as changed.
+   *
+   * @param ref the reference of the first digital output.
+   * @param count the number of digital outputs.
+   */
+  public synchronized void digitalOutsChanged(int ref, int count) {
+    mark(m_DigitalOuts, ref, count);
+  }//digitalOutsChanged
+
+  /**
+   * Returns the number of batches delivered so far.
+   *
+   * @return the number of batches as <tt>long</tt>.
+   */
+  public synchronized long getBatchCount() {
+    return m_Sequence;
+  }//getBatchCount
+
+  /**
+   * Waits until all changes made so far have been delivered.
+   *
+   * @param timeout the maximum time to wait in milliseconds.
+   * @return true if all changes were delivered, false if the
+   *         timeout expired.
+   * @throws InterruptedException if the thread is interrupted.
+   */
+  public synchronized boolean awaitDelivery(long timeout)
+      throws InterruptedException {
+    long end = System.currentTimeMillis() + timeout;
+    while (m_Scheduled) {
+      long left = end - System.currentTimeMillis();
+      if (left <= 0) {
+        return false;
+      }
+      wait(left);
+    }
+    return true;
+  }//awaitDelivery
+
+  /**
+   * Sets the bits of the given range and schedules a
+   * delivery if none is pending. The caller has to hold
+   * the lock on this bus.
+   */
+  private void mark(long[] bits, int ref, int count) {
+    if (ref < 0 || count < 0 || ref + count > 65536) {
+      throw new IllegalArgumentException();
+    }
+    Bits.setRange(bits, ref, count);
+    m_Writes++;
+    if (!m_Scheduled) {
+      m_Scheduled = true;
+      m_Pool.execute(m_Dispatcher);
+    }
+  }//mark
+
+  /**
+   * Returns the indices of the set bits, clearing them.
+   */
+  private static int[] drain(long[] bits) {
+    int n = 0;
+    for (int j = 0; j < bits.length; j++) {
+      n += Long.bitCount(bits[j]);
+    }
+    int[] refs = new int[n];
+    n = 0;
+    for (int j = 0; j < bits.length; j++) {
+      long w = bits[j];
+      while (w != 0) {
+        refs[n++] = (j << 6) + Long.numberOfTrailingZeros(w);
+        w &= w - 1;
+      }
+      bits[j] = 0;
+    }
+    return refs;
+  }//drain
+
+  /**
+   * Class binding an observable value to a bus
+   * under its reference. It is immutable, so that
+   * both are published together.
+   */
+  static final class Binding {
+
+    final ChangeBus m_Bus;
+    final int m_Reference;
+
+    Binding(ChangeBus bus, int ref) {
+      m_Bus = bus;
+      m_Reference = ref;
+    }//constructor
+
+  }//class Binding
+
+  /**
+   * Class implementing the task that delivers
+   * the pending changes.
+   */
+  private class Dispatcher
+      implements Runnable {
+
+    public void run() {
+      while (true) {
+        ChangeEvent event;
+        synchronized (ChangeBus.this) {
+          if (m_Writes == 0) {
+            m_Scheduled = false;
+            ChangeBus.this.notifyAll();
+            return;
+          }
+          event = new ChangeEvent(++m_Sequence, drain(m_Registers),
+              drain(m_DigitalOuts), m_Writes);
+          m_Writes = 0;
+        }
+        Object[] listeners = m_Listeners.toArray();
+        for (int i = 0; i < listeners.length; i++) {
+          try {
+            ((ChangeListener) listeners[i]).changed(event);
+          } catch (RuntimeException ex) {
+            if (Modbus.debug) System.out.println("Change listener failed: " + ex);
+          }
+        }
+      }
+    }//run
+
+  }//class Dispatcher
+
+}//class ChangeBus
@@ -0,0 +1,109 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+/**
+ * Class implementing a batch of changes delivered
+ * by a {@link ChangeBus}.
+ * <p>
+ * Every reference is reported once per batch, in ascending
+ * order, regardless of how often it was written.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class ChangeEvent {
+
+  //instance attributes
+  private long m_Sequence;
+  private int[] m_Registers;
+  private int[] m_DigitalOuts;
+  private int m_WriteCount;
+
+  /**
+   * Constructs a new <tt>ChangeEvent</tt> instance.
+   *
+   * @param seq the sequence number of the batch.
+   * @param regs the references of the changed registers.
+   * @param douts the references of the changed digital outputs.
+   * @param writes the number of writes that were coalesced.
+   */
+  public ChangeEvent(long seq, int[] regs, int[] douts, int writes) {
+    m_Sequence = seq;
+    m_Registers = regs;
+    m_DigitalOuts = douts;
+    m_WriteCount = writes;
+  }//constructor
+
+  /**
+   * Returns the sequence number of this batch.
+   * Batches of a bus are numbered consecutively, starting at 1.
+   *
+   * @return the sequence number as <tt>long</tt>.
+   */
+  public long getSequence() {
+    return m_Sequence;
+  }//getSequence
+
+  /**
+   * Returns the references of the registers
+   * that have changed, in ascending order.
+   *
+   * @return the references as <tt>int[]</tt>.
+   */
+  public int[] getRegisters() {
+    return m_Registers;
+  }//getRegisters
+
+  /**
+   * Returns the references of the digital outputs (coils)
+   * that have changed, in ascending order.
+   *
+   * @return the references as <tt>int[]</tt>.
+   */
+  public int[] getDigitalOuts() {
+    return m_DigitalOuts;
+  }//getDigitalOuts
+
+  /**
+   * Returns the number of writes that were coalesced
+   * into this batch.
+   *
+   * @return the number of writes as <tt>int</tt>.
+   */
+  public int getWriteCount() {
+    return m_WriteCount;
+  }//getWriteCount
+
+}//class ChangeEvent
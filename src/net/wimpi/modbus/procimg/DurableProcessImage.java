@@ -0,0 +1,629 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import net.wimpi.modbus.Modbus;
+
+/**
+ * Class implementing a process image that persists the
+ * writes to its registers and digital outputs (coils).
+ * <p>
+ * The image wraps another {@link BulkProcessImage} holding
+ * the values. Every write is appended to a write-ahead journal
+ * in the given directory, and the journal is replaced by a
+ * snapshot of all registers and coils once it has grown beyond
+ * a threshold (see {@link #setSnapshotThreshold(long)}).
+ * On construction the snapshot and the journal are replayed
+ * into the wrapped image, restoring the values written before
+ * a restart. Input registers and digital inputs are owned by
+ * the application and not persisted.
+ * <p>
+ * Journal and snapshot consist of records of the form
+ * <pre>
+ *  type (1 byte: 1 registers, 2 coils)
+ *  reference (2 bytes), count (2 bytes)
+ *  values (2 bytes per register, or 8 coils per byte)
+ *  CRC32 of the preceding bytes (4 bytes)
+ * </pre>
+ * with all fields big endian, and values in wire format. A record
+ * that is incomplete or damaged ends the replay, so a write that
+ * was torn by a crash is dropped.
+ * <p>
+ * The journal is written by a thread of its own, using group
+ * commit: all records appended while a sync is in progress are
+ * written and synced together with the next one. By default
+ * a write returns once its record has been synced, so the
+ * response to a master is sent only after the value is durable,
+ * while concurrent writes share the cost of a sync.
+ * <p>
+ * Once the journal failed or has been closed, writes are
+ * rejected with a {@link DeviceFailureException}, which slaves
+ * answer with a slave device failure exception response.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class DurableProcessImage
+    extends AbstractBulkProcessImage
+    implements Runnable {
+
+  /**
+   * Defines the record type for registers.
+   */
+  public static final int REGISTERS = 1;
+
+  /**
+   * Defines the record type for coils.
+   */
+  public static final int COILS = 2;
+
+  //instance attributes
+  private BulkProcessImage m_Image;
+  private File m_Snapshot;
+  private File m_SnapshotTemp;
+  private RandomAccessFile m_Journal;
+  private FileChannel m_Channel;
+  private Object m_FileLock = new Object();
+  private ByteArrayOutputStream m_Pending = new ByteArrayOutputStream();
+  private CRC32 m_CRC = new CRC32();
+  private long m_Sequence = 0;
+  private long m_Durable = 0;
+  private long m_JournalLength;
+  private long m_SnapshotThreshold = 1024 * 1024;
+  private boolean m_SyncWrites = true;
+  private boolean m_Closed = false;
+  private boolean m_Writing = false;
+  private IOException m_Error;
+  private long m_SyncCount = 0;
+  private Thread m_Writer;
+
+  /**
+   * Constructs a new <tt>DurableProcessImage</tt> instance,
+   * restoring the values persisted in the given directory
+   * into the given image.
+   *
+   * @param image the <tt>BulkProcessImage</tt> holding the values.
+   * @param dir the directory for the journal and the snapshot.
+   * @throws IOException if the files cannot be read or created.
+   */
+  public DurableProcessImage(BulkProcessImage image, File dir)
+      throws IOException {
+    m_Image = image;
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create " + dir);
+    }
+    m_Snapshot = new File(dir, "snapshot");
+    m_SnapshotTemp = new File(dir, "snapshot.tmp");
+    if (m_Snapshot.exists()) {
+      replay(readFile(m_Snapshot));
+    }
+    m_Journal = new RandomAccessFile(new File(dir, "journal"), "rw");
+    m_Channel = m_Journal.getChannel();
+    byte[] journal = new byte[(int) m_Journal.length()];
+    m_Journal.readFully(journal);
+    m_JournalLength = replay(journal);
+    //drop a torn record at the end
+    m_Channel.truncate(m_JournalLength);
+    m_Channel.position(m_JournalLength);
+    m_Writer = new Thread(this, "DurableProcessImage-" + dir.getName());
+    m_Writer.setDaemon(true);
+    m_Writer.start();
+  }//constructor
+
+  /**
+   * Sets the size the journal may reach before it is
+   * replaced by a snapshot. The default is 1 MB.
+   *
+   * @param bytes the threshold in bytes.
+   */
+  public synchronized void setSnapshotThreshold(long bytes) {
+    m_SnapshotThreshold = bytes;
+  }//setSnapshotThreshold
+
+  /**
+   * Returns the size the journal may reach before it is
+   * replaced by a snapshot.
+   *
+   * @return the threshold in bytes.
+   */
+  public synchronized long getSnapshotThreshold() {
+    return m_SnapshotThreshold;
+  }//getSnapshotThreshold
+
+  /**
+   * Sets the flag that determines whether writes wait until
+   * their record has been synced to the storage device.
+   * <p>
+   * If false, writes return immediately, and the last writes
+   * may be lost on a crash.
+   *
+   * @param b true if writes should wait, false otherwise.
+   */
+  public synchronized void setSyncWrites(boolean b) {
+    m_SyncWrites = b;
+  }//setSyncWrites
+
+  /**
+   * Tests if writes wait until their record has been
+   * synced to the storage device.
+   *
+   * @return true if writes wait, false otherwise.
+   */
+  public synchronized boolean isSyncWrites() {
+    return m_SyncWrites;
+  }//isSyncWrites
+
+  /**
+   * Returns the number of syncs of the journal so far.
+   * Compared to the number of writes, this shows how
+   * many writes shared a sync.
+   *
+   * @return the number of syncs.
+   */
+  public synchronized long getSyncCount() {
+    return m_SyncCount;
+  }//getSyncCount
+
+  /**
+   * Returns the error that stopped the journal, if any.
+   * After an error the values are still readable, but
+   * writes are rejected.
+   *
+   * @return the <tt>IOException</tt>, or null.
+   */
+  public synchronized IOException getError() {
+    return m_Error;
+  }//getError
+
+  /**
+   * Writes a snapshot of all registers and coils, and
+   * clears the journal.
+   * <p>
+   * Writes are blocked while the snapshot is taken. A batch
+   * of records that is being written to the journal is
+   * completed first, so that it cannot end up in the journal
+   * after the snapshot, reverting the values it covers.
+   *
+   * @throws IOException if the snapshot cannot be written.
+   */
+  public synchronized void snapshot()
+      throws IOException {
+    boolean interrupted = false;
+    while (m_Writing) {
+      try {
+        wait();
+      } catch (InterruptedException ex) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    snapshot(out, REGISTERS, m_Image.getRegisterCount(), 120);
+    snapshot(out, COILS, m_Image.getDigitalOutCount(), 1968);
+    FileOutputStream fout = new FileOutputStream(m_SnapshotTemp);
+    try {
+      out.writeTo(fout);
+      fout.getFD().sync();
+    } finally {
+      fout.close();
+    }
+    Files.move(m_SnapshotTemp.toPath(), m_Snapshot.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    //the snapshot covers all writes so far
+    m_Pending.reset();
+    synchronized (m_FileLock) {
+      m_Channel.truncate(0);
+      m_Channel.force(true);
+      m_JournalLength = 0;
+    }
+    m_Durable = m_Sequence;
+    notifyAll();
+  }//snapshot
+
+  /**
+   * Writes all pending records, stops the journal and
+   * closes its file.
+   *
+   * @throws IOException if an I/O error occurs.
+   */
+  public void close()
+      throws IOException {
+    synchronized (this) {
+      m_Closed = true;
+      notifyAll();
+    }
+    try {
+      m_Writer.join();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (m_FileLock) {
+      m_Journal.close();
+    }
+  }//close
+
+  /**
+   * Writes the journal; runs on the thread of this image.
+   */
+  public void run() {
+    while (true) {
+      byte[] batch;
+      long seq;
+      synchronized (this) {
+        while (m_Pending.size() == 0 && !m_Closed) {
+          try {
+            wait();
+          } catch (InterruptedException ex) {
+            return;
+          }
+        }
+        if (m_Pending.size() == 0) {
+          return;
+        }
+        batch = m_Pending.toByteArray();
+        m_Pending.reset();
+        seq = m_Sequence;
+        //keeps snapshot() from truncating the journal meanwhile
+        m_Writing = true;
+      }
+      boolean snapshot;
+      try {
+        try {
+          synchronized (m_FileLock) {
+            m_Channel.write(ByteBuffer.wrap(batch));
+            m_Channel.force(false);
+            m_JournalLength += batch.length;
+          }
+        } finally {
+          synchronized (this) {
+            m_Writing = false;
+            notifyAll();
+          }
+        }
+        synchronized (this) {
+          snapshot = m_JournalLength > m_SnapshotThreshold;
+          m_SyncCount++;
+          m_Durable = Math.max(m_Durable, seq);
+          notifyAll();
+        }
+        if (snapshot) {
+          snapshot();
+        }
+      } catch (IOException ex) {
+        if (Modbus.debug) System.out.println("Journal failed: " + ex);
+        synchronized (this) {
+          m_Error = ex;
+          notifyAll();
+        }
+        return;
+      }
+    }
+  }//run
+
+  public int getDigitalInCount() {
+    return m_Image.getDigitalInCount();
+  }//getDigitalInCount
+
+  public void getDigitalInBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_Image.getDigitalInBytes(ref, count, dest, off);
+  }//getDigitalInBytes
+
+  public int getDigitalOutCount() {
+    return m_Image.getDigitalOutCount();
+  }//getDigitalOutCount
+
+  public void getDigitalOutBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_Image.getDigitalOutBytes(ref, count, dest, off);
+  }//getDigitalOutBytes
+
+  public void setDigitalOutBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    long seq;
+    synchronized (this) {
+      checkJournal();
+      m_Image.setDigitalOutBytes(ref, count, src, off);
+      seq = append(COILS, ref, count, src, off, (count + 7) >>> 3);
+    }
+    awaitDurable(seq);
+  }//setDigitalOutBytes
+
+  public int getInputRegisterCount() {
+    return m_Image.getInputRegisterCount();
+  }//getInputRegisterCount
+
+  public void getInputRegisterBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_Image.getInputRegisterBytes(ref, count, dest, off);
+  }//getInputRegisterBytes
+
+  public int getRegisterCount() {
+    return m_Image.getRegisterCount();
+  }//getRegisterCount
+
+  public void getRegisterBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_Image.getRegisterBytes(ref, count, dest, off);
+  }//getRegisterBytes
+
+  public void setRegisterBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    long seq;
+    synchronized (this) {
+      checkJournal();
+      m_Image.setRegisterBytes(ref, count, src, off);
+      seq = append(REGISTERS, ref, count, src, off, count * 2);
+    }
+    awaitDurable(seq);
+  }//setRegisterBytes
+
+  public DigitalIn getDigitalIn(int ref)
+      throws IllegalAddressException {
+    return m_Image.getDigitalIn(ref);
+  }//getDigitalIn
+
+  public DigitalIn[] getDigitalInRange(int ref, int count)
+      throws IllegalAddressException {
+    return m_Image.getDigitalInRange(ref, count);
+  }//getDigitalInRange
+
+  public InputRegister getInputRegister(int ref)
+      throws IllegalAddressException {
+    return m_Image.getInputRegister(ref);
+  }//getInputRegister
+
+  public InputRegister[] getInputRegisterRange(int ref, int count)
+      throws IllegalAddressException {
+    return m_Image.getInputRegisterRange(ref, count);
+  }//getInputRegisterRange
+
+  protected boolean readDigitalIn(int ref) {
+    return m_Image.getDigitalIn(ref).isSet();
+  }//readDigitalIn
+
+  protected boolean readDigitalOut(int ref) {
+    return m_Image.getDigitalOut(ref).isSet();
+  }//readDigitalOut
+
+  protected void writeDigitalOut(int ref, boolean b) {
+    setDigitalOutBytes(ref, 1, new byte[]{(byte) (b ? 0x80 : 0)}, 0);
+  }//writeDigitalOut
+
+  protected short readInputRegister(int ref) {
+    return m_Image.getInputRegister(ref).toShort();
+  }//readInputRegister
+
+  protected short readRegister(int ref) {
+    return m_Image.getRegister(ref).toShort();
+  }//readRegister
+
+  protected void writeRegister(int ref, short value) {
+    setRegisterBytes(ref, 1, new byte[]{(byte) (value >> 8), (byte) value}, 0);
+  }//writeRegister
+
+  /**
+   * Asserts that the journal accepts records.
+   * The caller has to hold the lock on this image.
+   *
+   * @throws DeviceFailureException if the journal failed
+   *         or has been closed.
+   */
+  private void checkJournal() {
+    if (m_Error != null) {
+      throw new DeviceFailureException("Journal failed: " + m_Error);
+    }
+    if (m_Closed) {
+      throw new DeviceFailureException("Journal closed.");
+    }
+  }//checkJournal
+
+  /**
+   * Appends a record to the pending part of the journal.
+   * The caller has to hold the lock on this image, and
+   * has to have checked the journal.
+   *
+   * @return the sequence number of the record.
+   */
+  private long append(int type, int ref, int count,
+                      byte[] src, int off, int len) {
+    writeRecord(m_Pending, type, ref, count, src, off, len);
+    notifyAll();
+    return ++m_Sequence;
+  }//append
+
+  /**
+   * Waits until the record with the given sequence number
+   * is durable, if writes are synced.
+   *
+   * @throws DeviceFailureException if the journal failed
+   *         before the record was durable.
+   */
+  private synchronized void awaitDurable(long seq) {
+    boolean interrupted = false;
+    while (m_SyncWrites && m_Durable < seq && m_Error == null && !m_Closed) {
+      try {
+        wait();
+      } catch (InterruptedException ex) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (m_SyncWrites && m_Durable < seq && m_Error != null) {
+      throw new DeviceFailureException("Journal failed: " + m_Error);
+    }
+  }//awaitDurable
+
+  /**
+   * Writes a record to the given stream.
+   */
+  private void writeRecord(ByteArrayOutputStream out, int type, int ref,
+                           int count, byte[] src, int off, int len) {
+    byte[] head = new byte[]{(byte) type, (byte) (ref >> 8), (byte) ref,
+                             (byte) (count >> 8), (byte) count};
+    m_CRC.reset();
+    m_CRC.update(head, 0, head.length);
+    m_CRC.update(src, off, len);
+    int crc = (int) m_CRC.getValue();
+    out.write(head, 0, head.length);
+    out.write(src, off, len);
+    out.write(crc >>> 24);
+    out.write(crc >>> 16);
+    out.write(crc >>> 8);
+    out.write(crc);
+  }//writeRecord
+
+  /**
+   * Writes records holding all values of one kind to the given
+   * stream, skipping references the image does not define.
+   */
+  private void snapshot(ByteArrayOutputStream out, int type, int total, int chunk) {
+    byte[] buf = new byte[chunk * 2];
+    for (int ref = 0; ref < total; ref += chunk) {
+      int n = Math.min(chunk, total - ref);
+      try {
+        get(type, ref, n, buf);
+        writeRecord(out, type, ref, n, buf, 0, length(type, n));
+      } catch (IllegalAddressException ex) {
+        //range has holes, save the defined references one by one
+        for (int i = ref; i < ref + n; i++) {
+          try {
+            get(type, i, 1, buf);
+            writeRecord(out, type, i, 1, buf, 0, length(type, 1));
+          } catch (IllegalAddressException iaex) {
+          }
+        }
+      }
+    }
+  }//snapshot
+
+  private void get(int type, int ref, int count, byte[] buf) {
+    if (type == REGISTERS) {
+      m_Image.getRegisterBytes(ref, count, buf, 0);
+    } else {
+      m_Image.getDigitalOutBytes(ref, count, buf, 0);
+    }
+  }//get
+
+  private void set(int type, int ref, int count, byte[] buf, int off) {
+    if (type == REGISTERS) {
+      m_Image.setRegisterBytes(ref, count, buf, off);
+    } else {
+      m_Image.setDigitalOutBytes(ref, count, buf, off);
+    }
+  }//set
+
+  private static int length(int type, int count) {
+    return (type == REGISTERS) ? count * 2 : (count + 7) >>> 3;
+  }//length
+
+  /**
+   * Applies the valid records of the given data to the image.
+   *
+   * @return the length of the valid records.
+   */
+  private int replay(byte[] data) {
+    int pos = 0;
+    int records = 0;
+    while (pos + 9 <= data.length) {
+      int type = data[pos];
+      int ref = ((data[pos + 1] & 0xff) << 8) | (data[pos + 2] & 0xff);
+      int count = ((data[pos + 3] & 0xff) << 8) | (data[pos + 4] & 0xff);
+      if (type != REGISTERS && type != COILS) {
+        break;
+      }
+      int len = length(type, count);
+      if (pos + 9 + len > data.length) {
+        break;
+      }
+      m_CRC.reset();
+      m_CRC.update(data, pos, 5 + len);
+      int crc = ((data[pos + 5 + len] & 0xff) << 24) | ((data[pos + 6 + len] & 0xff) << 16)
+          | ((data[pos + 7 + len] & 0xff) << 8) | (data[pos + 8 + len] & 0xff);
+      if (crc != (int) m_CRC.getValue()) {
+        break;
+      }
+      try {
+        set(type, ref, count, data, pos + 5);
+      } catch (IllegalAddressException ex) {
+        //range has holes in this image, restore what is defined
+        byte[] b = new byte[2];
+        for (int i = 0; i < count; i++) {
+          if (type == REGISTERS) {
+            b[0] = data[pos + 5 + i * 2];
+            b[1] = data[pos + 6 + i * 2];
+          } else {
+            b[0] = (byte) ((data[pos + 5 + (i >>> 3)] << (i & 7)) & 0x80);
+          }
+          try {
+            set(type, ref + i, 1, b, 0);
+          } catch (IllegalAddressException iaex) {
+          }
+        }
+      }
+      pos += 9 + len;
+      records++;
+    }
+    if (Modbus.debug) System.out.println("Replayed " + records + " records.");
+    return pos;
+  }//replay
+
+  private static byte[] readFile(File f)
+      throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(f, "r");
+    try {
+      byte[] data = new byte[(int) raf.length()];
+      raf.readFully(data);
+      return data;
+    } finally {
+      raf.close();
+    }
+  }//readFile
+
+}//class DurableProcessImage
@@ -0,0 +1,602 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * Class implementing a process image that is stored in a
+ * memory mapped file, so that it can be shared with producers
+ * running in other processes.
+ * <p>
+ * The file starts with a header of 64 bytes; all header fields
+ * are big endian:
+ * <pre>
+ *  offset  size  field
+ *       0     4  magic, 0x4A4D5049 ("JMPI")
+ *       4     4  layout version, 1
+ *       8     4  number of digital inputs
+ *      12     4  number of digital outputs (coils)
+ *      16     4  number of input registers
+ *      20     4  number of registers
+ *      24     8  sequence counter of the digital inputs
+ *      32     8  sequence counter of the digital outputs
+ *      40     8  sequence counter of the input registers
+ *      48     8  sequence counter of the registers
+ *      56     8  reserved, locked while the file is open
+ * </pre>
+ * The header is followed by the sections of the digital inputs,
+ * digital outputs, input registers and registers, in this order.
+ * Each section starts at an offset that is a multiple of 8.
+ * In the bit sections bit <i>i</i> is stored in byte <i>i/8</i>,
+ * bit <i>i%8</i> (i.e. the sections may be read as little endian
+ * 64 bit words). Registers are stored as big endian 16 bit values,
+ * just like on the wire.
+ * <p>
+ * The sequence counters protect multi-value updates.
+ * A writer increments the counter of a section to an odd value
+ * before, and to the next even value after changing the section.
+ * A reader copies the values and retries as long as the counter
+ * was odd or has changed meanwhile, so it never returns a range
+ * of which only a part was updated. There must be only a single
+ * writer per section at a time; within this JVM all access is
+ * serialized on the instance. Producers in other processes may
+ * use this class on the same file, or implement the
+ * protocol described above.
+ * <p>
+ * A reader waits at most for the read timeout for an update to
+ * complete, and fails with a {@link DeviceFailureException}
+ * afterwards, as the writer has most likely terminated during the
+ * update. Each instance holds a shared lock on the reserved header
+ * field while the file is open. If an instance can lock it
+ * exclusively when opening the file, no other instance uses the
+ * file, and sequence counters that were left odd are completed.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class MappedProcessImage
+    extends AbstractBulkProcessImage {
+
+  /**
+   * Defines the section of the digital inputs.
+   */
+  public static final int DIGITAL_INPUTS = 0;
+
+  /**
+   * Defines the section of the digital outputs (coils).
+   */
+  public static final int DIGITAL_OUTPUTS = 1;
+
+  /**
+   * Defines the section of the input registers.
+   */
+  public static final int INPUT_REGISTERS = 2;
+
+  /**
+   * Defines the section of the registers.
+   */
+  public static final int REGISTERS = 3;
+
+  /**
+   * Defines the magic number identifying an image file.
+   */
+  public static final int MAGIC = 0x4A4D5049;
+
+  /**
+   * Defines the version of the layout.
+   */
+  public static final int LAYOUT_VERSION = 1;
+
+  /**
+   * Defines the length of the header in bytes.
+   */
+  public static final int HEADER_LENGTH = 64;
+
+  private static final int COUNTS_OFFSET = 8;
+  private static final int SEQUENCE_OFFSET = 24;
+
+  //instance attributes
+  private RandomAccessFile m_File;
+  private MappedByteBuffer m_Buffer;
+  private ByteBuffer m_Bits;
+  private int[] m_Counts = new int[4];
+  private int[] m_Offsets = new int[4];
+  private FileLock m_Lock;
+  private long m_ReadTimeout = 1000;
+
+  /**
+   * Constructs a new <tt>MappedProcessImage</tt> instance,
+   * creating the given file if it does not exist.
+   * <p>
+   * An existing file has to have the same layout.
+   *
+   * @param file the file storing the image.
+   * @param dins the number of digital inputs.
+   * @param douts the number of digital outputs (coils).
+   * @param inregs the number of input registers.
+   * @param regs the number of registers.
+   * @throws IOException if the file cannot be mapped,
+   *         or has a different layout.
+   */
+  public MappedProcessImage(File file, int dins, int douts,
+                            int inregs, int regs)
+      throws IOException {
+    m_Counts[DIGITAL_INPUTS] = dins;
+    m_Counts[DIGITAL_OUTPUTS] = douts;
+    m_Counts[INPUT_REGISTERS] = inregs;
+    m_Counts[REGISTERS] = regs;
+    for (int i = 0; i < m_Counts.length; i++) {
+      if (m_Counts[i] < 0) {
+        throw new IllegalArgumentException();
+      }
+    }
+    m_File = new RandomAccessFile(file, "rw");
+    try {
+      boolean create = m_File.length() == 0;
+      map(layout());
+      if (create) {
+        m_Buffer.putInt(0, MAGIC);
+        m_Buffer.putInt(4, LAYOUT_VERSION);
+        for (int i = 0; i < m_Counts.length; i++) {
+          m_Buffer.putInt(COUNTS_OFFSET + i * 4, m_Counts[i]);
+        }
+        m_Buffer.force();
+      } else {
+        checkHeader();
+      }
+      lock();
+    } catch (IOException ex) {
+      m_File.close();
+      throw ex;
+    }
+  }//constructor
+
+  /**
+   * Constructs a new <tt>MappedProcessImage</tt> instance
+   * for an existing file, taking the layout from its header.
+   *
+   * @param file the file storing the image.
+   * @throws IOException if the file cannot be mapped,
+   *         or is not a valid image file.
+   */
+  public MappedProcessImage(File file)
+      throws IOException {
+    m_File = new RandomAccessFile(file, "rw");
+    try {
+      if (m_File.length() < HEADER_LENGTH) {
+        throw new IOException("Not an image file: " + file);
+      }
+      m_File.seek(COUNTS_OFFSET);
+      for (int i = 0; i < m_Counts.length; i++) {
+        m_Counts[i] = m_File.readInt();
+        if (m_Counts[i] < 0) {
+          throw new IOException("Invalid image file: " + file);
+        }
+      }
+      map(layout());
+      checkHeader();
+      lock();
+    } catch (IOException ex) {
+      m_File.close();
+      throw ex;
+    }
+  }//constructor
+
+  /**
+   * Returns the current value of the sequence counter
+   * of the given section.
+   * <p>
+   * The counter is odd while the section is being updated
+   * and advances by two with every completed update.
+   *
+   * @param section the section, e.g. {@link #REGISTERS}.
+   * @return the value of the sequence counter.
+   */
+  public long getSequence(int section) {
+    long seq = m_Buffer.getLong(SEQUENCE_OFFSET + section * 8);
+    VarHandle.acquireFence();
+    return seq;
+  }//getSequence
+
+  /**
+   * Sets the time a read waits for an update of
+   * the section to complete.
+   *
+   * @param timeout the timeout in milliseconds.
+   */
+  public void setReadTimeout(long timeout) {
+    m_ReadTimeout = timeout;
+  }//setReadTimeout
+
+  /**
+   * Returns the time a read waits for an update of
+   * the section to complete.
+   *
+   * @return the timeout in milliseconds.
+   */
+  public long getReadTimeout() {
+    return m_ReadTimeout;
+  }//getReadTimeout
+
+  /**
+   * Writes all changes of the image to the storage device.
+   */
+  public void force() {
+    m_Buffer.force();
+  }//force
+
+  /**
+   * Closes the file storing this image.
+   * The image must not be used afterwards.
+   *
+   * @throws IOException if an I/O error occurs.
+   */
+  public synchronized void close()
+      throws IOException {
+    m_Buffer.force();
+    //closing the file releases the lock
+    m_File.close();
+  }//close
+
+  public int getDigitalInCount() {
+    return m_Counts[DIGITAL_INPUTS];
+  }//getDigitalInCount
+
+  public synchronized void getDigitalInBytes(int ref, int count,
+                                             byte[] dest, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Counts[DIGITAL_INPUTS]);
+    readBits(DIGITAL_INPUTS, ref, count, dest, off);
+  }//getDigitalInBytes
+
+  /**
+   * Sets a range of digital inputs from a byte array,
+   * packed as in a read input discretes response.
+   *
+   * @param ref the reference of the first digital input.
+   * @param count the number of digital inputs.
+   * @param src the array to copy from.
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  public synchronized void setDigitalInBytes(int ref, int count,
+                                             byte[] src, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Counts[DIGITAL_INPUTS]);
+    writeBits(DIGITAL_INPUTS, ref, count, src, off);
+  }//setDigitalInBytes
+
+  public int getDigitalOutCount() {
+    return m_Counts[DIGITAL_OUTPUTS];
+  }//getDigitalOutCount
+
+  public synchronized void getDigitalOutBytes(int ref, int count,
+                                              byte[] dest, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Counts[DIGITAL_OUTPUTS]);
+    readBits(DIGITAL_OUTPUTS, ref, count, dest, off);
+  }//getDigitalOutBytes
+
+  public synchronized void setDigitalOutBytes(int ref, int count,
+                                              byte[] src, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Counts[DIGITAL_OUTPUTS]);
+    writeBits(DIGITAL_OUTPUTS, ref, count, src, off);
+  }//setDigitalOutBytes
+
+  public int getInputRegisterCount() {
+    return m_Counts[INPUT_REGISTERS];
+  }//getInputRegisterCount
+
+  public synchronized void getInputRegisterBytes(int ref, int count,
+                                                 byte[] dest, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Counts[INPUT_REGISTERS]);
+    readBytes(INPUT_REGISTERS, ref * 2, dest, off, count * 2);
+  }//getInputRegisterBytes
+
+  /**
+   * Sets a range of input registers from a byte array,
+   * holding the values in big endian order.
+   *
+   * @param ref the reference of the first input register.
+   * @param count the number of input registers.
+   * @param src the array to copy from.
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not valid.
+   */
+  public synchronized void setInputRegisterBytes(int ref, int count,
+                                                 byte[] src, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Counts[INPUT_REGISTERS]);
+    writeBytes(INPUT_REGISTERS, ref * 2, src, off, count * 2);
+  }//setInputRegisterBytes
+
+  public int getRegisterCount() {
+    return m_Counts[REGISTERS];
+  }//getRegisterCount
+
+  public synchronized void getRegisterBytes(int ref, int count,
+                                            byte[] dest, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Counts[REGISTERS]);
+    readBytes(REGISTERS, ref * 2, dest, off, count * 2);
+  }//getRegisterBytes
+
+  public synchronized void setRegisterBytes(int ref, int count,
+                                            byte[] src, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Counts[REGISTERS]);
+    writeBytes(REGISTERS, ref * 2, src, off, count * 2);
+  }//setRegisterBytes
+
+  protected synchronized boolean readDigitalIn(int ref) {
+    byte[] b = new byte[1];
+    readBits(DIGITAL_INPUTS, ref, 1, b, 0);
+    return b[0] != 0;
+  }//readDigitalIn
+
+  protected synchronized boolean readDigitalOut(int ref) {
+    byte[] b = new byte[1];
+    readBits(DIGITAL_OUTPUTS, ref, 1, b, 0);
+    return b[0] != 0;
+  }//readDigitalOut
+
+  protected synchronized void writeDigitalOut(int ref, boolean b) {
+    writeBits(DIGITAL_OUTPUTS, ref, 1,
+        new byte[]{(byte) (b ? 0x80 : 0)}, 0);
+  }//writeDigitalOut
+
+  protected synchronized short readInputRegister(int ref) {
+    byte[] b = new byte[2];
+    readBytes(INPUT_REGISTERS, ref * 2, b, 0, 2);
+    return (short) ((b[0] << 8) | (b[1] & 0xff));
+  }//readInputRegister
+
+  protected synchronized short readRegister(int ref) {
+    byte[] b = new byte[2];
+    readBytes(REGISTERS, ref * 2, b, 0, 2);
+    return (short) ((b[0] << 8) | (b[1] & 0xff));
+  }//readRegister
+
+  protected synchronized void writeRegister(int ref, short value) {
+    writeBytes(REGISTERS, ref * 2,
+        new byte[]{(byte) (value >> 8), (byte) value}, 0, 2);
+  }//writeRegister
+
+  /**
+   * Computes the offsets of the sections.
+   *
+   * @return the length of the file.
+   */
+  private int layout() {
+    int off = HEADER_LENGTH;
+    for (int i = 0; i < m_Counts.length; i++) {
+      m_Offsets[i] = off;
+      int len = (i < INPUT_REGISTERS)
+          ? ((m_Counts[i] + 63) >>> 6) * 8
+          : m_Counts[i] * 2;
+      off += (len + 7) & ~7;
+    }
+    return off;
+  }//layout
+
+  /**
+   * Maps the given number of bytes of the file.
+   */
+  private void map(int length)
+      throws IOException {
+    m_Buffer = m_File.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+    m_Bits = m_Buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+  }//map
+
+  /**
+   * Asserts that the header of the file matches the layout.
+   */
+  private void checkHeader()
+      throws IOException {
+    if (m_Buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not an image file.");
+    }
+    if (m_Buffer.getInt(4) != LAYOUT_VERSION) {
+      throw new IOException("Unsupported layout version " + m_Buffer.getInt(4));
+    }
+    for (int i = 0; i < m_Counts.length; i++) {
+      if (m_Buffer.getInt(COUNTS_OFFSET + i * 4) != m_Counts[i]) {
+        throw new IOException("Image file has a different layout.");
+      }
+    }
+  }//checkHeader
+
+  /**
+   * Takes a shared lock on the reserved header field for
+   * as long as the file is open. If the field can be locked
+   * exclusively first, no other instance has the file open,
+   * and odd sequence counters are left over from a writer
+   * that terminated during an update; they are completed.
+   */
+  private void lock()
+      throws IOException {
+    FileChannel ch = m_File.getChannel();
+    FileLock excl;
+    try {
+      excl = ch.tryLock(HEADER_LENGTH - 8, 8, false);
+    } catch (OverlappingFileLockException ex) {
+      //this JVM has the file open already
+      return;
+    }
+    if (excl != null) {
+      for (int i = 0; i < m_Counts.length; i++) {
+        int pos = SEQUENCE_OFFSET + i * 8;
+        long seq = m_Buffer.getLong(pos);
+        if ((seq & 1) != 0) {
+          m_Buffer.putLong(pos, seq + 1);
+        }
+      }
+      excl.release();
+    }
+    m_Lock = ch.lock(HEADER_LENGTH - 8, 8, true);
+  }//lock
+
+  /**
+   * Marks the begin of an update of the given section,
+   * by making its sequence counter odd.
+   */
+  private void beginWrite(int section) {
+    int pos = SEQUENCE_OFFSET + section * 8;
+    m_Buffer.putLong(pos, m_Buffer.getLong(pos) | 1);
+    //the counter has to be odd before any value changes
+    VarHandle.releaseFence();
+  }//beginWrite
+
+  /**
+   * Marks the end of an update of the given section,
+   * by advancing its sequence counter to the next even value.
+   */
+  private void endWrite(int section) {
+    //all values have to be changed before the counter is even
+    VarHandle.releaseFence();
+    int pos = SEQUENCE_OFFSET + section * 8;
+    m_Buffer.putLong(pos, m_Buffer.getLong(pos) + 1);
+  }//endWrite
+
+  /**
+   * Waits until no update of the given section is in progress.
+   *
+   * @return the value of the sequence counter.
+   * @throws DeviceFailureException if the update does not
+   *         complete within the read timeout.
+   */
+  private long beginRead(int section) {
+    long seq = getSequence(section);
+    if ((seq & 1) == 0) {
+      return seq;
+    }
+    long deadline = System.nanoTime() + m_ReadTimeout * 1000000L;
+    while (((seq = getSequence(section)) & 1) != 0) {
+      if (System.nanoTime() - deadline > 0) {
+        throw new DeviceFailureException(
+            "Update of section " + section + " did not complete.");
+      }
+      Thread.yield();
+    }
+    return seq;
+  }//beginRead
+
+  /**
+   * Tests if the given section has not been updated since
+   * {@link #beginRead(int)} returned the given counter value.
+   */
+  private boolean endRead(int section, long seq) {
+    //the values have to be read before the counter
+    VarHandle.acquireFence();
+    return m_Buffer.getLong(SEQUENCE_OFFSET + section * 8) == seq;
+  }//endRead
+
+  private void readBytes(int section, int pos, byte[] dest,
+                         int off, int len) {
+    ByteBuffer buf = m_Buffer.duplicate();
+    buf.position(m_Offsets[section] + pos);
+    long seq;
+    do {
+      seq = beginRead(section);
+      buf.mark();
+      buf.get(dest, off, len);
+      buf.reset();
+    } while (!endRead(section, seq));
+  }//readBytes
+
+  private void writeBytes(int section, int pos, byte[] src,
+                          int off, int len) {
+    ByteBuffer buf = m_Buffer.duplicate();
+    buf.position(m_Offsets[section] + pos);
+    beginWrite(section);
+    try {
+      buf.put(src, off, len);
+    } finally {
+      endWrite(section);
+    }
+  }//writeBytes
+
+  private void readBits(int section, int ref, int count,
+                        byte[] dest, int off) {
+    if (count == 0) {
+      return;
+    }
+    int first = ref >>> 6;
+    long[] words = new long[((ref + count - 1) >>> 6) - first + 1];
+    int base = m_Offsets[section] + first * 8;
+    long seq;
+    do {
+      seq = beginRead(section);
+      for (int i = 0; i < words.length; i++) {
+        words[i] = m_Bits.getLong(base + i * 8);
+      }
+    } while (!endRead(section, seq));
+    Bits.toBytes(words, ref & 63, count, dest, off);
+  }//readBits
+
+  private void writeBits(int section, int ref, int count,
+                         byte[] src, int off) {
+    if (count == 0) {
+      return;
+    }
+    int first = ref >>> 6;
+    long[] words = new long[((ref + count - 1) >>> 6) - first + 1];
+    int base = m_Offsets[section] + first * 8;
+    beginWrite(section);
+    try {
+      for (int i = 0; i < words.length; i++) {
+        words[i] = m_Bits.getLong(base + i * 8);
+      }
+      Bits.fromBytes(words, ref & 63, count, src, off);
+      for (int i = 0; i < words.length; i++) {
+        m_Bits.putLong(base + i * 8, words[i]);
+      }
+    } finally {
+      endWrite(section);
+    }
+  }//writeBits
+
+}//class MappedProcessImage
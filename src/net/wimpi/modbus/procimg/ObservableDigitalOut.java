@@ -37,6 +37,10 @@ import java.util.Observable;
 
 /**
  * Class implementing an observable digital output.
+ * <p>
+ * Observers are notified synchronously, within the setter.
+ * If a {@link ChangeBus} has been set, changes are posted
+ * to the bus instead, and delivered asynchronously.
  *
  * @author Dieter Wimberger
  * @version 1.1 (08/06/2004)
@@ -50,14 +54,33 @@ public class ObservableDigitalOut
    */
   protected boolean m_Set;
 
+  //bus and reference, replaced as a whole
+  private volatile ChangeBus.Binding m_Binding;
+
+  /**
+   * Sets the bus that changes of this digital output are posted
+   * to, instead of notifying the observers.
+   *
+   * @param bus the <tt>ChangeBus</tt>, or null to notify the observers.
+   * @param ref the reference of this digital output in the process image.
+   */
+  public void setChangeBus(ChangeBus bus, int ref) {
+    m_Binding = (bus == null) ? null : new ChangeBus.Binding(bus, ref);
+  }//setChangeBus
+
   public boolean isSet() {
     return m_Set;
   }//isSet
 
   public void set(boolean b) {
     m_Set = b;
-    this.setChanged();
-    notifyObservers();
+    ChangeBus.Binding binding = m_Binding;
+    if (binding != null) {
+      binding.m_Bus.digitalOutChanged(binding.m_Reference);
+    } else {
+      this.setChanged();
+      notifyObservers();
+    }
   }//set
 
   public boolean isValid() {
@@ -37,6 +37,10 @@ import java.util.Observable;
 
 /**
  * Class implementing an observable register.
+ * <p>
+ * Observers are notified synchronously, within the setter.
+ * If a {@link ChangeBus} has been set, changes are posted
+ * to the bus instead, and delivered asynchronously.
  *
  * @author Dieter Wimberger
  * @version 1.1 (08/06/2004)
@@ -50,6 +54,20 @@ public class ObservableRegister
    */
   protected byte[] m_Register = new byte[2];
 
+  //bus and reference, replaced as a whole
+  private volatile ChangeBus.Binding m_Binding;
+
+  /**
+   * Sets the bus that changes of this register are posted to,
+   * instead of notifying the observers.
+   *
+   * @param bus the <tt>ChangeBus</tt>, or null to notify the observers.
+   * @param ref the reference of this register in the process image.
+   */
+  public void setChangeBus(ChangeBus bus, int ref) {
+    m_Binding = (bus == null) ? null : new ChangeBus.Binding(bus, ref);
+  }//setChangeBus
+
   public int getValue() {
     return ((m_Register[0] & 0xff) << 8 | (m_Register[1] & 0xff));
   }//getValue
@@ -61,8 +79,7 @@ public class ObservableRegister
   public final synchronized void setValue(int v) {
     m_Register[0] = (byte) (0xff & (v >> 8));
     m_Register[1] = (byte) (0xff & v);
-    this.setChanged();
-    notifyObservers();
+    changed();
   }//setValue
 
   public final short toShort() {
@@ -72,8 +89,7 @@ public class ObservableRegister
   public final synchronized void setValue(short s) {
     m_Register[0] = (byte) (0xff & (s >> 8));
     m_Register[1] = (byte) (0xff & s);
-    this.setChanged();
-    notifyObservers();
+    changed();
   }//setValue
 
   public final synchronized void setValue(byte[] bytes) {
@@ -82,8 +98,7 @@ public class ObservableRegister
     } else {
       m_Register[0] = bytes[0];
       m_Register[1] = bytes[1];
-      this.setChanged();
-      notifyObservers();
+      changed();
     }
   }//setValue
 
@@ -95,4 +110,18 @@ public class ObservableRegister
     return true;
   }//isValid
 
+  /**
+   * Reports a change of the value, either to the bus
+   * or to the observers.
+   */
+  private void changed() {
+    ChangeBus.Binding binding = m_Binding;
+    if (binding != null) {
+      binding.m_Bus.registerChanged(binding.m_Reference);
+    } else {
+      this.setChanged();
+      notifyObservers();
+    }
+  }//changed
+
 }//class ObservableRegister
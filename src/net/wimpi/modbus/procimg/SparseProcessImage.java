@@ -0,0 +1,512 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+/**
+ * Class implementing a process image for a sparse
+ * address space.
+ * <p>
+ * Only the blocks of references that have been defined
+ * (see {@link #defineRegisters(int, int)} and its siblings)
+ * are stored, in flat arrays, so the memory used scales with
+ * the number of defined references rather than with the
+ * highest reference. The blocks of each section are kept in
+ * a sorted index and looked up by binary search. A range has
+ * to lie within the defined references; a range touching an
+ * undefined reference raises an <tt>IllegalAddressException</tt>,
+ * which is answered with an illegal address exception response.
+ * <p>
+ * Adjacent blocks are merged when they are defined, so that a
+ * range can span them. Access to the values is guarded by a
+ * {@link StripedLock} per section, like in
+ * {@link ArrayProcessImage}.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class SparseProcessImage
+    extends AbstractBulkProcessImage {
+
+  //instance attributes
+  private Section m_DigitalIns = new Section(true);
+  private Section m_DigitalOuts = new Section(true);
+  private Section m_InputRegisters = new Section(false);
+  private Section m_Registers = new Section(false);
+
+  /**
+   * Constructs a new, empty <tt>SparseProcessImage</tt> instance.
+   */
+  public SparseProcessImage() {
+  }//constructor
+
+  /**
+   * Defines a block of digital inputs, initially cleared.
+   *
+   * @param ref the reference of the first digital input.
+   * @param count the number of digital inputs.
+   * @throws IllegalArgumentException if the block overlaps
+   *         defined digital inputs.
+   */
+  public void defineDigitalIns(int ref, int count) {
+    m_DigitalIns.define(ref, count);
+  }//defineDigitalIns
+
+  /**
+   * Defines a block of digital outputs (coils), initially cleared.
+   *
+   * @param ref the reference of the first digital output.
+   * @param count the number of digital outputs.
+   * @throws IllegalArgumentException if the block overlaps
+   *         defined digital outputs.
+   */
+  public void defineDigitalOuts(int ref, int count) {
+    m_DigitalOuts.define(ref, count);
+  }//defineDigitalOuts
+
+  /**
+   * Defines a block of input registers, initially zero.
+   *
+   * @param ref the reference of the first input register.
+   * @param count the number of input registers.
+   * @throws IllegalArgumentException if the block overlaps
+   *         defined input registers.
+   */
+  public void defineInputRegisters(int ref, int count) {
+    m_InputRegisters.define(ref, count);
+  }//defineInputRegisters
+
+  /**
+   * Defines a block of registers, initially zero.
+   *
+   * @param ref the reference of the first register.
+   * @param count the number of registers.
+   * @throws IllegalArgumentException if the block overlaps
+   *         defined registers.
+   */
+  public void defineRegisters(int ref, int count) {
+    m_Registers.define(ref, count);
+  }//defineRegisters
+
+  /**
+   * Returns the number of digital inputs, i.e. the highest
+   * defined reference incremented by one.
+   *
+   * @return the number of digital inputs as <tt>int</tt>.
+   */
+  public int getDigitalInCount() {
+    return m_DigitalIns.getEnd();
+  }//getDigitalInCount
+
+  /**
+   * Sets the state of a digital input.
+   *
+   * @param ref the reference of the digital input.
+   * @param b the state to be set.
+   * @throws IllegalAddressException if the reference is not defined.
+   */
+  public void setDigitalIn(int ref, boolean b)
+      throws IllegalAddressException {
+    m_DigitalIns.setBit(ref, b);
+  }//setDigitalIn
+
+  /**
+   * Sets the states of a range of digital inputs
+   * from the given array, atomically.
+   *
+   * @param ref the reference of the first digital input.
+   * @param count the number of digital inputs.
+   * @param src the array holding the states (8 per byte).
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not defined.
+   */
+  public void setDigitalInBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    m_DigitalIns.setBytes(ref, count, src, off);
+  }//setDigitalInBytes
+
+  public void getDigitalInBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_DigitalIns.getBytes(ref, count, dest, off);
+  }//getDigitalInBytes
+
+  /**
+   * Returns the number of digital outputs, i.e. the highest
+   * defined reference incremented by one.
+   *
+   * @return the number of digital outputs as <tt>int</tt>.
+   */
+  public int getDigitalOutCount() {
+    return m_DigitalOuts.getEnd();
+  }//getDigitalOutCount
+
+  public void getDigitalOutBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_DigitalOuts.getBytes(ref, count, dest, off);
+  }//getDigitalOutBytes
+
+  public void setDigitalOutBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    m_DigitalOuts.setBytes(ref, count, src, off);
+  }//setDigitalOutBytes
+
+  /**
+   * Returns the number of input registers, i.e. the highest
+   * defined reference incremented by one.
+   *
+   * @return the number of input registers as <tt>int</tt>.
+   */
+  public int getInputRegisterCount() {
+    return m_InputRegisters.getEnd();
+  }//getInputRegisterCount
+
+  /**
+   * Sets the value of an input register.
+   *
+   * @param ref the reference of the input register.
+   * @param value the value to be set.
+   * @throws IllegalAddressException if the reference is not defined.
+   */
+  public void setInputRegister(int ref, int value)
+      throws IllegalAddressException {
+    m_InputRegisters.setBytes(ref, 1,
+        new byte[]{(byte) (value >> 8), (byte) value}, 0);
+  }//setInputRegister
+
+  /**
+   * Sets the values of a range of input registers
+   * from the given array, atomically.
+   *
+   * @param ref the reference of the first input register.
+   * @param count the number of input registers.
+   * @param src the array holding the values (2 bytes each).
+   * @param off the offset in the array.
+   * @throws IllegalAddressException if the range is not defined.
+   */
+  public void setInputRegisterBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    m_InputRegisters.setBytes(ref, count, src, off);
+  }//setInputRegisterBytes
+
+  public void getInputRegisterBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_InputRegisters.getBytes(ref, count, dest, off);
+  }//getInputRegisterBytes
+
+  /**
+   * Returns the number of registers, i.e. the highest
+   * defined reference incremented by one.
+   *
+   * @return the number of registers as <tt>int</tt>.
+   */
+  public int getRegisterCount() {
+    return m_Registers.getEnd();
+  }//getRegisterCount
+
+  public void getRegisterBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_Registers.getBytes(ref, count, dest, off);
+  }//getRegisterBytes
+
+  public void setRegisterBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    m_Registers.setBytes(ref, count, src, off);
+  }//setRegisterBytes
+
+  public DigitalIn getDigitalIn(int ref)
+      throws IllegalAddressException {
+    m_DigitalIns.find(ref, 1);
+    return super.getDigitalIn(ref);
+  }//getDigitalIn
+
+  public DigitalIn[] getDigitalInRange(int ref, int count)
+      throws IllegalAddressException {
+    m_DigitalIns.find(ref, count);
+    return super.getDigitalInRange(ref, count);
+  }//getDigitalInRange
+
+  public DigitalOut getDigitalOut(int ref)
+      throws IllegalAddressException {
+    m_DigitalOuts.find(ref, 1);
+    return super.getDigitalOut(ref);
+  }//getDigitalOut
+
+  public DigitalOut[] getDigitalOutRange(int ref, int count)
+      throws IllegalAddressException {
+    m_DigitalOuts.find(ref, count);
+    return super.getDigitalOutRange(ref, count);
+  }//getDigitalOutRange
+
+  public InputRegister getInputRegister(int ref)
+      throws IllegalAddressException {
+    m_InputRegisters.find(ref, 1);
+    return super.getInputRegister(ref);
+  }//getInputRegister
+
+  public InputRegister[] getInputRegisterRange(int ref, int count)
+      throws IllegalAddressException {
+    m_InputRegisters.find(ref, count);
+    return super.getInputRegisterRange(ref, count);
+  }//getInputRegisterRange
+
+  public Register getRegister(int ref)
+      throws IllegalAddressException {
+    m_Registers.find(ref, 1);
+    return super.getRegister(ref);
+  }//getRegister
+
+  public Register[] getRegisterRange(int ref, int count)
+      throws IllegalAddressException {
+    m_Registers.find(ref, count);
+    return super.getRegisterRange(ref, count);
+  }//getRegisterRange
+
+  protected boolean readDigitalIn(int ref) {
+    return m_DigitalIns.getBit(ref);
+  }//readDigitalIn
+
+  protected boolean readDigitalOut(int ref) {
+    return m_DigitalOuts.getBit(ref);
+  }//readDigitalOut
+
+  protected void writeDigitalOut(int ref, boolean b) {
+    m_DigitalOuts.setBit(ref, b);
+  }//writeDigitalOut
+
+  protected short readInputRegister(int ref) {
+    return m_InputRegisters.getWord(ref);
+  }//readInputRegister
+
+  protected short readRegister(int ref) {
+    return m_Registers.getWord(ref);
+  }//readRegister
+
+  protected void writeRegister(int ref, short value) {
+    m_Registers.setBytes(ref, 1, new byte[]{(byte) (value >> 8), (byte) value}, 0);
+  }//writeRegister
+
+  /**
+   * Class implementing a block of defined references.
+   */
+  private static class Block {
+
+    private int m_Start;
+    private int m_Count;
+    private short[] m_Words;
+    private long[] m_Bits;
+
+    public Block(int start, int count, boolean bits) {
+      m_Start = start;
+      m_Count = count;
+      if (bits) {
+        m_Bits = Bits.create(count);
+      } else {
+        m_Words = new short[count];
+      }
+    }//constructor
+
+    public int getEnd() {
+      return m_Start + m_Count;
+    }//getEnd
+
+  }//class Block
+
+  /**
+   * Class implementing the sorted index of the
+   * blocks of one section.
+   * <p>
+   * The index is replaced as a whole when a block
+   * is defined, so lookups do not need to lock it.
+   */
+  private static class Section {
+
+    private boolean m_IsBits;
+    private volatile Block[] m_Blocks = new Block[0];
+    private StripedLock m_Lock = new StripedLock();
+
+    public Section(boolean bits) {
+      m_IsBits = bits;
+    }//constructor
+
+    public int getEnd() {
+      Block[] blocks = m_Blocks;
+      return (blocks.length == 0) ? 0 : blocks[blocks.length - 1].getEnd();
+    }//getEnd
+
+    /**
+     * Returns the block holding the given range.
+     *
+     * @throws IllegalAddressException if the range is not defined.
+     */
+    public Block find(int ref, int count)
+        throws IllegalAddressException {
+      Block[] blocks = m_Blocks;
+      //find the last block starting at or before ref
+      int lo = 0;
+      int hi = blocks.length - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        if (blocks[mid].m_Start <= ref) {
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      if (hi < 0 || count < 0 || ref + count > blocks[hi].getEnd()) {
+        throw new IllegalAddressException();
+      }
+      return blocks[hi];
+    }//find
+
+    /**
+     * Adds a block to the index, merging it with adjacent blocks.
+     */
+    public synchronized void define(int ref, int count) {
+      if (ref < 0 || count < 1 || ref + count > 65536) {
+        throw new IllegalArgumentException("Invalid block " + ref + "+" + count);
+      }
+      Block[] blocks = m_Blocks;
+      int i = 0;
+      while (i < blocks.length && blocks[i].getEnd() < ref) {
+        i++;
+      }
+      //i is the first block that may touch the new one
+      int start = ref;
+      int end = ref + count;
+      int j = i;
+      while (j < blocks.length && blocks[j].m_Start <= end) {
+        if (blocks[j].getEnd() > ref && blocks[j].m_Start < end) {
+          throw new IllegalArgumentException("Block overlaps " + blocks[j].m_Start
+              + "+" + blocks[j].m_Count);
+        }
+        start = Math.min(start, blocks[j].m_Start);
+        end = Math.max(end, blocks[j].getEnd());
+        j++;
+      }
+      Block merged = new Block(start, end - start, m_IsBits);
+      //copy the values of the adjacent blocks, while holding the range
+      m_Lock.lockWrite(start, end - start);
+      try {
+        for (int k = i; k < j; k++) {
+          Block b = blocks[k];
+          int pos = b.m_Start - start;
+          if (m_IsBits) {
+            byte[] tmp = new byte[(b.m_Count + 7) >>> 3];
+            Bits.toBytes(b.m_Bits, 0, b.m_Count, tmp, 0);
+            Bits.fromBytes(merged.m_Bits, pos, b.m_Count, tmp, 0);
+          } else {
+            System.arraycopy(b.m_Words, 0, merged.m_Words, pos, b.m_Count);
+          }
+        }
+        Block[] index = new Block[blocks.length - (j - i) + 1];
+        System.arraycopy(blocks, 0, index, 0, i);
+        index[i] = merged;
+        System.arraycopy(blocks, j, index, i + 1, blocks.length - j);
+        m_Blocks = index;
+      } finally {
+        m_Lock.unlockWrite(start, end - start);
+      }
+    }//define
+
+    public void getBytes(int ref, int count, byte[] dest, int off)
+        throws IllegalAddressException {
+      m_Lock.lockRead(ref, count);
+      try {
+        Block b = find(ref, count);
+        if (m_IsBits) {
+          Bits.toBytes(b.m_Bits, ref - b.m_Start, count, dest, off);
+        } else {
+          for (int i = ref - b.m_Start; i < ref - b.m_Start + count; i++) {
+            short s = b.m_Words[i];
+            dest[off++] = (byte) (s >> 8);
+            dest[off++] = (byte) s;
+          }
+        }
+      } finally {
+        m_Lock.unlockRead(ref, count);
+      }
+    }//getBytes
+
+    public void setBytes(int ref, int count, byte[] src, int off)
+        throws IllegalAddressException {
+      m_Lock.lockWrite(ref, count);
+      try {
+        Block b = find(ref, count);
+        if (m_IsBits) {
+          Bits.fromBytes(b.m_Bits, ref - b.m_Start, count, src, off);
+        } else {
+          for (int i = ref - b.m_Start; i < ref - b.m_Start + count; i++, off += 2) {
+            b.m_Words[i] = (short) ((src[off] << 8) | (src[off + 1] & 0xff));
+          }
+        }
+      } finally {
+        m_Lock.unlockWrite(ref, count);
+      }
+    }//setBytes
+
+    public boolean getBit(int ref)
+        throws IllegalAddressException {
+      m_Lock.lockRead(ref, 1);
+      try {
+        Block b = find(ref, 1);
+        return Bits.get(b.m_Bits, ref - b.m_Start);
+      } finally {
+        m_Lock.unlockRead(ref, 1);
+      }
+    }//getBit
+
+    public void setBit(int ref, boolean v)
+        throws IllegalAddressException {
+      m_Lock.lockWrite(ref, 1);
+      try {
+        Block b = find(ref, 1);
+        Bits.set(b.m_Bits, ref - b.m_Start, v);
+      } finally {
+        m_Lock.unlockWrite(ref, 1);
+      }
+    }//setBit
+
+    public short getWord(int ref)
+        throws IllegalAddressException {
+      m_Lock.lockRead(ref, 1);
+      try {
+        Block b = find(ref, 1);
+        return b.m_Words[ref - b.m_Start];
+      } finally {
+        m_Lock.unlockRead(ref, 1);
+      }
+    }//getWord
+
+  }//class Section
+
+}//class SparseProcessImage
@@ -0,0 +1,193 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Class implementing a lock for ranges of references,
+ * striped by address block.
+ * <p>
+ * The references are divided into blocks of a fixed size,
+ * and each block is guarded by one of a fixed number of
+ * read/write locks (block <i>b</i> by lock <i>b mod stripes</i>).
+ * Locking a range acquires the locks of all blocks it covers,
+ * always in ascending order, so that ranges can be locked
+ * without the risk of a deadlock. Ranges in unrelated blocks
+ * can be accessed in parallel, and any number of readers can
+ * hold the same range.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class StripedLock {
+
+  /**
+   * Defines the default number of stripes.
+   */
+  public static final int DEFAULT_STRIPES = 16;
+
+  /**
+   * Defines the default size of a block, in references.
+   * As a multiple of 64 it never splits a word of a bit set.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 64;
+
+  //instance attributes
+  private ReadWriteLock[] m_Locks;
+  private int m_BlockSize;
+
+  /**
+   * Constructs a new <tt>StripedLock</tt> instance
+   * with the default number of stripes and block size.
+   */
+  public StripedLock() {
+    this(DEFAULT_STRIPES, DEFAULT_BLOCK_SIZE);
+  }//constructor
+
+  /**
+   * Constructs a new <tt>StripedLock</tt> instance.
+   *
+   * @param stripes the number of locks.
+   * @param blocksize the number of references per block.
+   */
+  public StripedLock(int stripes, int blocksize) {
+    if (stripes < 1 || blocksize < 1) {
+      throw new IllegalArgumentException();
+    }
+    m_Locks = new ReadWriteLock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      m_Locks[i] = new ReentrantReadWriteLock();
+    }
+    m_BlockSize = blocksize;
+  }//constructor
+
+  /**
+   * Returns the number of references per block.
+   *
+   * @return the block size.
+   */
+  public int getBlockSize() {
+    return m_BlockSize;
+  }//getBlockSize
+
+  /**
+   * Acquires the given range for reading.
+   *
+   * @param ref the first reference of the range.
+   * @param count the number of references.
+   */
+  public void lockRead(int ref, int count) {
+    int first = ref / m_BlockSize;
+    int n = stripes(ref, count);
+    for (int i = 0; i < m_Locks.length; i++) {
+      if (covers(first, n, i)) {
+        m_Locks[i].readLock().lock();
+      }
+    }
+  }//lockRead
+
+  /**
+   * Releases the given range after reading.
+   *
+   * @param ref the first reference of the range.
+   * @param count the number of references.
+   */
+  public void unlockRead(int ref, int count) {
+    int first = ref / m_BlockSize;
+    int n = stripes(ref, count);
+    for (int i = m_Locks.length - 1; i >= 0; i--) {
+      if (covers(first, n, i)) {
+        m_Locks[i].readLock().unlock();
+      }
+    }
+  }//unlockRead
+
+  /**
+   * Acquires the given range for writing.
+   *
+   * @param ref the first reference of the range.
+   * @param count the number of references.
+   */
+  public void lockWrite(int ref, int count) {
+    int first = ref / m_BlockSize;
+    int n = stripes(ref, count);
+    for (int i = 0; i < m_Locks.length; i++) {
+      if (covers(first, n, i)) {
+        m_Locks[i].writeLock().lock();
+      }
+    }
+  }//lockWrite
+
+  /**
+   * Releases the given range after writing.
+   *
+   * @param ref the first reference of the range.
+   * @param count the number of references.
+   */
+  public void unlockWrite(int ref, int count) {
+    int first = ref / m_BlockSize;
+    int n = stripes(ref, count);
+    for (int i = m_Locks.length - 1; i >= 0; i--) {
+      if (covers(first, n, i)) {
+        m_Locks[i].writeLock().unlock();
+      }
+    }
+  }//unlockWrite
+
+  /**
+   * Returns the number of stripes covered by the given range.
+   */
+  private int stripes(int ref, int count) {
+    if (count < 1) {
+      count = 1;
+    }
+    int blocks = (ref + count - 1) / m_BlockSize - ref / m_BlockSize + 1;
+    return Math.min(blocks, m_Locks.length);
+  }//stripes
+
+  /**
+   * Tests if the given stripe is one of the <tt>n</tt> stripes
+   * following the stripe of the given block (cyclically).
+   */
+  private boolean covers(int block, int n, int stripe) {
+    int d = stripe - block % m_Locks.length;
+    if (d < 0) {
+      d += m_Locks.length;
+    }
+    return d < n;
+  }//covers
+
+}//class StripedLock
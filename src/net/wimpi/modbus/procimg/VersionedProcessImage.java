@@ -0,0 +1,624 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.procimg;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class implementing a process image that keeps
+ * versioned, immutable snapshots of its data.
+ * <p>
+ * Producers update the image in batches (see {@link #begin()}):
+ * all changes of a batch become visible at once when it is
+ * committed, under a new version number. Readers always work
+ * on the snapshot that was current when they started, so a scan
+ * never mixes values of different batches, and they never block
+ * or are blocked by writers.
+ * <p>
+ * The data is divided into pages of {@link #PAGE_SIZE} references.
+ * A batch copies only the pages it changes, and every page
+ * remembers the version that last changed it, so that a
+ * client can tell if a range has changed between two scans
+ * (see {@link Snapshot#getVersion(int, int, int)}).
+ * <p>
+ * Writes received from the master are committed as batches
+ * of their own. Batches are serialized; a batch has to be
+ * committed or aborted by the thread that started it.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class VersionedProcessImage
+    extends AbstractBulkProcessImage {
+
+  /**
+   * Defines the section of the digital inputs.
+   */
+  public static final int DIGITAL_INPUTS = 0;
+
+  /**
+   * Defines the section of the digital outputs (coils).
+   */
+  public static final int DIGITAL_OUTPUTS = 1;
+
+  /**
+   * Defines the section of the input registers.
+   */
+  public static final int INPUT_REGISTERS = 2;
+
+  /**
+   * Defines the section of the registers.
+   */
+  public static final int REGISTERS = 3;
+
+  /**
+   * Defines the number of references per page.
+   */
+  public static final int PAGE_SIZE = 256;
+
+  private static final int PAGE_SHIFT = 8;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+  //64 bit words per page of a bit section
+  private static final int WORD_SHIFT = PAGE_SHIFT - 6;
+  private static final int WORD_MASK = (1 << WORD_SHIFT) - 1;
+
+  //instance attributes
+  private int[] m_Counts = new int[4];
+  private volatile Snapshot m_Current;
+  private ReentrantLock m_WriteLock = new ReentrantLock();
+
+  /**
+   * Constructs a new <tt>VersionedProcessImage</tt> instance,
+   * with all values cleared, at version 0.
+   *
+   * @param dins the number of digital inputs.
+   * @param douts the number of digital outputs (coils).
+   * @param inregs the number of input registers.
+   * @param regs the number of registers.
+   */
+  public VersionedProcessImage(int dins, int douts, int inregs, int regs) {
+    m_Counts[DIGITAL_INPUTS] = dins;
+    m_Counts[DIGITAL_OUTPUTS] = douts;
+    m_Counts[INPUT_REGISTERS] = inregs;
+    m_Counts[REGISTERS] = regs;
+    Object[][] pages = new Object[4][];
+    long[][] versions = new long[4][];
+    for (int i = 0; i < 4; i++) {
+      if (m_Counts[i] < 0) {
+        throw new IllegalArgumentException();
+      }
+      int n = (m_Counts[i] + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+      pages[i] = new Object[n];
+      versions[i] = new long[n];
+      //all pages share one empty page until they are changed
+      Object empty = (i < INPUT_REGISTERS)
+          ? (Object) new long[1 << WORD_SHIFT]
+          : (Object) new short[PAGE_SIZE];
+      for (int j = 0; j < n; j++) {
+        pages[i][j] = empty;
+      }
+    }
+    m_Current = new Snapshot(0, pages, versions);
+  }//constructor
+
+  /**
+   * Returns the snapshot of the last committed version.
+   * <p>
+   * The snapshot is immutable; it can be used for
+   * any number of consistent reads.
+   *
+   * @return the current <tt>Snapshot</tt>.
+   */
+  public Snapshot getSnapshot() {
+    return m_Current;
+  }//getSnapshot
+
+  /**
+   * Returns the last committed version.
+   *
+   * @return the version as <tt>long</tt>.
+   */
+  public long getVersion() {
+    return m_Current.getVersion();
+  }//getVersion
+
+  /**
+   * Starts a new batch of changes, waiting until
+   * a batch started by another thread has been finished.
+   *
+   * @return the new <tt>Batch</tt>.
+   */
+  public Batch begin() {
+    m_WriteLock.lock();
+    return new Batch(m_Current);
+  }//begin
+
+  public int getDigitalInCount() {
+    return m_Counts[DIGITAL_INPUTS];
+  }//getDigitalInCount
+
+  public void getDigitalInBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_Current.getDigitalInBytes(ref, count, dest, off);
+  }//getDigitalInBytes
+
+  public int getDigitalOutCount() {
+    return m_Counts[DIGITAL_OUTPUTS];
+  }//getDigitalOutCount
+
+  public void getDigitalOutBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_Current.getDigitalOutBytes(ref, count, dest, off);
+  }//getDigitalOutBytes
+
+  public void setDigitalOutBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Counts[DIGITAL_OUTPUTS]);
+    Batch b = begin();
+    try {
+      b.setDigitalOutBytes(ref, count, src, off);
+      b.commit();
+    } finally {
+      b.abort();
+    }
+  }//setDigitalOutBytes
+
+  public int getInputRegisterCount() {
+    return m_Counts[INPUT_REGISTERS];
+  }//getInputRegisterCount
+
+  public void getInputRegisterBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_Current.getInputRegisterBytes(ref, count, dest, off);
+  }//getInputRegisterBytes
+
+  public int getRegisterCount() {
+    return m_Counts[REGISTERS];
+  }//getRegisterCount
+
+  public void getRegisterBytes(int ref, int count, byte[] dest, int off)
+      throws IllegalAddressException {
+    m_Current.getRegisterBytes(ref, count, dest, off);
+  }//getRegisterBytes
+
+  public void setRegisterBytes(int ref, int count, byte[] src, int off)
+      throws IllegalAddressException {
+    checkRange(ref, count, m_Counts[REGISTERS]);
+    Batch b = begin();
+    try {
+      b.setRegisterBytes(ref, count, src, off);
+      b.commit();
+    } finally {
+      b.abort();
+    }
+  }//setRegisterBytes
+
+  protected boolean readDigitalIn(int ref) {
+    return m_Current.readDigitalIn(ref);
+  }//readDigitalIn
+
+  protected boolean readDigitalOut(int ref) {
+    return m_Current.readDigitalOut(ref);
+  }//readDigitalOut
+
+  protected void writeDigitalOut(int ref, boolean b) {
+    setDigitalOutBytes(ref, 1, new byte[]{(byte) (b ? 0x80 : 0)}, 0);
+  }//writeDigitalOut
+
+  protected short readInputRegister(int ref) {
+    return m_Current.readInputRegister(ref);
+  }//readInputRegister
+
+  protected short readRegister(int ref) {
+    return m_Current.readRegister(ref);
+  }//readRegister
+
+  protected void writeRegister(int ref, short value) {
+    setRegisterBytes(ref, 1, new byte[]{(byte) (value >> 8), (byte) value}, 0);
+  }//writeRegister
+
+  /**
+   * Copies a range of register values from the given pages
+   * into a byte array, in big endian order.
+   */
+  private static void toBytes(Object[] pages, int ref, int count,
+                              byte[] dest, int off) {
+    for (int i = ref; i < ref + count; i++) {
+      short s = ((short[]) pages[i >>> PAGE_SHIFT])[i & PAGE_MASK];
+      dest[off++] = (byte) (s >> 8);
+      dest[off++] = (byte) s;
+    }
+  }//toBytes
+
+  /**
+   * Copies the 64 bit words covering a range of bits
+   * from the given pages.
+   */
+  private static long[] words(Object[] pages, int ref, int count) {
+    int first = ref >>> 6;
+    long[] words = new long[((ref + count - 1) >>> 6) - first + 1];
+    for (int i = 0; i < words.length; i++) {
+      int w = first + i;
+      words[i] = ((long[]) pages[w >>> WORD_SHIFT])[w & WORD_MASK];
+    }
+    return words;
+  }//words
+
+  /**
+   * Class implementing an immutable snapshot of the
+   * image at a given version.
+   * <p>
+   * Write access to a snapshot throws an
+   * <tt>IllegalStateException</tt>.
+   */
+  public class Snapshot
+      extends AbstractBulkProcessImage {
+
+    private long m_Version;
+    private Object[][] m_Pages;
+    private long[][] m_Versions;
+
+    Snapshot(long version, Object[][] pages, long[][] versions) {
+      m_Version = version;
+      m_Pages = pages;
+      m_Versions = versions;
+    }//constructor
+
+    /**
+     * Returns the version of this snapshot.
+     *
+     * @return the version as <tt>long</tt>.
+     */
+    public long getVersion() {
+      return m_Version;
+    }//getVersion
+
+    /**
+     * Returns the version that last changed the given range.
+     * <p>
+     * The version is tracked per page, so the range may have
+     * been unchanged if it shares a page with changed values;
+     * if the version is the same for two snapshots, the range
+     * has not changed in between.
+     *
+     * @param section the section, e.g. {@link #REGISTERS}.
+     * @param ref the first reference of the range.
+     * @param count the number of references.
+     * @return the version as <tt>long</tt>.
+     * @throws IllegalAddressException if the range is not valid.
+     */
+    public long getVersion(int section, int ref, int count)
+        throws IllegalAddressException {
+      checkRange(ref, count, m_Counts[section]);
+      long v = 0;
+      if (count > 0) {
+        long[] versions = m_Versions[section];
+        for (int p = ref >>> PAGE_SHIFT; p <= (ref + count - 1) >>> PAGE_SHIFT; p++) {
+          v = Math.max(v, versions[p]);
+        }
+      }
+      return v;
+    }//getVersion
+
+    public int getDigitalInCount() {
+      return m_Counts[DIGITAL_INPUTS];
+    }//getDigitalInCount
+
+    public void getDigitalInBytes(int ref, int count, byte[] dest, int off)
+        throws IllegalAddressException {
+      checkRange(ref, count, m_Counts[DIGITAL_INPUTS]);
+      if (count > 0) {
+        Bits.toBytes(words(m_Pages[DIGITAL_INPUTS], ref, count), ref & 63, count, dest, off);
+      }
+    }//getDigitalInBytes
+
+    public int getDigitalOutCount() {
+      return m_Counts[DIGITAL_OUTPUTS];
+    }//getDigitalOutCount
+
+    public void getDigitalOutBytes(int ref, int count, byte[] dest, int off)
+        throws IllegalAddressException {
+      checkRange(ref, count, m_Counts[DIGITAL_OUTPUTS]);
+      if (count > 0) {
+        Bits.toBytes(words(m_Pages[DIGITAL_OUTPUTS], ref, count), ref & 63, count, dest, off);
+      }
+    }//getDigitalOutBytes
+
+    public void setDigitalOutBytes(int ref, int count, byte[] src, int off) {
+      throw new IllegalStateException("Snapshot is read only.");
+    }//setDigitalOutBytes
+
+    public int getInputRegisterCount() {
+      return m_Counts[INPUT_REGISTERS];
+    }//getInputRegisterCount
+
+    public void getInputRegisterBytes(int ref, int count, byte[] dest, int off)
+        throws IllegalAddressException {
+      checkRange(ref, count, m_Counts[INPUT_REGISTERS]);
+      toBytes(m_Pages[INPUT_REGISTERS], ref, count, dest, off);
+    }//getInputRegisterBytes
+
+    public int getRegisterCount() {
+      return m_Counts[REGISTERS];
+    }//getRegisterCount
+
+    public void getRegisterBytes(int ref, int count, byte[] dest, int off)
+        throws IllegalAddressException {
+      checkRange(ref, count, m_Counts[REGISTERS]);
+      toBytes(m_Pages[REGISTERS], ref, count, dest, off);
+    }//getRegisterBytes
+
+    public void setRegisterBytes(int ref, int count, byte[] src, int off) {
+      throw new IllegalStateException("Snapshot is read only.");
+    }//setRegisterBytes
+
+    protected boolean readDigitalIn(int ref) {
+      return Bits.get(words(m_Pages[DIGITAL_INPUTS], ref, 1), ref & 63);
+    }//readDigitalIn
+
+    protected boolean readDigitalOut(int ref) {
+      return Bits.get(words(m_Pages[DIGITAL_OUTPUTS], ref, 1), ref & 63);
+    }//readDigitalOut
+
+    protected void writeDigitalOut(int ref, boolean b) {
+      throw new IllegalStateException("Snapshot is read only.");
+    }//writeDigitalOut
+
+    protected short readInputRegister(int ref) {
+      return ((short[]) m_Pages[INPUT_REGISTERS][ref >>> PAGE_SHIFT])[ref & PAGE_MASK];
+    }//readInputRegister
+
+    protected short readRegister(int ref) {
+      return ((short[]) m_Pages[REGISTERS][ref >>> PAGE_SHIFT])[ref & PAGE_MASK];
+    }//readRegister
+
+    protected void writeRegister(int ref, short value) {
+      throw new IllegalStateException("Snapshot is read only.");
+    }//writeRegister
+
+  }//class Snapshot
+
+  /**
+   * Class implementing a batch of changes to the image,
+   * which become visible at once on {@link #commit()}.
+   * <p>
+   * Values read from the image do not reflect the changes
+   * of a batch before it has been committed.
+   */
+  public class Batch {
+
+    private long m_Version;
+    private Object[][] m_Pages = new Object[4][];
+    private long[][] m_Versions = new long[4][];
+    private boolean m_Done;
+
+    Batch(Snapshot base) {
+      m_Version = base.getVersion() + 1;
+      for (int i = 0; i < 4; i++) {
+        m_Pages[i] = base.m_Pages[i].clone();
+        m_Versions[i] = base.m_Versions[i].clone();
+      }
+    }//constructor
+
+    /**
+     * Returns the version the batch will be committed as.
+     *
+     * @return the version as <tt>long</tt>.
+     */
+    public long getVersion() {
+      return m_Version;
+    }//getVersion
+
+    /**
+     * Sets the state of a digital input.
+     *
+     * @param ref the reference of the digital input.
+     * @param b the state to be set.
+     * @throws IllegalAddressException if the reference is not valid.
+     */
+    public void setDigitalIn(int ref, boolean b)
+        throws IllegalAddressException {
+      setDigitalInBytes(ref, 1, new byte[]{(byte) (b ? 0x80 : 0)}, 0);
+    }//setDigitalIn
+
+    /**
+     * Sets the states of a range of digital inputs.
+     *
+     * @param ref the reference of the first digital input.
+     * @param count the number of digital inputs.
+     * @param src the array holding the states (8 per byte).
+     * @param off the offset in the array.
+     * @throws IllegalAddressException if the range is not valid.
+     */
+    public void setDigitalInBytes(int ref, int count, byte[] src, int off)
+        throws IllegalAddressException {
+      setBits(DIGITAL_INPUTS, ref, count, src, off);
+    }//setDigitalInBytes
+
+    /**
+     * Sets the state of a digital output.
+     *
+     * @param ref the reference of the digital output.
+     * @param b the state to be set.
+     * @throws IllegalAddressException if the reference is not valid.
+     */
+    public void setDigitalOut(int ref, boolean b)
+        throws IllegalAddressException {
+      setDigitalOutBytes(ref, 1, new byte[]{(byte) (b ? 0x80 : 0)}, 0);
+    }//setDigitalOut
+
+    /**
+     * Sets the states of a range of digital outputs.
+     *
+     * @param ref the reference of the first digital output.
+     * @param count the number of digital outputs.
+     * @param src the array holding the states (8 per byte).
+     * @param off the offset in the array.
+     * @throws IllegalAddressException if the range is not valid.
+     */
+    public void setDigitalOutBytes(int ref, int count, byte[] src, int off)
+        throws IllegalAddressException {
+      setBits(DIGITAL_OUTPUTS, ref, count, src, off);
+    }//setDigitalOutBytes
+
+    /**
+     * Sets the value of an input register.
+     *
+     * @param ref the reference of the input register.
+     * @param value the value to be set.
+     * @throws IllegalAddressException if the reference is not valid.
+     */
+    public void setInputRegister(int ref, int value)
+        throws IllegalAddressException {
+      setInputRegisterBytes(ref, 1, new byte[]{(byte) (value >> 8), (byte) value}, 0);
+    }//setInputRegister
+
+    /**
+     * Sets the values of a range of input registers.
+     *
+     * @param ref the reference of the first input register.
+     * @param count the number of input registers.
+     * @param src the array holding the values (2 bytes each).
+     * @param off the offset in the array.
+     * @throws IllegalAddressException if the range is not valid.
+     */
+    public void setInputRegisterBytes(int ref, int count, byte[] src, int off)
+        throws IllegalAddressException {
+      setWords(INPUT_REGISTERS, ref, count, src, off);
+    }//setInputRegisterBytes
+
+    /**
+     * Sets the value of a register.
+     *
+     * @param ref the reference of the register.
+     * @param value the value to be set.
+     * @throws IllegalAddressException if the reference is not valid.
+     */
+    public void setRegister(int ref, int value)
+        throws IllegalAddressException {
+      setRegisterBytes(ref, 1, new byte[]{(byte) (value >> 8), (byte) value}, 0);
+    }//setRegister
+
+    /**
+     * Sets the values of a range of registers.
+     *
+     * @param ref the reference of the first register.
+     * @param count the number of registers.
+     * @param src the array holding the values (2 bytes each).
+     * @param off the offset in the array.
+     * @throws IllegalAddressException if the range is not valid.
+     */
+    public void setRegisterBytes(int ref, int count, byte[] src, int off)
+        throws IllegalAddressException {
+      setWords(REGISTERS, ref, count, src, off);
+    }//setRegisterBytes
+
+    /**
+     * Commits the changes of this batch as a new version,
+     * which becomes the current snapshot of the image.
+     *
+     * @return the committed version.
+     * @throws IllegalStateException if the batch has already
+     *         been committed or aborted.
+     */
+    public long commit() {
+      checkOpen();
+      m_Current = new Snapshot(m_Version, m_Pages, m_Versions);
+      m_Done = true;
+      m_WriteLock.unlock();
+      return m_Version;
+    }//commit
+
+    /**
+     * Discards the changes of this batch.
+     * Does nothing if the batch has already been
+     * committed or aborted.
+     */
+    public void abort() {
+      if (!m_Done) {
+        m_Done = true;
+        m_WriteLock.unlock();
+      }
+    }//abort
+
+    private void checkOpen() {
+      if (m_Done) {
+        throw new IllegalStateException("Batch has been finished.");
+      }
+    }//checkOpen
+
+    /**
+     * Returns the given page for writing,
+     * copying it on the first change.
+     */
+    private Object page(int section, int p) {
+      if (m_Versions[section][p] != m_Version) {
+        Object page = m_Pages[section][p];
+        m_Pages[section][p] = (page instanceof short[])
+            ? (Object) ((short[]) page).clone()
+            : (Object) ((long[]) page).clone();
+        m_Versions[section][p] = m_Version;
+      }
+      return m_Pages[section][p];
+    }//page
+
+    private void setWords(int section, int ref, int count, byte[] src, int off)
+        throws IllegalAddressException {
+      checkOpen();
+      checkRange(ref, count, m_Counts[section]);
+      for (int i = ref; i < ref + count; i++, off += 2) {
+        ((short[]) page(section, i >>> PAGE_SHIFT))[i & PAGE_MASK] =
+            (short) ((src[off] << 8) | (src[off + 1] & 0xff));
+      }
+    }//setWords
+
+    private void setBits(int section, int ref, int count, byte[] src, int off)
+        throws IllegalAddressException {
+      checkOpen();
+      checkRange(ref, count, m_Counts[section]);
+      if (count == 0) {
+        return;
+      }
+      long[] words = words(m_Pages[section], ref, count);
+      Bits.fromBytes(words, ref & 63, count, src, off);
+      int first = ref >>> 6;
+      for (int i = 0; i < words.length; i++) {
+        int w = first + i;
+        ((long[]) page(section, w >>> WORD_SHIFT))[w & WORD_MASK] = words[i];
+      }
+    }//setBits
+
+  }//class Batch
+
+}//class VersionedProcessImage
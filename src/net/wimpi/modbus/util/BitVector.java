@@ -33,10 +33,16 @@
  ***/
 package net.wimpi.modbus.util;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 
 /**
  * Class that implements a collection for
  * bits, storing them packed into bytes.
+ * <p>
+ * Besides single bit access, the bulk operations for ranges,
+ * counting, searching and comparing work on 64 bits at a time.
  *
  * @author Dieter Wimberger
  * @version 1.1 (08/06/2004)
@@ -185,6 +191,277 @@ public final class BitVector {
     return m_Data.length;
   }//byteSize
 
+  /**
+   * Returns the number of bits that are set in this
+   * <tt>BitVector</tt>.
+   *
+   * @return the number of set bits.
+   */
+  public final int cardinality() {
+    //the count does not depend on the bit order
+    int count = 0;
+    int full = m_Size >>> 6;
+    for (int off = 0; off < full << 3; off += 8) {
+      count += Long.bitCount((long) c_Words.get(m_Data, off));
+    }
+    if ((m_Size & 63) != 0) {
+      count += Long.bitCount(rawWord(full) & rawMask(full));
+    }
+    return count;
+  }//cardinality
+
+  /**
+   * Returns the index of the first bit that is set,
+   * at or after the given index.
+   *
+   * @param from the index to start searching from.
+   * @return the index of the next set bit, or -1 if there is none.
+   */
+  public final int nextSetBit(int from) {
+    if (from < 0) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (from >= m_Size) {
+      return -1;
+    }
+    //search the words as they are stored, saves reordering the bits
+    int w = from >>> 6;
+    long v = rawWord(w) & rawStartMask(from & 63);
+    int words = (m_Size + 63) >>> 6;
+    while (true) {
+      if (v != 0) {
+        int index = (w << 6) + rawLowestBit(v);
+        return (index < m_Size) ? index : -1;
+      }
+      if (++w == words) {
+        return -1;
+      }
+      v = rawWord(w);
+    }
+  }//nextSetBit
+
+  /**
+   * Returns the index of the first bit that is not set,
+   * at or after the given index.
+   *
+   * @param from the index to start searching from.
+   * @return the index of the next clear bit, or -1 if there is none.
+   */
+  public final int nextClearBit(int from) {
+    if (from < 0) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (from >= m_Size) {
+      return -1;
+    }
+    //search the words as they are stored, saves reordering the bits
+    int w = from >>> 6;
+    long v = ~rawWord(w) & rawStartMask(from & 63);
+    int words = (m_Size + 63) >>> 6;
+    while (true) {
+      if (v != 0) {
+        int index = (w << 6) + rawLowestBit(v);
+        return (index < m_Size) ? index : -1;
+      }
+      if (++w == words) {
+        return -1;
+      }
+      v = ~rawWord(w);
+    }
+  }//nextClearBit
+
+  /**
+   * Copies a range of bits into the given <tt>long[]</tt>,
+   * 64 bits per element, the first bit in the lowest bit
+   * of the first element.
+   *
+   * @param from the index of the first bit to be copied.
+   * @param dest the array to copy the bits to.
+   * @param destoff the index of the first element in the array.
+   * @param count the number of bits to be copied.
+   *
+   * @throws IndexOutOfBoundsException if the range is out of bounds.
+   */
+  public final void getBits(int from, long[] dest, int destoff, int count) {
+    checkRange(from, count);
+    for (int i = 0; i < count; i += 64) {
+      int n = Math.min(64, count - i);
+      long v = bits(from + i);
+      dest[destoff + (i >>> 6)] = (n == 64) ? v : v & ((1L << n) - 1);
+    }
+  }//getBits
+
+  /**
+   * Sets a range of bits from the given <tt>long[]</tt>,
+   * 64 bits per element, the first bit in the lowest bit
+   * of the first element.
+   *
+   * @param from the index of the first bit to be set.
+   * @param src the array holding the bits.
+   * @param srcoff the index of the first element in the array.
+   * @param count the number of bits to be set.
+   *
+   * @throws IndexOutOfBoundsException if the range is out of bounds.
+   */
+  public final void setBits(int from, long[] src, int srcoff, int count) {
+    checkRange(from, count);
+    for (int i = 0; i < count; i += 64) {
+      putBits(from + i, src[srcoff + (i >>> 6)], Math.min(64, count - i));
+    }
+  }//setBits
+
+  /**
+   * Copies a range of bits into the given <tt>boolean[]</tt>.
+   *
+   * @param from the index of the first bit to be copied.
+   * @param dest the array to copy the bits to.
+   * @param destoff the index of the first element in the array.
+   * @param count the number of bits to be copied.
+   *
+   * @throws IndexOutOfBoundsException if the range is out of bounds.
+   */
+  public final void getBits(int from, boolean[] dest, int destoff, int count) {
+    checkRange(from, count);
+    for (int i = 0; i < count; i += 64) {
+      int n = Math.min(64, count - i);
+      long v = bits(from + i);
+      for (int k = 0; k < n; k++) {
+        dest[destoff + i + k] = ((v >>> k) & 1) != 0;
+      }
+    }
+  }//getBits
+
+  /**
+   * Sets a range of bits from the given <tt>boolean[]</tt>.
+   *
+   * @param from the index of the first bit to be set.
+   * @param src the array holding the bits.
+   * @param srcoff the index of the first element in the array.
+   * @param count the number of bits to be set.
+   *
+   * @throws IndexOutOfBoundsException if the range is out of bounds.
+   */
+  public final void setBits(int from, boolean[] src, int srcoff, int count) {
+    checkRange(from, count);
+    for (int i = 0; i < count; i += 64) {
+      int n = Math.min(64, count - i);
+      long v = 0;
+      for (int k = 0; k < n; k++) {
+        if (src[srcoff + i + k]) {
+          v |= 1L << k;
+        }
+      }
+      putBits(from + i, v, n);
+    }
+  }//setBits
+
+  /**
+   * Sets a range of bits from another <tt>BitVector</tt>,
+   * which may use a different bit order. The ranges may
+   * overlap if both are in this <tt>BitVector</tt>.
+   *
+   * @param from the index of the first bit to be set.
+   * @param src the <tt>BitVector</tt> holding the bits.
+   * @param srcfrom the index of the first bit in <tt>src</tt>.
+   * @param count the number of bits to be set.
+   *
+   * @throws IndexOutOfBoundsException if a range is out of bounds.
+   */
+  public final void setBits(int from, BitVector src, int srcfrom, int count) {
+    checkRange(from, count);
+    src.checkRange(srcfrom, count);
+    if (src == this && srcfrom < from) {
+      //copy backwards, so that overlapping bits are read before written
+      for (int i = ((count - 1) >>> 6) << 6; i >= 0; i -= 64) {
+        putBits(from + i, bits(srcfrom + i), Math.min(64, count - i));
+      }
+    } else {
+      for (int i = 0; i < count; i += 64) {
+        putBits(from + i, src.bits(srcfrom + i), Math.min(64, count - i));
+      }
+    }
+  }//setBits
+
+  /**
+   * Flips all bits of this <tt>BitVector</tt> that are
+   * set in the given one, i.e. performs an exclusive or.
+   *
+   * @param other a <tt>BitVector</tt> of the same size.
+   *
+   * @throws IllegalArgumentException if the sizes differ.
+   */
+  public final void xor(BitVector other) {
+    if (other.m_Size != m_Size) {
+      throw new IllegalArgumentException();
+    }
+    other.checkRange(0, m_Size);
+    int words = (m_Size + 63) >>> 6;
+    if (other.m_Reverse == m_Reverse) {
+      int full = m_Size >>> 6;
+      for (int off = 0; off < full << 3; off += 8) {
+        c_Words.set(m_Data, off,
+            (long) c_Words.get(m_Data, off) ^ (long) c_Words.get(other.m_Data, off));
+      }
+      if (full < words) {
+        setRawWord(full, rawWord(full) ^ (other.rawWord(full) & rawMask(full)));
+      }
+    } else {
+      for (int w = 0; w < words; w++) {
+        setWord(w, word(w) ^ (other.word(w) & wordMask(w)));
+      }
+    }
+  }//xor
+
+  /**
+   * Compares this <tt>BitVector</tt> with the given one,
+   * setting the bits that differ in <tt>changes</tt>, and
+   * clearing all others. The changed indices can then be
+   * iterated with {@link #nextSetBit(int)}.
+   *
+   * @param other a <tt>BitVector</tt> of the same size.
+   * @param changes the <tt>BitVector</tt> to store the differences to;
+   *        its size has to be at least the size of this one.
+   * @return the number of bits that differ.
+   *
+   * @throws IllegalArgumentException if the sizes differ.
+   * @throws IndexOutOfBoundsException if <tt>changes</tt> is too small.
+   */
+  public final int diff(BitVector other, BitVector changes) {
+    if (other.m_Size != m_Size) {
+      throw new IllegalArgumentException();
+    }
+    other.checkRange(0, m_Size);
+    changes.checkRange(0, m_Size);
+    int count = 0;
+    int words = (m_Size + 63) >>> 6;
+    if (other.m_Reverse == m_Reverse && changes.m_Reverse == m_Reverse) {
+      //same bit order, the words can be compared as they are stored
+      int full = m_Size >>> 6;
+      byte[] a = m_Data;
+      byte[] b = other.m_Data;
+      byte[] c = changes.m_Data;
+      for (int off = 0; off < full << 3; off += 8) {
+        long d = (long) c_Words.get(a, off) ^ (long) c_Words.get(b, off);
+        c_Words.set(c, off, d);
+        count += Long.bitCount(d);
+      }
+      if (full < words) {
+        long mask = rawMask(full);
+        long d = (rawWord(full) ^ other.rawWord(full)) & mask;
+        changes.setRawWord(full, (changes.rawWord(full) & ~mask) | d);
+        count += Long.bitCount(d);
+      }
+    } else {
+      for (int w = 0; w < words; w++) {
+        long mask = wordMask(w);
+        long d = (word(w) ^ other.word(w)) & mask;
+        changes.setWord(w, (changes.word(w) & ~mask) | d);
+        count += Long.bitCount(d);
+      }
+    }
+    return count;
+  }//diff
+
   /**
    * Returns a <tt>String</tt> representing the
    * contents of the bit collection in a way that
@@ -297,6 +574,147 @@ public final class BitVector {
   }
   */
 
+  /**
+   * Checks that a range of bits lies within the size
+   * of this <tt>BitVector</tt>.
+   */
+  private final void checkRange(int from, int count) {
+    if (from < 0 || count < 0 || from + count > m_Size
+        || from + count > m_Data.length * 8) {
+      throw new IndexOutOfBoundsException();
+    }
+  }//checkRange
+
+  /**
+   * Returns the mask of the bits of the given word
+   * that lie within the size of this <tt>BitVector</tt>.
+   */
+  private final long wordMask(int w) {
+    int n = m_Size - (w << 6);
+    return (n >= 64) ? -1L : (1L << n) - 1;
+  }//wordMask
+
+  /**
+   * Returns the mask of {@link #wordMask(int)} in the
+   * bit order the word is stored in.
+   */
+  private final long rawMask(int w) {
+    long mask = wordMask(w);
+    return (m_Reverse) ? reverseBits(mask) : mask;
+  }//rawMask
+
+  /**
+   * Returns the mask of the bits of a stored word with
+   * an index of at least the given one.
+   */
+  private final long rawStartMask(int index) {
+    if (!m_Reverse) {
+      return -1L << index;
+    }
+    int b = index & ~7;
+    return (-1L << b) & ~((0xffL & ~(0xff >>> (index & 7))) << b);
+  }//rawStartMask
+
+  /**
+   * Returns the index of the first bit that is set
+   * in the given stored word, which must not be 0.
+   */
+  private final int rawLowestBit(long v) {
+    if (!m_Reverse) {
+      return Long.numberOfTrailingZeros(v);
+    }
+    int b = Long.numberOfTrailingZeros(v) & ~7;
+    return b + Integer.numberOfLeadingZeros((int) (v >>> b) & 0xff) - 24;
+  }//rawLowestBit
+
+  /**
+   * Returns the 64 bits starting at the given index,
+   * the first one in the lowest bit.
+   */
+  private final long bits(int index) {
+    int w = index >>> 6;
+    int s = index & 63;
+    long v = word(w) >>> s;
+    if (s != 0) {
+      v |= word(w + 1) << (64 - s);
+    }
+    return v;
+  }//bits
+
+  /**
+   * Sets the given number of bits (1 to 64), starting at
+   * the given index, from the lowest bits of the given value.
+   */
+  private final void putBits(int index, long v, int n) {
+    int w = index >>> 6;
+    int s = index & 63;
+    long mask = (n == 64) ? -1L : (1L << n) - 1;
+    v &= mask;
+    setWord(w, (word(w) & ~(mask << s)) | (v << s));
+    if (s + n > 64) {
+      long high = (1L << (s + n - 64)) - 1;
+      setWord(w + 1, (word(w + 1) & ~high) | (v >>> (64 - s)));
+    }
+  }//putBits
+
+  /**
+   * Returns the bits with the indices 64*w to 64*w+63,
+   * the first one in the lowest bit. Bytes beyond the
+   * end of the data read as zero.
+   */
+  private final long word(int w) {
+    //in LSB mode the first bit of a byte is its MSB
+    return (m_Reverse) ? reverseBits(rawWord(w)) : rawWord(w);
+  }//word
+
+  /**
+   * Sets the bits with the indices 64*w to 64*w+63,
+   * ignoring bits beyond the end of the data.
+   */
+  private final void setWord(int w, long v) {
+    setRawWord(w, (m_Reverse) ? reverseBits(v) : v);
+  }//setWord
+
+  /**
+   * Returns the 8 bytes of the given word as they are
+   * stored, the first byte in the lowest bits.
+   */
+  private final long rawWord(int w) {
+    int off = w << 3;
+    if (off + 8 <= m_Data.length) {
+      return (long) c_Words.get(m_Data, off);
+    }
+    long v = 0;
+    for (int i = m_Data.length - 1; i >= off; i--) {
+      v = (v << 8) | (m_Data[i] & 0xff);
+    }
+    return v;
+  }//rawWord
+
+  /**
+   * Stores the 8 bytes of the given word, the first byte
+   * in the lowest bits.
+   */
+  private final void setRawWord(int w, long v) {
+    int off = w << 3;
+    if (off + 8 <= m_Data.length) {
+      c_Words.set(m_Data, off, v);
+    } else {
+      for (int i = off; i < m_Data.length; i++, v >>>= 8) {
+        m_Data[i] = (byte) v;
+      }
+    }
+  }//setRawWord
+
+  /**
+   * Reverses the order of the bits within every byte.
+   */
+  private static long reverseBits(long v) {
+    return Long.reverseBytes(Long.reverse(v));
+  }//reverseBits
+
+  private static final VarHandle c_Words =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
   private static final int[] ODD_OFFSETS = {-1, -3, -5, -7};
   private static final int[] STRAIGHT_OFFSETS = {7, 5, 3, 1};
 }//class BitVector
@@ -0,0 +1,629 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.util;
+
+/**
+ * Class implementing a codec for values spanning
+ * several registers, i.e. 32 bit and 64 bit integers and
+ * floating point numbers.
+ * <p>
+ * Registers are handled in their wire format, i.e. as a
+ * payload of two bytes per register, high byte first, or
+ * as <tt>short</tt> register values.
+ * Devices differ in the order they store the bytes of a value;
+ * the byte order within the registers and the order of the
+ * registers can be swapped independently:
+ * <pre>
+ *   BIG_ENDIAN     AB CD        (AB CD EF GH)
+ *   WORD_SWAPPED   CD AB        (GH EF CD AB)
+ *   BYTE_SWAPPED   BA DC        (BA DC FE HG)
+ *   LITTLE_ENDIAN  DC BA        (HG FE DC BA)
+ * </pre>
+ * where A is the most significant byte of the value.
+ * <p>
+ * The bulk methods decode or encode a run of values
+ * between a payload and a primitive array, without
+ * allocating. Instances are immutable and can be shared.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public final class RegisterCodec {
+
+  /**
+   * Codec for values stored most significant byte first.
+   */
+  public static final RegisterCodec BIG_ENDIAN = new RegisterCodec(false, false);
+
+  /**
+   * Codec for values stored least significant register first,
+   * with the bytes of every register high byte first.
+   */
+  public static final RegisterCodec WORD_SWAPPED = new RegisterCodec(false, true);
+
+  /**
+   * Codec for values stored most significant register first,
+   * with the bytes of every register low byte first.
+   */
+  public static final RegisterCodec BYTE_SWAPPED = new RegisterCodec(true, false);
+
+  /**
+   * Codec for values stored least significant byte first.
+   */
+  public static final RegisterCodec LITTLE_ENDIAN = new RegisterCodec(true, true);
+
+  //instance attributes
+  private final boolean m_ByteSwap;
+  private final boolean m_WordSwap;
+
+  /**
+   * Constructs a new <tt>RegisterCodec</tt> instance.
+   *
+   * @param byteswap true if the bytes within every register are
+   *        stored low byte first, false otherwise.
+   * @param wordswap true if the registers of a value are stored
+   *        least significant register first, false otherwise.
+   */
+  public RegisterCodec(boolean byteswap, boolean wordswap) {
+    m_ByteSwap = byteswap;
+    m_WordSwap = wordswap;
+  }//constructor
+
+  /**
+   * Tests if the bytes within every register are swapped.
+   *
+   * @return true if registers are stored low byte first,
+   *         false otherwise.
+   */
+  public boolean isByteSwapped() {
+    return m_ByteSwap;
+  }//isByteSwapped
+
+  /**
+   * Tests if the registers of a value are swapped.
+   *
+   * @return true if values are stored least significant
+   *         register first, false otherwise.
+   */
+  public boolean isWordSwapped() {
+    return m_WordSwap;
+  }//isWordSwapped
+
+  /**
+   * Returns the byte order of a 32 bit value handled by
+   * this codec, e.g. <tt>"CDAB"</tt> for a word swapped codec.
+   *
+   * @return the byte order as <tt>String</tt>.
+   */
+  public String getByteOrderName() {
+    if (m_ByteSwap) {
+      return (m_WordSwap) ? "DCBA" : "BADC";
+    } else {
+      return (m_WordSwap) ? "CDAB" : "ABCD";
+    }
+  }//getByteOrderName
+
+  public String toString() {
+    return "RegisterCodec[" + getByteOrderName() + "]";
+  }//toString
+
+  /**
+   * Decodes a 32 bit integer from two registers.
+   *
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @return the value as <tt>int</tt>.
+   */
+  public int getInt(byte[] data, int off) {
+    return order(readInt(data, off));
+  }//getInt
+
+  /**
+   * Decodes an unsigned 32 bit integer from two registers.
+   *
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @return the value as <tt>long</tt>.
+   */
+  public long getUnsignedInt(byte[] data, int off) {
+    return order(readInt(data, off)) & 0xffffffffL;
+  }//getUnsignedInt
+
+  /**
+   * Decodes a 64 bit integer from four registers.
+   *
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @return the value as <tt>long</tt>.
+   */
+  public long getLong(byte[] data, int off) {
+    return order(readLong(data, off));
+  }//getLong
+
+  /**
+   * Decodes a 32 bit floating point number from two registers.
+   *
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @return the value as <tt>float</tt>.
+   */
+  public float getFloat(byte[] data, int off) {
+    return Float.intBitsToFloat(order(readInt(data, off)));
+  }//getFloat
+
+  /**
+   * Decodes a 64 bit floating point number from four registers.
+   *
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @return the value as <tt>double</tt>.
+   */
+  public double getDouble(byte[] data, int off) {
+    return Double.longBitsToDouble(order(readLong(data, off)));
+  }//getDouble
+
+  /**
+   * Encodes a 32 bit integer into two registers.
+   *
+   * @param v the value to be encoded.
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   */
+  public void putInt(int v, byte[] data, int off) {
+    writeInt(order(v), data, off);
+  }//putInt
+
+  /**
+   * Encodes an unsigned 32 bit integer into two registers.
+   * The upper 32 bits of the value are ignored.
+   *
+   * @param v the value to be encoded.
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   */
+  public void putUnsignedInt(long v, byte[] data, int off) {
+    writeInt(order((int) v), data, off);
+  }//putUnsignedInt
+
+  /**
+   * Encodes a 64 bit integer into four registers.
+   *
+   * @param v the value to be encoded.
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   */
+  public void putLong(long v, byte[] data, int off) {
+    writeLong(order(v), data, off);
+  }//putLong
+
+  /**
+   * Encodes a 32 bit floating point number into two registers.
+   *
+   * @param v the value to be encoded.
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   */
+  public void putFloat(float v, byte[] data, int off) {
+    writeInt(order(Float.floatToRawIntBits(v)), data, off);
+  }//putFloat
+
+  /**
+   * Encodes a 64 bit floating point number into four registers.
+   *
+   * @param v the value to be encoded.
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   */
+  public void putDouble(double v, byte[] data, int off) {
+    writeLong(order(Double.doubleToRawLongBits(v)), data, off);
+  }//putDouble
+
+  /**
+   * Decodes a run of 32 bit integers from a register payload.
+   *
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @param values the array to store the values to.
+   * @param voff the index of the first value in the array.
+   * @param count the number of values to be decoded.
+   */
+  public void decodeInts(byte[] data, int off, int[] values, int voff, int count) {
+    for (int i = 0; i < count; i++, off += 4) {
+      values[voff + i] = order(readInt(data, off));
+    }
+  }//decodeInts
+
+  /**
+   * Decodes a run of unsigned 32 bit integers from a register payload.
+   *
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @param values the array to store the values to.
+   * @param voff the index of the first value in the array.
+   * @param count the number of values to be decoded.
+   */
+  public void decodeUnsignedInts(byte[] data, int off, long[] values, int voff, int count) {
+    for (int i = 0; i < count; i++, off += 4) {
+      values[voff + i] = order(readInt(data, off)) & 0xffffffffL;
+    }
+  }//decodeUnsignedInts
+
+  /**
+   * Decodes a run of 64 bit integers from a register payload.
+   *
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @param values the array to store the values to.
+   * @param voff the index of the first value in the array.
+   * @param count the number of values to be decoded.
+   */
+  public void decodeLongs(byte[] data, int off, long[] values, int voff, int count) {
+    for (int i = 0; i < count; i++, off += 8) {
+      values[voff + i] = order(readLong(data, off));
+    }
+  }//decodeLongs
+
+  /**
+   * Decodes a run of 32 bit floating point numbers from a register payload.
+   *
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @param values the array to store the values to.
+   * @param voff the index of the first value in the array.
+   * @param count the number of values to be decoded.
+   */
+  public void decodeFloats(byte[] data, int off, float[] values, int voff, int count) {
+    for (int i = 0; i < count; i++, off += 4) {
+      values[voff + i] = Float.intBitsToFloat(order(readInt(data, off)));
+    }
+  }//decodeFloats
+
+  /**
+   * Decodes a run of 64 bit floating point numbers from a register payload.
+   *
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @param values the array to store the values to.
+   * @param voff the index of the first value in the array.
+   * @param count the number of values to be decoded.
+   */
+  public void decodeDoubles(byte[] data, int off, double[] values, int voff, int count) {
+    for (int i = 0; i < count; i++, off += 8) {
+      values[voff + i] = Double.longBitsToDouble(order(readLong(data, off)));
+    }
+  }//decodeDoubles
+
+  /**
+   * Encodes a run of 32 bit integers into a register payload.
+   *
+   * @param values the values to be encoded.
+   * @param voff the index of the first value in the array.
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @param count the number of values to be encoded.
+   */
+  public void encodeInts(int[] values, int voff, byte[] data, int off, int count) {
+    for (int i = 0; i < count; i++, off += 4) {
+      writeInt(order(values[voff + i]), data, off);
+    }
+  }//encodeInts
+
+  /**
+   * Encodes a run of unsigned 32 bit integers into a register payload.
+   * The upper 32 bits of the values are ignored.
+   *
+   * @param values the values to be encoded.
+   * @param voff the index of the first value in the array.
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @param count the number of values to be encoded.
+   */
+  public void encodeUnsignedInts(long[] values, int voff, byte[] data, int off, int count) {
+    for (int i = 0; i < count; i++, off += 4) {
+      writeInt(order((int) values[voff + i]), data, off);
+    }
+  }//encodeUnsignedInts
+
+  /**
+   * Encodes a run of 64 bit integers into a register payload.
+   *
+   * @param values the values to be encoded.
+   * @param voff the index of the first value in the array.
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @param count the number of values to be encoded.
+   */
+  public void encodeLongs(long[] values, int voff, byte[] data, int off, int count) {
+    for (int i = 0; i < count; i++, off += 8) {
+      writeLong(order(values[voff + i]), data, off);
+    }
+  }//encodeLongs
+
+  /**
+   * Encodes a run of 32 bit floating point numbers into a register payload.
+   *
+   * @param values the values to be encoded.
+   * @param voff the index of the first value in the array.
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @param count the number of values to be encoded.
+   */
+  public void encodeFloats(float[] values, int voff, byte[] data, int off, int count) {
+    for (int i = 0; i < count; i++, off += 4) {
+      writeInt(order(Float.floatToRawIntBits(values[voff + i])), data, off);
+    }
+  }//encodeFloats
+
+  /**
+   * Encodes a run of 64 bit floating point numbers into a register payload.
+   *
+   * @param values the values to be encoded.
+   * @param voff the index of the first value in the array.
+   * @param data the register payload.
+   * @param off the offset of the first byte in the payload.
+   * @param count the number of values to be encoded.
+   */
+  public void encodeDoubles(double[] values, int voff, byte[] data, int off, int count) {
+    for (int i = 0; i < count; i++, off += 8) {
+      writeLong(order(Double.doubleToRawLongBits(values[voff + i])), data, off);
+    }
+  }//encodeDoubles
+
+  /**
+   * Decodes a run of 32 bit integers from register values.
+   *
+   * @param regs the register values.
+   * @param roff the index of the first register.
+   * @param values the array to store the values to.
+   * @param voff the index of the first value in the array.
+   * @param count the number of values to be decoded.
+   */
+  public void decodeInts(short[] regs, int roff, int[] values, int voff, int count) {
+    for (int i = 0; i < count; i++, roff += 2) {
+      values[voff + i] = order(readInt(regs, roff));
+    }
+  }//decodeInts
+
+  /**
+   * Decodes a run of unsigned 32 bit integers from register values.
+   *
+   * @param regs the register values.
+   * @param roff the index of the first register.
+   * @param values the array to store the values to.
+   * @param voff the index of the first value in the array.
+   * @param count the number of values to be decoded.
+   */
+  public void decodeUnsignedInts(short[] regs, int roff, long[] values, int voff, int count) {
+    for (int i = 0; i < count; i++, roff += 2) {
+      values[voff + i] = order(readInt(regs, roff)) & 0xffffffffL;
+    }
+  }//decodeUnsignedInts
+
+  /**
+   * Decodes a run of 64 bit integers from register values.
+   *
+   * @param regs the register values.
+   * @param roff the index of the first register.
+   * @param values the array to store the values to.
+   * @param voff the index of the first value in the array.
+   * @param count the number of values to be decoded.
+   */
+  public void decodeLongs(short[] regs, int roff, long[] values, int voff, int count) {
+    for (int i = 0; i < count; i++, roff += 4) {
+      values[voff + i] = order(readLong(regs, roff));
+    }
+  }//decodeLongs
+
+  /**
+   * Decodes a run of 32 bit floating point numbers from register values.
+   *
+   * @param regs the register values.
+   * @param roff the index of the first register.
+   * @param values the array to store the values to.
+   * @param voff the index of the first value in the array.
+   * @param count the number of values to be decoded.
+   */
+  public void decodeFloats(short[] regs, int roff, float[] values, int voff, int count) {
+    for (int i = 0; i < count; i++, roff += 2) {
+      values[voff + i] = Float.intBitsToFloat(order(readInt(regs, roff)));
+    }
+  }//decodeFloats
+
+  /**
+   * Decodes a run of 64 bit floating point numbers from register values.
+   *
+   * @param regs the register values.
+   * @param roff the index of the first register.
+   * @param values the array to store the values to.
+   * @param voff the index of the first value in the array.
+   * @param count the number of values to be decoded.
+   */
+  public void decodeDoubles(short[] regs, int roff, double[] values, int voff, int count) {
+    for (int i = 0; i < count; i++, roff += 4) {
+      values[voff + i] = Double.longBitsToDouble(order(readLong(regs, roff)));
+    }
+  }//decodeDoubles
+
+  /**
+   * Encodes a run of 32 bit integers into register values.
+   *
+   * @param values the values to be encoded.
+   * @param voff the index of the first value in the array.
+   * @param regs the register values.
+   * @param roff the index of the first register.
+   * @param count the number of values to be encoded.
+   */
+  public void encodeInts(int[] values, int voff, short[] regs, int roff, int count) {
+    for (int i = 0; i < count; i++, roff += 2) {
+      writeInt(order(values[voff + i]), regs, roff);
+    }
+  }//encodeInts
+
+  /**
+   * Encodes a run of unsigned 32 bit integers into register values.
+   * The upper 32 bits of the values are ignored.
+   *
+   * @param values the values to be encoded.
+   * @param voff the index of the first value in the array.
+   * @param regs the register values.
+   * @param roff the index of the first register.
+   * @param count the number of values to be encoded.
+   */
+  public void encodeUnsignedInts(long[] values, int voff, short[] regs, int roff, int count) {
+    for (int i = 0; i < count; i++, roff += 2) {
+      writeInt(order((int) values[voff + i]), regs, roff);
+    }
+  }//encodeUnsignedInts
+
+  /**
+   * Encodes a run of 64 bit integers into register values.
+   *
+   * @param values the values to be encoded.
+   * @param voff the index of the first value in the array.
+   * @param regs the register values.
+   * @param roff the index of the first register.
+   * @param count the number of values to be encoded.
+   */
+  public void encodeLongs(long[] values, int voff, short[] regs, int roff, int count) {
+    for (int i = 0; i < count; i++, roff += 4) {
+      writeLong(order(values[voff + i]), regs, roff);
+    }
+  }//encodeLongs
+
+  /**
+   * Encodes a run of 32 bit floating point numbers into register values.
+   *
+   * @param values the values to be encoded.
+   * @param voff the index of the first value in the array.
+   * @param regs the register values.
+   * @param roff the index of the first register.
+   * @param count the number of values to be encoded.
+   */
+  public void encodeFloats(float[] values, int voff, short[] regs, int roff, int count) {
+    for (int i = 0; i < count; i++, roff += 2) {
+      writeInt(order(Float.floatToRawIntBits(values[voff + i])), regs, roff);
+    }
+  }//encodeFloats
+
+  /**
+   * Encodes a run of 64 bit floating point numbers into register values.
+   *
+   * @param values the values to be encoded.
+   * @param voff the index of the first value in the array.
+   * @param regs the register values.
+   * @param roff the index of the first register.
+   * @param count the number of values to be encoded.
+   */
+  public void encodeDoubles(double[] values, int voff, short[] regs, int roff, int count) {
+    for (int i = 0; i < count; i++, roff += 4) {
+      writeLong(order(Double.doubleToRawLongBits(values[voff + i])), regs, roff);
+    }
+  }//encodeDoubles
+
+  /**
+   * Converts a 32 bit value between big endian and the
+   * byte order of this codec; the conversion is its own inverse.
+   */
+  private int order(int v) {
+    if (m_ByteSwap) {
+      if (m_WordSwap) {
+        return Integer.reverseBytes(v);
+      }
+      return ((v & 0x00ff00ff) << 8) | ((v >>> 8) & 0x00ff00ff);
+    } else if (m_WordSwap) {
+      return (v << 16) | (v >>> 16);
+    }
+    return v;
+  }//order
+
+  /**
+   * Converts a 64 bit value between big endian and the
+   * byte order of this codec; the conversion is its own inverse.
+   */
+  private long order(long v) {
+    if (m_ByteSwap) {
+      if (m_WordSwap) {
+        return Long.reverseBytes(v);
+      }
+      return ((v & 0x00ff00ff00ff00ffL) << 8) | ((v >>> 8) & 0x00ff00ff00ff00ffL);
+    } else if (m_WordSwap) {
+      //reverse the bytes, then swap them back within the words
+      v = Long.reverseBytes(v);
+      return ((v & 0x00ff00ff00ff00ffL) << 8) | ((v >>> 8) & 0x00ff00ff00ff00ffL);
+    }
+    return v;
+  }//order
+
+  private static int readInt(byte[] data, int off) {
+    return ((data[off] & 0xff) << 24)
+        | ((data[off + 1] & 0xff) << 16)
+        | ((data[off + 2] & 0xff) << 8)
+        | (data[off + 3] & 0xff);
+  }//readInt
+
+  private static long readLong(byte[] data, int off) {
+    return ((long) readInt(data, off) << 32) | (readInt(data, off + 4) & 0xffffffffL);
+  }//readLong
+
+  private static void writeInt(int v, byte[] data, int off) {
+    data[off] = (byte) (v >> 24);
+    data[off + 1] = (byte) (v >> 16);
+    data[off + 2] = (byte) (v >> 8);
+    data[off + 3] = (byte) v;
+  }//writeInt
+
+  private static void writeLong(long v, byte[] data, int off) {
+    writeInt((int) (v >> 32), data, off);
+    writeInt((int) v, data, off + 4);
+  }//writeLong
+
+  private static int readInt(short[] regs, int off) {
+    return (regs[off] << 16) | (regs[off + 1] & 0xffff);
+  }//readInt
+
+  private static long readLong(short[] regs, int off) {
+    return ((long) readInt(regs, off) << 32) | (readInt(regs, off + 2) & 0xffffffffL);
+  }//readLong
+
+  private static void writeInt(int v, short[] regs, int off) {
+    regs[off] = (short) (v >> 16);
+    regs[off + 1] = (short) v;
+  }//writeInt
+
+  private static void writeLong(long v, short[] regs, int off) {
+    writeInt((int) (v >> 32), regs, off);
+    writeInt((int) v, regs, off + 2);
+  }//writeLong
+
+}//class RegisterCodec
@@ -0,0 +1,231 @@
+//License
+/***
+ * Java Modbus Library (jamod)
+ * Copyright (c) 2002-2004, jamod development team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors
+ * may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS ``AS
+ * IS'' AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ***/
+package net.wimpi.modbus.util;
+
+import java.lang.reflect.Method;
+import java.util.Hashtable;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Class implementing a <tt>ThreadPool</tt> that runs
+ * every task on its own virtual thread.
+ * <p>
+ * Virtual threads are looked up reflectively, so the
+ * library still builds and runs on older platforms;
+ * if they are not available, every task is run on its
+ * own (daemon) platform thread instead.
+ * <p>
+ * The pool keeps track of the carrier threads that were
+ * observed running its tasks, which gives an idea of
+ * how many platform threads were actually needed to
+ * serve a given number of connections. The carrier is
+ * taken from the string representation of the virtual
+ * thread, which is not a specified format, so this is a
+ * best-effort statistic only.
+ *
+ * @author jamod development team
+ * @version 1.2 (16/10/2026)
+ */
+public class VirtualThreadPool
+    extends ThreadPool {
+
+  private static ThreadFactory c_VirtualFactory;
+
+  private int m_Active = 0;
+  private int m_Peak = 0;
+  private long m_Executed = 0;
+  private Hashtable<String, String> m_Carriers = new Hashtable<String, String>();
+
+  static {
+    try {
+      Method ofVirtual = Thread.class.getMethod("ofVirtual", new Class<?>[0]);
+      Object builder = ofVirtual.invoke(null, new Object[0]);
+      Method factory = Class.forName("java.lang.Thread$Builder")
+          .getMethod("factory", new Class<?>[0]);
+      c_VirtualFactory = (ThreadFactory) factory.invoke(builder, new Object[0]);
+    } catch (Exception ex) {
+      c_VirtualFactory = null;
+    }
+  }
+
+  /**
+   * Constructs a new <tt>VirtualThreadPool</tt> instance.
+   */
+  public VirtualThreadPool() {
+    super(0);
+  }//constructor
+
+  /**
+   * Execute the <tt>Runnable</tt> instance
+   * on a new virtual thread.
+   *
+   * @param task the <tt>Runnable</tt> to be executed.
+   */
+  public void execute(Runnable task) {
+    Runnable r = new TrackedTask(task);
+    Thread t;
+    if (c_VirtualFactory != null) {
+      t = c_VirtualFactory.newThread(r);
+    } else {
+      t = new Thread(r);
+      t.setDaemon(true);
+    }
+    synchronized (this) {
+      m_Executed++;
+    }
+    t.start();
+  }//execute
+
+  /**
+   * Does not start any pool threads, as every
+   * task gets a thread of its own.
+   */
+  protected void initPool() {
+  }//initPool
+
+  /**
+   * Tests if tasks are run on virtual threads.
+   *
+   * @return true if virtual threads are used, false if
+   *         tasks fall back to platform threads.
+   */
+  public static boolean isVirtual() {
+    return c_VirtualFactory != null;
+  }//isVirtual
+
+  /**
+   * Returns the number of tasks that are currently running.
+   *
+   * @return the number of running tasks.
+   */
+  public synchronized int getActiveCount() {
+    return m_Active;
+  }//getActiveCount
+
+  /**
+   * Returns the highest number of tasks that were
+   * running at the same time.
+   *
+   * @return the peak number of running tasks.
+   */
+  public synchronized int getPeakCount() {
+    return m_Peak;
+  }//getPeakCount
+
+  /**
+   * Returns the number of tasks that have been
+   * executed through this pool.
+   *
+   * @return the number of executed tasks.
+   */
+  public synchronized long getExecutedCount() {
+    return m_Executed;
+  }//getExecutedCount
+
+  /**
+   * Returns the number of distinct carrier threads
+   * that were observed running tasks of this pool.
+   * <p>
+   * Carriers are sampled whenever a task starts and
+   * finishes, so this is a lower bound, and it is only
+   * best-effort, as it relies on the unspecified format of
+   * <tt>Thread.toString()</tt>. If virtual threads are not
+   * available, every task runs on a platform thread of its
+   * own, and the peak number of running tasks is returned.
+   *
+   * @return the number of carrier threads used.
+   */
+  public int getCarrierThreadCount() {
+    if (c_VirtualFactory == null) {
+      return getPeakCount();
+    }
+    return m_Carriers.size();
+  }//getCarrierThreadCount
+
+  /**
+   * Records the carrier of the calling virtual thread.
+   * <p>
+   * The carriers belong to the scheduler of the virtual
+   * threads, so their number stays bounded by its size.
+   */
+  private void sampleCarrier() {
+    if (c_VirtualFactory == null) {
+      return;
+    }
+    //VirtualThread[#id,name]/runnable@carrier
+    String s = Thread.currentThread().toString();
+    int idx = s.lastIndexOf('@');
+    if (idx < 0) {
+      return;
+    }
+    String carrier = s.substring(idx + 1);
+    m_Carriers.put(carrier, carrier);
+  }//sampleCarrier
+
+  /**
+   * Inner class that wraps a task to keep
+   * the pool statistics.
+   */
+  private class TrackedTask
+      implements Runnable {
+
+    private Runnable m_Task;
+
+    public TrackedTask(Runnable task) {
+      m_Task = task;
+    }//constructor
+
+    public void run() {
+      synchronized (VirtualThreadPool.this) {
+        m_Active++;
+        if (m_Active > m_Peak) {
+          m_Peak = m_Active;
+        }
+      }
+      sampleCarrier();
+      try {
+        m_Task.run();
+      } catch (Exception ex) {
+        ex.printStackTrace();
+      } finally {
+        sampleCarrier();
+        synchronized (VirtualThreadPool.this) {
+          m_Active--;
+        }
+      }
+    }//run
+
+  }//inner class TrackedTask
+
+}//class VirtualThreadPool